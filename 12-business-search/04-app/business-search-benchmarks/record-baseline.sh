@@ -0,0 +1,47 @@
+#!/usr/bin/env bash
+# Records the benchmarks of a commit as the baseline: baseline/jmh-result.json, and baseline/environment.txt with the commit,
+# the jdk, the cpu and the jmh arguments it was recorded with. The commit is built in a temporary git worktree, the working tree
+# is left as it is. business-search of the working tree is installed again at the end, the benchmarks of the working tree
+# then compare against the baseline (see README.md).
+#
+# usage: ./record-baseline.sh [ref] [jmh arguments...]   e.g. ./record-baseline.sh main, ./record-baseline.sh HEAD~3 QueryBuilding
+# MVN_ARGS is passed to maven, e.g. MVN_ARGS="-o -Djava.version=21". java is the one of JAVA_HOME, else of the PATH.
+set -euo pipefail
+
+ref="${1:-HEAD}"
+shift || true
+jmh_args=(-prof gc -rf json "$@")
+
+module_dir="$(cd "$(dirname "$0")" && pwd)"
+repo_dir="$(git -C "$module_dir" rev-parse --show-toplevel)"
+module_path="${module_dir#"$repo_dir"/}"
+app_path="$(dirname "$module_path")/business-search"
+commit="$(git -C "$repo_dir" rev-parse --verify "$ref^{commit}")"
+java="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+read -r -a mvn_args <<< "${MVN_ARGS:-}"
+
+worktree="$(mktemp -d)"
+trap 'git -C "$repo_dir" worktree remove --force "$worktree"' EXIT
+git -C "$repo_dir" worktree add --quiet --detach "$worktree" "$commit"
+if [[ ! -f "$worktree/$module_path/pom.xml" ]]; then
+  echo "$ref has no $module_path" >&2
+  exit 1
+fi
+
+mvn -B -q "${mvn_args[@]}" -f "$worktree/$app_path" install -DskipTests
+mvn -B -q "${mvn_args[@]}" -f "$worktree/$module_path" package -DskipTests
+mkdir -p "$module_dir/baseline"
+"$java" -jar "$worktree/$module_path/target/benchmarks.jar" "${jmh_args[@]}" -rff "$module_dir/baseline/jmh-result.json"
+
+{
+  echo "commit: $(git -C "$repo_dir" log -1 --format='%H %s' "$commit")"
+  echo "recorded: $(date -u +%Y-%m-%dT%H:%M:%SZ)"
+  echo "jdk: $("$java" -XshowSettings:properties -version 2>&1 | sed -n 's/^ *java.vm.vendor = //p; s/^ *java.runtime.version = //p' | paste -sd ' ')"
+  echo "cpu: $(sed -n 's/^model name[[:space:]]*: //p' /proc/cpuinfo 2>/dev/null | head -1 || sysctl -n machdep.cpu.brand_string), $(getconf _NPROCESSORS_ONLN) cores"
+  echo "os: $(uname -sr)"
+  echo "jmh: ${jmh_args[*]}"
+} > "$module_dir/baseline/environment.txt"
+cat "$module_dir/baseline/environment.txt"
+
+# the local maven repository holds business-search of the baseline commit now
+mvn -B -q "${mvn_args[@]}" -f "$repo_dir/$app_path" install -DskipTests
@@ -0,0 +1,97 @@
+package com.vinsguru.business.benchmark;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/*
+Compares two JMH json results (-rf json), usually the baseline recorded by record-baseline.sh with a new run (see README.md):
+ops/s and bytes allocated per op (gc.alloc.rate.norm, with -prof gc) of every benchmark and parameters, and the change in %.
+The environment.txt next to the baseline (commit, jdk, cpu) is printed first.
+usage: java -cp target/benchmarks.jar com.vinsguru.business.benchmark.BaselineComparison <baseline.json> <result.json>
+* */
+public class BaselineComparison {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+    private static final String ENVIRONMENT = "environment.txt";
+    private static final String ROW_FORMAT = "%-70s %14s %14s %8s %12s %12s %8s%n";
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("usage: BaselineComparison <baseline.json> <result.json>");
+            System.exit(1);
+        }
+        var baselinePath = Path.of(args[0]);
+        printEnvironment(baselinePath.resolveSibling(ENVIRONMENT));
+        var baseline = read(baselinePath);
+        var result = read(Path.of(args[1]));
+        System.out.printf(ROW_FORMAT, "benchmark", "baseline ops/s", "ops/s", "change", "baseline B/op", "B/op", "change");
+        result.forEach((name, run) -> {
+            var base = baseline.get(name);
+            System.out.printf(ROW_FORMAT,
+                              name,
+                              Objects.isNull(base) ? "-" : format(score(base)),
+                              format(score(run)),
+                              Objects.isNull(base) ? "-" : change(score(base), score(run)),
+                              Objects.isNull(base) ? "-" : format(allocation(base)),
+                              format(allocation(run)),
+                              Objects.isNull(base) ? "-" : change(allocation(base), allocation(run)));
+        });
+    }
+
+    private static void printEnvironment(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            Files.readAllLines(path).forEach(line -> System.out.println("baseline " + line));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.println();
+    }
+
+    // keyed by the short name of the benchmark and its parameters, e.g. QueryRuleBenchmark.build:rule=state
+    private static Map<String, JsonNode> read(Path path) {
+        var runs = new LinkedHashMap<String, JsonNode>();
+        for (var run : JsonMapper.builder().build().readTree(path.toFile())) {
+            var benchmark = run.get("benchmark").asString();
+            var name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+            var params = run.path("params")
+                            .properties()
+                            .stream()
+                            .map(param -> param.getKey() + "=" + param.getValue().asString())
+                            .collect(Collectors.joining(","));
+            runs.put(params.isEmpty() ? name : name + ":" + params, run);
+        }
+        return runs;
+    }
+
+    private static double score(JsonNode run) {
+        return run.path("primaryMetric").path("score").asDouble(Double.NaN);
+    }
+
+    private static double allocation(JsonNode run) {
+        return run.path("secondaryMetrics").path(ALLOCATION).path("score").asDouble(Double.NaN);
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "-" : "%.1f".formatted(value);
+    }
+
+    private static String change(double baseline, double value) {
+        if (Double.isNaN(baseline) || Double.isNaN(value) || baseline == 0) {
+            return "-";
+        }
+        return "%+.1f%%".formatted((value - baseline) * 100 / baseline);
+    }
+
+}
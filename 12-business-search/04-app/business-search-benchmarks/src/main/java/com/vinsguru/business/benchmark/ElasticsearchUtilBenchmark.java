@@ -0,0 +1,76 @@
+package com.vinsguru.business.benchmark;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.search.SearchRequestBody;
+import co.elastic.clients.elasticsearch.core.search.Suggester;
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.ElasticsearchUtil;
+import com.vinsguru.business.util.NativeQueryBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// the builders of the elasticsearch java client types. searchRequest and searchRequestBody copy a NativeQuery with facets
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ElasticsearchUtilBenchmark {
+
+    private static final List<String> FIELDS = List.of("name^2.0", "category^1.5", "offerings^1.5", "address^1.2", "description");
+
+    private NativeQuery query;
+
+    @Setup
+    public void setup() {
+        this.query = NativeQueryBuilder.toSearchQuery(Fixtures.searchRequest("facets", null), SearchProperties.defaults());
+    }
+
+    @Benchmark
+    public Query termQuery() {
+        return ElasticsearchUtil.buildTermQuery(Constants.Business.STATE, "Washington", 1.0f);
+    }
+
+    @Benchmark
+    public Query rangeQuery() {
+        return ElasticsearchUtil.buildRangeQuery(Constants.Business.RATING, builder -> builder.gte(4.0));
+    }
+
+    @Benchmark
+    public Query geoDistanceQuery() {
+        return ElasticsearchUtil.buildGeoDistanceQuery(Constants.Business.LOCATION, "10mi", 47.6097, -122.3331);
+    }
+
+    @Benchmark
+    public Query multiMatchQuery() {
+        return ElasticsearchUtil.buildMultiMatchQuery(FIELDS, "coffee");
+    }
+
+    @Benchmark
+    public Aggregation termsAggregation() {
+        return ElasticsearchUtil.buildTermsAggregation(Constants.Business.STATE);
+    }
+
+    @Benchmark
+    public Suggester completionSuggester() {
+        return ElasticsearchUtil.buildCompletionSuggester(Constants.Suggestion.SUGGEST_NAME, Constants.Suggestion.SEARCH_TERM, "coff", 10);
+    }
+
+    @Benchmark
+    public SearchRequest searchRequest() {
+        return ElasticsearchUtil.buildSearchRequest(Constants.Index.BUSINESS, this.query);
+    }
+
+    @Benchmark
+    public SearchRequestBody searchRequestBody() {
+        return ElasticsearchUtil.buildSearchRequestBody(this.query);
+    }
+
+}
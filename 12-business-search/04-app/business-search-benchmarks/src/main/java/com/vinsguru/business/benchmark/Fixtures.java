@@ -0,0 +1,65 @@
+package com.vinsguru.business.benchmark;
+
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.Jackson3JsonpMapper;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.service.SearchResponseMapper;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+The requests and the canned elasticsearch responses the benchmarks run on.
+The responses (src/main/resources/responses) have 10 hits and the facets of the given facet mode, with typed keys,
+as the java client requests them.
+* */
+final class Fixtures {
+
+    static final JsonpMapper JSONP_MAPPER = new Jackson3JsonpMapper();
+
+    private static final JsonpDeserializer<co.elastic.clients.elasticsearch.core.SearchResponse<Map>> RESPONSE_DESERIALIZER =
+            co.elastic.clients.elasticsearch.core.SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(Map.class));
+
+    private Fixtures() {}
+
+    /*
+    query: the query alone, i.e. the search and category rules
+    filters: the query, narrowed down by state, rating and distance
+    facets: the query, with selections of several facets (multi-select facet aggregations)
+    * */
+    static SearchRequestParameters searchRequest(String name, String fields) {
+        return switch (name) {
+            case "query" -> new SearchRequestParameters("coffee", null, null, null, null, null, null, 0, 10, null, false, fields, null, null, null);
+            case "filters" -> new SearchRequestParameters("coffee", "10mi", 47.6097, -122.3331, 4.0, "Washington", null, 0, 10, null, false, fields, null, null, null);
+            case "facets" -> new SearchRequestParameters("coffee", null, null, null, null, null, "Wi-Fi", 0, 10, null, false, fields, "state:Washington||state:Texas||category:Cafe", null, null);
+            default -> throw new IllegalArgumentException("unknown request: " + name);
+        };
+    }
+
+    static SearchResponseMapper searchResponseMapper() {
+        var converter = new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext());
+        converter.afterPropertiesSet();
+        return new SearchResponseMapper(converter, JSONP_MAPPER);
+    }
+
+    static byte[] response(String name) {
+        try (var inputStream = Fixtures.class.getResourceAsStream("/responses/" + name + ".json")) {
+            return Objects.requireNonNull(inputStream, "unknown response: " + name).readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static ResponseBody<Map> decode(byte[] response) {
+        var parser = JSONP_MAPPER.jsonProvider().createParser(new ByteArrayInputStream(response));
+        return RESPONSE_DESERIALIZER.deserialize(parser, JSONP_MAPPER);
+    }
+
+}
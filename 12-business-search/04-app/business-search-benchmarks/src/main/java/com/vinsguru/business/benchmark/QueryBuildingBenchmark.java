@@ -0,0 +1,60 @@
+package com.vinsguru.business.benchmark;
+
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.dto.SuggestionRequestParameters;
+import com.vinsguru.business.util.NativeQueryBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// the NativeQuery of a search or suggestion request, from its bound parameters
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBuildingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SearchState {
+
+        @Param({"query", "filters", "facets"})
+        String request;
+
+        @Param({"exact", "sampler", "random_sampler"})
+        String facetMode;
+
+        SearchRequestParameters parameters;
+        SearchProperties properties;
+
+        @Setup
+        public void setup() {
+            var defaults = SearchProperties.defaults();
+            var facets = defaults.facets().withMode(SearchProperties.Facets.Mode.valueOf(this.facetMode.toUpperCase(Locale.ROOT)));
+            this.parameters = Fixtures.searchRequest(this.request, null);
+            this.properties = defaults.withFacets(facets);
+        }
+
+    }
+
+    @State(Scope.Benchmark)
+    public static class SuggestionState {
+
+        final SuggestionRequestParameters parameters = new SuggestionRequestParameters("Coff", 10);
+
+    }
+
+    @Benchmark
+    public NativeQuery searchQuery(SearchState state) {
+        return NativeQueryBuilder.toSearchQuery(state.parameters, state.properties);
+    }
+
+    @Benchmark
+    public NativeQuery suggestQuery(SuggestionState state) {
+        return NativeQueryBuilder.toSuggestQuery(state.parameters);
+    }
+
+}
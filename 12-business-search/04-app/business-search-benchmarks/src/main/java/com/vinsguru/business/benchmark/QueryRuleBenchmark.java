@@ -0,0 +1,51 @@
+package com.vinsguru.business.benchmark;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.util.QueryRule;
+import com.vinsguru.business.util.QueryRules;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// every query rule, for parameters it fires for
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryRuleBenchmark {
+
+    private static final List<QueryRule> RULES = List.of(
+            QueryRules.STATE_QUERY,
+            QueryRules.RATING_QUERY,
+            QueryRules.DISTANCE_QUERY,
+            QueryRules.CATEGORY_QUERY,
+            QueryRules.SEARCH_QUERY,
+            QueryRules.POPULARITY_QUERY
+    );
+
+    @Param({"state", "rating", "distance", "category", "search", "popularity"})
+    String rule;
+
+    private QueryRule queryRule;
+    private SearchRequestParameters parameters;
+
+    @Setup
+    public void setup() {
+        this.queryRule = RULES.stream()
+                              .filter(queryRule -> queryRule.name().equals(this.rule))
+                              .findFirst()
+                              .orElseThrow();
+        this.parameters = Fixtures.searchRequest("filters", null);
+    }
+
+    @Benchmark
+    public Optional<Query> build() {
+        return this.queryRule.build(this.parameters);
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.vinsguru.business.benchmark;
+
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.dto.SearchResponse;
+import com.vinsguru.business.service.SearchResponseMapper;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+From the elasticsearch response to our SearchResponse, as on the async path:
+ - decode: the json response into the java client types
+ - buildResponse: hit mapping into the projection, facets and pagination
+ - buildFacets: the same, for a response without hits, i.e. the facets and the pagination alone
+* */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseMappingBenchmark {
+
+    @Param({"exact", "multi-select", "sampler", "random-sampler"})
+    String response;
+
+    @Param({"full", "card"})
+    String fields;
+
+    private SearchResponseMapper searchResponseMapper;
+    private SearchRequestParameters parameters;
+    private byte[] json;
+    private ResponseBody<Map> decoded;
+    private ResponseBody<Map> decodedWithoutHits;
+
+    @Setup
+    public void setup() {
+        this.searchResponseMapper = Fixtures.searchResponseMapper();
+        this.parameters = Fixtures.searchRequest("query", this.fields);
+        this.json = Fixtures.response(this.response);
+        this.decoded = Fixtures.decode(this.json);
+        var jsonMapper = JsonMapper.builder().build();
+        var withoutHits = (ObjectNode) jsonMapper.readTree(this.json);
+        ((ObjectNode) withoutHits.get("hits")).putArray("hits");
+        this.decodedWithoutHits = Fixtures.decode(jsonMapper.writeValueAsBytes(withoutHits));
+    }
+
+    @Benchmark
+    public ResponseBody<Map> decode() {
+        return Fixtures.decode(this.json);
+    }
+
+    @Benchmark
+    public SearchResponse buildResponse() {
+        return this.searchResponseMapper.toSearchResponse(this.parameters, null, this.decoded);
+    }
+
+    @Benchmark
+    public SearchResponse buildFacets() {
+        return this.searchResponseMapper.toSearchResponse(this.parameters, null, this.decodedWithoutHits);
+    }
+
+}
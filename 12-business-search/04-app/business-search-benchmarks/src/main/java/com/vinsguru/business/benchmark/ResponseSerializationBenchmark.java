@@ -0,0 +1,36 @@
+package com.vinsguru.business.benchmark;
+
+import com.vinsguru.business.dto.SearchResponse;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.concurrent.TimeUnit;
+
+// our SearchResponse written as json by jackson, as the message converter does
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseSerializationBenchmark {
+
+    @Param({"full", "card"})
+    String fields;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private SearchResponse searchResponse;
+
+    @Setup
+    public void setup() {
+        var decoded = Fixtures.decode(Fixtures.response("exact"));
+        this.searchResponse = Fixtures.searchResponseMapper()
+                                      .toSearchResponse(Fixtures.searchRequest("query", this.fields), null, decoded);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return this.jsonMapper.writeValueAsBytes(this.searchResponse);
+    }
+
+}
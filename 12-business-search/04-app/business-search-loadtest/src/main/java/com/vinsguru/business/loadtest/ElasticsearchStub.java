@@ -0,0 +1,143 @@
+package com.vinsguru.business.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Stands in for elasticsearch: replays recorded responses, after the configured latency (+ a random jitter up to stubJitter).
+A request /<index>/<endpoint> is answered with the responses recorded for <index>/<endpoint>*.json, in turns.
+The bundled recordings (src/main/resources/responses) cover the _search requests of the businesses and the suggestions index.
+Anything else is answered with 404, which the application handles as it would for a missing index.
+The java client requires the X-Elastic-Product header on every response.
+* */
+public class ElasticsearchStub implements AutoCloseable {
+
+    private static final List<String> BUNDLED_RESPONSES = List.of(
+            "businesses/_search.json",
+            "suggestions/_search.json"
+    );
+    private static final byte[] NOT_FOUND = """
+            {"error":{"root_cause":[],"type":"index_not_found_exception","reason":"no recorded response"},"status":404}
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final Map<String, List<byte[]>> responses;
+    private final Map<String, AtomicLong> turns = new HashMap<>();
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final LongAdder served = new LongAdder();
+
+    private ElasticsearchStub(HttpServer server, Map<String, List<byte[]>> responses, Duration latency, Duration jitter) {
+        this.server = server;
+        this.responses = responses;
+        this.latencyNanos = latency.toNanos();
+        this.jitterNanos = jitter.toNanos();
+        responses.keySet().forEach(key -> this.turns.put(key, new AtomicLong()));
+    }
+
+    // responses: directory of recorded responses laid out as <index>/<endpoint>*.json, null for the bundled ones
+    public static ElasticsearchStub start(int port, Path responses, Duration latency, Duration jitter) throws IOException {
+        var server = HttpServer.create(new InetSocketAddress(port), 0);
+        var stub = new ElasticsearchStub(server, Objects.isNull(responses) ? bundledResponses() : recordedResponses(responses), latency, jitter);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", stub::handle);
+        server.start();
+        return stub;
+    }
+
+    public long served() {
+        return this.served.sum();
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+            var response = this.response(exchange.getRequestURI().getPath());
+            this.delay();
+            exchange.getResponseHeaders().set("X-Elastic-Product", "Elasticsearch");
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            var body = Objects.requireNonNullElse(response, NOT_FOUND);
+            exchange.sendResponseHeaders(Objects.isNull(response) ? 404 : 200, body.length);
+            exchange.getResponseBody().write(body);
+            this.served.increment();
+        }
+    }
+
+    // /businesses/_search -> businesses/_search
+    private byte[] response(String path) {
+        var key = path.startsWith("/") ? path.substring(1) : path;
+        var recorded = this.responses.get(key);
+        if (Objects.isNull(recorded)) {
+            return null;
+        }
+        return recorded.get((int) (this.turns.get(key).getAndIncrement() % recorded.size()));
+    }
+
+    private void delay() {
+        var nanos = this.latencyNanos + (this.jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(this.jitterNanos) : 0);
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, List<byte[]>> bundledResponses() throws IOException {
+        var responses = new HashMap<String, List<byte[]>>();
+        for (var name : BUNDLED_RESPONSES) {
+            try (var inputStream = Objects.requireNonNull(ElasticsearchStub.class.getResourceAsStream("/responses/" + name))) {
+                responses.computeIfAbsent(key(name), k -> new ArrayList<>()).add(inputStream.readAllBytes());
+            }
+        }
+        return responses;
+    }
+
+    private static Map<String, List<byte[]>> recordedResponses(Path directory) throws IOException {
+        var responses = new HashMap<String, List<byte[]>>();
+        try (var files = Files.walk(directory)) {
+            for (var file : files.filter(f -> f.toString().endsWith(".json")).sorted().toList()) {
+                var name = directory.relativize(file).toString().replace('\\', '/');
+                responses.computeIfAbsent(key(name), k -> new ArrayList<>()).add(Files.readAllBytes(file));
+            }
+        }
+        if (responses.isEmpty()) {
+            throw new IllegalArgumentException("no recorded responses in " + directory);
+        }
+        return responses;
+    }
+
+    // businesses/_search-2.json -> businesses/_search
+    private static String key(String name) {
+        var slash = name.lastIndexOf('/');
+        var endpoint = name.substring(slash + 1, name.length() - ".json".length());
+        var dash = endpoint.indexOf('-', 1);
+        return name.substring(0, slash + 1) + (dash < 0 ? endpoint : endpoint.substring(0, dash));
+    }
+
+}
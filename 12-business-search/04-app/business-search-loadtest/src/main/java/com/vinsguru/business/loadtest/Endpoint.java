@@ -0,0 +1,40 @@
+package com.vinsguru.business.loadtest;
+
+import java.util.Locale;
+
+// the endpoints of business-search we load, with the file of their query strings (see RequestMix)
+public enum Endpoint {
+
+    SEARCH("/api/search", "search.txt"),
+    SUGGESTIONS("/api/suggestions", "suggestions.txt");
+
+    private final String path;
+    private final String requests;
+
+    Endpoint(String path, String requests) {
+        this.path = path;
+        this.requests = requests;
+    }
+
+    public String path() {
+        return this.path;
+    }
+
+    public String requests() {
+        return this.requests;
+    }
+
+    public String tag() {
+        return this.name().toLowerCase(Locale.ROOT);
+    }
+
+    public static Endpoint of(String tag) {
+        for (var endpoint : values()) {
+            if (endpoint.tag().equals(tag.trim().toLowerCase(Locale.ROOT))) {
+                return endpoint;
+            }
+        }
+        throw new IllegalArgumentException("unknown endpoint: " + tag + ". supported: search, suggestions");
+    }
+
+}
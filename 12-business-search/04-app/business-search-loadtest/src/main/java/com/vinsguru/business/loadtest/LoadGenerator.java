@@ -0,0 +1,116 @@
+package com.vinsguru.business.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Closed loop: concurrency workers (virtual threads), each sends its next request once the previous one completed.
+With rps > 0, the requests are paced by a schedule shared by the workers: request n is due at start + n / rps.
+Its latency is measured from the time it was due, not from the time it was sent, so a slow response delays
+the requests queued behind it and shows up in their latency too (no coordinated omission).
+With rps = 0, the workers send as fast as the application answers, the latency is measured from the send.
+Latencies are recorded in microseconds. The requests of the warmup are sent but not recorded.
+* */
+public class LoadGenerator {
+
+    private final LoadTestOptions options;
+    private final RequestMix requestMix;
+    private final HttpClient httpClient;
+    private final Map<Endpoint, Recorder> recorders = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, LongAdder> errors = new EnumMap<>(Endpoint.class);
+    private final AtomicLong schedule = new AtomicLong();
+
+    public LoadGenerator(LoadTestOptions options, RequestMix requestMix) {
+        this.options = options;
+        this.requestMix = requestMix;
+        this.httpClient = HttpClient.newBuilder()
+                                    .version(HttpClient.Version.HTTP_1_1)
+                                    .connectTimeout(options.timeout())
+                                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                                    .build();
+        for (var endpoint : options.mix().keySet()) {
+            this.recorders.put(endpoint, new Recorder(3));
+            this.errors.put(endpoint, new LongAdder());
+        }
+    }
+
+    public Map<Endpoint, Result> run() throws InterruptedException {
+        var start = System.nanoTime();
+        var warmupEnd = start + this.options.warmup().toNanos();
+        var end = warmupEnd + this.options.duration().toNanos();
+        var workers = new ArrayList<Thread>();
+        for (var i = 0; i < this.options.concurrency(); i++) {
+            workers.add(Thread.ofVirtual().name("load-", i).start(() -> this.work(start, end)));
+        }
+        TimeUnit.NANOSECONDS.sleep(warmupEnd - System.nanoTime());
+        this.recorders.values().forEach(Recorder::reset);
+        this.errors.values().forEach(LongAdder::reset);
+        for (var worker : workers) {
+            worker.join();
+        }
+        var elapsed = Duration.ofNanos(System.nanoTime() - warmupEnd);
+        var results = new EnumMap<Endpoint, Result>(Endpoint.class);
+        this.recorders.forEach((endpoint, recorder) -> results.put(endpoint, new Result(recorder.getIntervalHistogram(), this.errors.get(endpoint).sum(), elapsed)));
+        return results;
+    }
+
+    public record Result(Histogram latencies, long errors, Duration elapsed) {
+
+        public double throughput() {
+            return this.latencies.getTotalCount() * 1e9 / this.elapsed.toNanos();
+        }
+
+    }
+
+    private void work(long start, long end) {
+        var interval = this.options.rps() > 0 ? 1_000_000_000L / this.options.rps() : 0;
+        while (true) {
+            var due = interval > 0 ? start + this.schedule.getAndIncrement() * interval : System.nanoTime();
+            if (due >= end) {
+                return;
+            }
+            var wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            var request = this.requestMix.next();
+            var failed = !this.send(request);
+            var latency = System.nanoTime() - due;
+            this.recorders.get(request.endpoint()).recordValue(TimeUnit.NANOSECONDS.toMicros(latency));
+            if (failed) {
+                this.errors.get(request.endpoint()).increment();
+            }
+        }
+    }
+
+    // false for a failed request: no response in time, or an error status
+    private boolean send(RequestMix.Request request) {
+        var httpRequest = HttpRequest.newBuilder(request.uri())
+                                     .timeout(this.options.timeout())
+                                     .GET()
+                                     .build();
+        try {
+            var response = this.httpClient.send(httpRequest, HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() < 400;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.vinsguru.business.loadtest;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+java -jar target/loadtest.jar [run|stub] [--name=value ...]
+ run (default): loads the application, then prints the latency distribution of every endpoint
+ stub: runs the elasticsearch stub alone, until the process is stopped
+options:
+ --target=http://localhost:8080    the application
+ --rps=0                           requests per second over all the endpoints. 0: as fast as the application answers
+ --concurrency=16                  requests in flight at most
+ --duration=60s --warmup=10s       measured duration, after the warmup
+ --timeout=5s                      a request without response by then fails
+ --mix=search=80,suggestions=20    relative weights of the endpoints
+ --requests=<dir>                  search.txt / suggestions.txt with the query strings to send, instead of the bundled ones
+ --hgrm=<dir>                      writes the latency distribution of every endpoint to <dir>/<endpoint>.hgrm
+ --stub=false                      starts the elasticsearch stub in this process, for run
+ --stub-port=9200 --stub-latency=5ms --stub-jitter=0ms
+ --stub-responses=<dir>            recorded responses to replay (<index>/<endpoint>*.json), instead of the bundled ones
+* */
+public class LoadTest {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    public static void main(String[] args) throws Exception {
+        var command = args.length > 0 && !args[0].startsWith("--") ? args[0] : null;
+        var options = LoadTestOptions.parse(Objects.isNull(command) ? args : Arrays.copyOfRange(args, 1, args.length));
+        switch (Objects.requireNonNullElse(command, "run")) {
+            case "run" -> run(options);
+            case "stub" -> stub(options);
+            default -> throw new IllegalArgumentException("unknown command: " + command + ". supported: run, stub");
+        }
+    }
+
+    private static void run(LoadTestOptions options) throws Exception {
+        var stub = options.stub() ? startStub(options) : null;
+        try {
+            var requestMix = new RequestMix(options.target(), options.mix(), options.requests());
+            System.out.printf("loading %s for %ss (+%ss warmup), %s, concurrency %d, mix %s%n",
+                              options.target(),
+                              options.duration().toSeconds(),
+                              options.warmup().toSeconds(),
+                              options.rps() > 0 ? options.rps() + " rps" : "unthrottled",
+                              options.concurrency(),
+                              options.mix());
+            var results = new LoadGenerator(options, requestMix).run();
+            report(results);
+            if (Objects.nonNull(options.hgrm())) {
+                writeHistograms(options, results);
+            }
+        } finally {
+            if (Objects.nonNull(stub)) {
+                System.out.printf("elasticsearch stub served %d requests%n", stub.served());
+                stub.close();
+            }
+        }
+    }
+
+    private static void stub(LoadTestOptions options) throws Exception {
+        startStub(options);
+        Thread.currentThread().join();
+    }
+
+    private static ElasticsearchStub startStub(LoadTestOptions options) throws IOException {
+        var stub = ElasticsearchStub.start(options.stubPort(), options.stubResponses(), options.stubLatency(), options.stubJitter());
+        System.out.printf("elasticsearch stub on port %d, latency %sms + up to %sms%n",
+                          options.stubPort(), options.stubLatency().toMillis(), options.stubJitter().toMillis());
+        return stub;
+    }
+
+    private static void report(Map<Endpoint, LoadGenerator.Result> results) {
+        System.out.printf("%-12s %10s %8s %10s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        results.forEach((endpoint, result) -> {
+            var latencies = result.latencies();
+            System.out.printf("%-12s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                              endpoint.tag(),
+                              latencies.getTotalCount(),
+                              result.errors(),
+                              result.throughput(),
+                              latencies.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                              latencies.getValueAtPercentile(90) / MICROS_PER_MILLI,
+                              latencies.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                              latencies.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                              latencies.getMaxValue() / MICROS_PER_MILLI);
+        });
+    }
+
+    // the percentile distribution, in ms. plot it with https://hdrhistogram.github.io/HdrHistogram/plotFiles.html
+    private static void writeHistograms(LoadTestOptions options, Map<Endpoint, LoadGenerator.Result> results) throws IOException {
+        Files.createDirectories(options.hgrm());
+        for (var entry : results.entrySet()) {
+            var file = options.hgrm().resolve(entry.getKey().tag() + ".hgrm");
+            try (var out = new PrintStream(new FileOutputStream(file.toFile()))) {
+                entry.getValue().latencies().outputPercentileDistribution(out, MICROS_PER_MILLI);
+            }
+            System.out.printf("wrote %s%n", file);
+        }
+    }
+
+}
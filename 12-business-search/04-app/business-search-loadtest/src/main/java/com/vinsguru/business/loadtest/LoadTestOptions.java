@@ -0,0 +1,98 @@
+package com.vinsguru.business.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// --name=value options of the command line. see LoadTest for their meaning
+public record LoadTestOptions(String target,
+                              int rps,
+                              int concurrency,
+                              Duration duration,
+                              Duration warmup,
+                              Duration timeout,
+                              Map<Endpoint, Integer> mix,
+                              Path requests,
+                              Path hgrm,
+                              boolean stub,
+                              int stubPort,
+                              Duration stubLatency,
+                              Duration stubJitter,
+                              Path stubResponses) {
+
+    private static final Set<String> NAMES = Set.of(
+            "target", "rps", "concurrency", "duration", "warmup", "timeout", "mix", "requests", "hgrm",
+            "stub", "stub-port", "stub-latency", "stub-jitter", "stub-responses"
+    );
+
+    public static LoadTestOptions parse(String[] args) {
+        var options = new HashMap<String, String>();
+        for (var arg : args) {
+            var index = arg.indexOf('=');
+            if (!arg.startsWith("--") || index < 0 || !NAMES.contains(arg.substring(2, index))) {
+                throw new IllegalArgumentException("unknown option: " + arg);
+            }
+            options.put(arg.substring(2, index), arg.substring(index + 1));
+        }
+        return new LoadTestOptions(
+                options.getOrDefault("target", "http://localhost:8080"),
+                Integer.parseInt(options.getOrDefault("rps", "0")),
+                Integer.parseInt(options.getOrDefault("concurrency", "16")),
+                duration(options.getOrDefault("duration", "60s")),
+                duration(options.getOrDefault("warmup", "10s")),
+                duration(options.getOrDefault("timeout", "5s")),
+                mix(options.getOrDefault("mix", "search=80,suggestions=20")),
+                path(options.get("requests")),
+                path(options.get("hgrm")),
+                Boolean.parseBoolean(options.getOrDefault("stub", "false")),
+                Integer.parseInt(options.getOrDefault("stub-port", "9200")),
+                duration(options.getOrDefault("stub-latency", "5ms")),
+                duration(options.getOrDefault("stub-jitter", "0ms")),
+                path(options.get("stub-responses"))
+        );
+    }
+
+    // 500ms, 10s, 2m
+    static Duration duration(String value) {
+        var text = value.trim().toLowerCase(Locale.ROOT);
+        if (text.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(text.substring(0, text.length() - 2)));
+        }
+        if (text.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(text.substring(0, text.length() - 1)));
+        }
+        if (text.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(text.substring(0, text.length() - 1)));
+        }
+        throw new IllegalArgumentException("invalid duration: " + value + ". expected e.g. 500ms, 10s or 2m");
+    }
+
+    // search=80,suggestions=20. relative weights of the endpoints, the missing ones are not requested
+    static Map<Endpoint, Integer> mix(String value) {
+        var mix = new EnumMap<Endpoint, Integer>(Endpoint.class);
+        for (var entry : value.split(",")) {
+            var index = entry.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("invalid mix: " + value + ". expected e.g. search=80,suggestions=20");
+            }
+            var weight = Integer.parseInt(entry.substring(index + 1).trim());
+            if (weight > 0) {
+                mix.put(Endpoint.of(entry.substring(0, index)), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("mix has no endpoint to request: " + value);
+        }
+        return mix;
+    }
+
+    private static Path path(String value) {
+        return Objects.isNull(value) ? null : Path.of(value);
+    }
+
+}
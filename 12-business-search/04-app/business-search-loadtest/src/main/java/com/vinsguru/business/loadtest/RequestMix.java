@@ -0,0 +1,76 @@
+package com.vinsguru.business.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+Picks the next request: the endpoint by the weights of the mix, then one of its query strings, uniformly.
+The query strings are read from <requests>/search.txt and suggestions.txt, or the bundled ones (src/main/resources/requests).
+* */
+public class RequestMix {
+
+    private final Endpoint[] endpoints;
+    private final int[] cumulativeWeights;
+    private final Map<Endpoint, List<URI>> uris = new EnumMap<>(Endpoint.class);
+
+    public RequestMix(String target, Map<Endpoint, Integer> mix, Path requests) {
+        this.endpoints = mix.keySet().toArray(Endpoint[]::new);
+        this.cumulativeWeights = new int[this.endpoints.length];
+        var total = 0;
+        for (var i = 0; i < this.endpoints.length; i++) {
+            var endpoint = this.endpoints[i];
+            total += mix.get(endpoint);
+            this.cumulativeWeights[i] = total;
+            this.uris.put(endpoint, readLines(requests, endpoint.requests())
+                    .stream()
+                    .map(queryString -> URI.create(target + endpoint.path() + "?" + queryString))
+                    .toList());
+            if (this.uris.get(endpoint).isEmpty()) {
+                throw new IllegalArgumentException("no requests for " + endpoint.tag());
+            }
+        }
+    }
+
+    public Request next() {
+        var random = ThreadLocalRandom.current();
+        var pick = random.nextInt(this.cumulativeWeights[this.cumulativeWeights.length - 1]);
+        var i = 0;
+        while (pick >= this.cumulativeWeights[i]) {
+            i++;
+        }
+        var candidates = this.uris.get(this.endpoints[i]);
+        return new Request(this.endpoints[i], candidates.get(random.nextInt(candidates.size())));
+    }
+
+    public record Request(Endpoint endpoint, URI uri) {
+    }
+
+    private static List<String> readLines(Path directory, String name) {
+        try (var reader = Objects.isNull(directory)
+                ? new BufferedReader(new InputStreamReader(Objects.requireNonNull(RequestMix.class.getResourceAsStream("/requests/" + name)), StandardCharsets.UTF_8))
+                : Files.newBufferedReader(directory.resolve(name))) {
+            var lines = new ArrayList<String>();
+            for (var line = reader.readLine(); Objects.nonNull(line); line = reader.readLine()) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    lines.add(line.trim());
+                }
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.vinsguru.business.config;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.rest5_client.Rest5ClientOptions;
+import co.elastic.clients.transport.rest5_client.Rest5ClientTransport;
+import co.elastic.clients.transport.rest5_client.low_level.Rest5Client;
+import com.vinsguru.business.service.StageMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ElasticsearchClientConfig {
+
+    /*
+    Replaces the auto configured transport, to measure the stages of our elasticsearch requests (see StageMetrics).
+    The clients (blocking, async, reactive and the ones of spring data) share it.
+    * */
+    @Bean
+    public Rest5ClientTransport restClientTransport(Rest5Client restClient,
+                                                    JsonpMapper jsonpMapper,
+                                                    ObjectProvider<Rest5ClientOptions> restClientOptions,
+                                                    StageMetrics stageMetrics) {
+        return new Rest5ClientTransport(restClient, jsonpMapper, restClientOptions.getIfAvailable(), stageMetrics.instrumentation());
+    }
+
+    // shares the transport (connection pool, json mapper) of the blocking client
+    @Bean
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport transport) {
+        return new ElasticsearchAsyncClient(transport);
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.vinsguru.business.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "index.monitor")
+public record IndexMonitorProperties(@DefaultValue("true") boolean enabled,
+                                     @DefaultValue("30s") Duration interval) {
+}
@@ -0,0 +1,9 @@
+package com.vinsguru.business.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "suggestion.local")
+public record LocalSuggestionProperties(@DefaultValue("false") boolean enabled,
+                                        @DefaultValue("1000") int loadBatchSize) {
+}
@@ -0,0 +1,169 @@
+package com.vinsguru.business.config;
+
+import com.vinsguru.business.dto.Projection;
+import com.vinsguru.business.exceptions.BadRequestException;
+import com.vinsguru.business.service.ProjectionMetrics;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.server.WebFilter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// counts the bytes of the /api/search response bodies per projection. see ProjectionMetrics
+@Configuration
+public class ResponseSizeMetricsConfig {
+
+    private static final String SEARCH_PATH = "/api/search";
+    private static final String FIELDS_PARAMETER = "fields";
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public FilterRegistrationBean<Filter> searchResponseSizeFilter(ProjectionMetrics projectionMetrics) {
+        Filter filter = (request, response, chain) -> {
+            var countingResponse = new CountingResponse((HttpServletResponse) response);
+            chain.doFilter(request, countingResponse);
+            Runnable record = () -> record(projectionMetrics, request.getParameter(FIELDS_PARAMETER), countingResponse.count());
+            if (request.isAsyncStarted()) {
+                // the async controller writes the body after the filter chain returned
+                request.getAsyncContext().addListener(new CompletionListener(record));
+            } else {
+                record.run();
+            }
+        };
+        var registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns(SEARCH_PATH);
+        return registration;
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public WebFilter searchResponseSizeWebFilter(ProjectionMetrics projectionMetrics) {
+        return (exchange, chain) -> {
+            if (!SEARCH_PATH.equals(exchange.getRequest().getPath().value())) {
+                return chain.filter(exchange);
+            }
+            var bytes = new AtomicLong();
+            var countingResponse = new ServerHttpResponseDecorator(exchange.getResponse()) {
+                @Override
+                public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                    return super.writeWith(Flux.from(body).doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount())));
+                }
+            };
+            var fields = exchange.getRequest().getQueryParams().getFirst(FIELDS_PARAMETER);
+            return chain.filter(exchange.mutate().response(countingResponse).build())
+                        .doOnSuccess(v -> record(projectionMetrics, fields, bytes.get()));
+        };
+    }
+
+    private static void record(ProjectionMetrics projectionMetrics, String fields, long bytes) {
+        try {
+            projectionMetrics.recordResponseSize(Projection.of(fields), bytes);
+        } catch (BadRequestException e) {
+            // rejected request, nothing to measure
+        }
+    }
+
+    private record CompletionListener(Runnable onComplete) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            this.onComplete.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+    }
+
+    private static class CountingResponse extends HttpServletResponseWrapper {
+
+        private final AtomicLong bytes = new AtomicLong();
+        private ServletOutputStream outputStream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        long count() {
+            return this.bytes.get();
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (this.outputStream == null) {
+                this.outputStream = new CountingOutputStream(super.getOutputStream(), this.bytes);
+            }
+            return this.outputStream;
+        }
+
+    }
+
+    private static class CountingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+        private final AtomicLong bytes;
+
+        CountingOutputStream(ServletOutputStream delegate, AtomicLong bytes) {
+            this.delegate = delegate;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.delegate.write(b);
+            this.bytes.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.delegate.write(b, off, len);
+            this.bytes.addAndGet(len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return this.delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            this.delegate.setWriteListener(writeListener);
+        }
+
+    }
+
+}
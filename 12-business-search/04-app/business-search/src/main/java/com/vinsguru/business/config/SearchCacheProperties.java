@@ -0,0 +1,13 @@
+package com.vinsguru.business.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "search.cache")
+public record SearchCacheProperties(@DefaultValue("true") boolean enabled,
+                                    @DefaultValue("10000") long maximumSize,
+                                    @DefaultValue("1m") Duration ttl,
+                                    @DefaultValue("3") int coordinatePrecision) { // 3 decimals is ~110 meters
+}
@@ -0,0 +1,18 @@
+package com.vinsguru.business.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/*
+BLOCKING: the request thread waits for elasticsearch. set spring.threads.virtual.enabled=true to handle requests on virtual threads.
+ASYNC: requests are sent with the async elasticsearch client and the servlet thread is released while they are in flight.
+* */
+@ConfigurationProperties(prefix = "search.execution")
+public record SearchExecutionProperties(@DefaultValue("blocking") Mode mode) {
+
+    public enum Mode {
+        BLOCKING,
+        ASYNC
+    }
+
+}
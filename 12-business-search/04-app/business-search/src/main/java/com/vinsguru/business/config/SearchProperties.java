@@ -0,0 +1,192 @@
+package com.vinsguru.business.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+// settings which shape the search request built by NativeQueryBuilder
+@ConfigurationProperties(prefix = "search")
+public record SearchProperties(@DefaultValue Pagination pagination,
+                               @DefaultValue Facets facets,
+                               @DefaultValue Batch batch,
+                               @DefaultValue Fuzziness fuzziness,
+                               @DefaultValue TextMatch textMatch,
+                               @DefaultValue KeywordFilters keywordFilters,
+                               @DefaultValue Popularity popularity,
+                               @DefaultValue Rescore rescore,
+                               @DefaultValue Routing routing) {
+
+    public record Pagination(@DefaultValue("10000") int maxDepth,                 // page * size limit for page number based pagination
+                             @DefaultValue("1m") Duration pointInTimeKeepAlive,   // how long a cursor stays valid between pages
+                             @DefaultValue("10000") int trackTotalHitsUpTo) {     // matching businesses are counted accurately up to this number
+    }
+
+    /*
+    exact: the facet aggregations count every matching business.
+    sampler: the facet aggregations count the sampleSize best matching businesses per shard. these are not a uniform sample
+    (the best matches lean towards some values), so their counts are not scaled up: they are the counts among the best matches.
+    random_sampler: the facet aggregations count a random sample of the matching businesses, picked with the given probability
+    (at most 0.5, or 1). elasticsearch scales the counts up. a sample of fewer than minHits businesses is too small for estimates:
+    the search then runs again with exact facets, which are cheap on so few matches. the streaming search can not run again,
+    it counts exactly.
+    * */
+    public record Facets(@DefaultValue("exact") Mode mode,
+                         @DefaultValue("1000") int sampleSize,
+                         @DefaultValue("0.1") double probability,
+                         @DefaultValue("100") int minHits) {
+
+        public enum Mode {
+            EXACT,
+            SAMPLER,
+            RANDOM_SAMPLER
+        }
+
+        public Facets withMode(Mode mode) {
+            return new Facets(mode, this.sampleSize, this.probability, this.minHits);
+        }
+
+        // whether a search whose random sample counted sampledCount businesses runs again with exact facets. -1 when not sampled
+        public boolean fallsBack(long sampledCount) {
+            return this.mode == Mode.RANDOM_SAMPLER && sampledCount >= 0 && sampledCount < this.minHits;
+        }
+
+    }
+
+    // /api/search/batch: searches per batch, and how many of them elasticsearch runs concurrently
+    public record Batch(@DefaultValue("20") int maxSize,
+                        @DefaultValue("5") int maxConcurrentSearches) {
+    }
+
+    /*
+    always: the search terms match with fuzziness (edit distance 1), which expands every term of the query into its variants.
+    adaptive: the terms match exactly first. a search without filters matching fewer than minExactHits businesses is run again
+    with fuzziness, a filtered one keeps its exact matches. opt-in, it changes the results of the searches which match exactly.
+    * */
+    public record Fuzziness(@DefaultValue("always") Mode mode,
+                            @DefaultValue("1") int minExactHits) {
+
+        public enum Mode {
+            ALWAYS,
+            ADAPTIVE
+        }
+
+    }
+
+    /*
+    most_fields: the search terms are matched on name, category, offerings, address and description, each with its boost.
+    every term is looked up (and with fuzziness, expanded into its variants) once per field.
+    catch_all: the search terms are matched (and expanded) on search_all, the copy of all these fields, once.
+    the exact terms are still looked up on the boosted fields, to rank the matching businesses. requires an index with search_all.
+    * */
+    public record TextMatch(@DefaultValue("most_fields") Mode mode) {
+
+        public enum Mode {
+            MOST_FIELDS,
+            CATCH_ALL
+        }
+
+    }
+
+    /*
+    case_insensitive: state, category and offerings are matched with case insensitive term queries, run as automatons.
+    normalized: they are matched on their .lowercase sub-fields (lowercase normalizer) with the values lowercased here.
+    plain term queries, which the node query cache can reuse. requires an index with these sub-fields, see IndexMigrationService.
+    * */
+    public record KeywordFilters(@DefaultValue("case_insensitive") Mode mode) {
+
+        public enum Mode {
+            CASE_INSENSITIVE,
+            NORMALIZED
+        }
+
+    }
+
+    /*
+    none: businesses are ranked by how well they match the search terms.
+    rank_feature: their rating and number of reviews add to the score, through rank_feature queries on the popularity fields.
+    these scores are bounded, so elasticsearch still skips the documents which can not make it into the top hits.
+    requires an index with the popularity fields, see IndexMigrationService.
+    function_score: the same scores, added by a function_score around the query. every matching business is scored.
+    * */
+    public record Popularity(@DefaultValue("none") Mode mode) {
+
+        public enum Mode {
+            NONE,
+            RANK_FEATURE,
+            FUNCTION_SCORE
+        }
+
+    }
+
+    /*
+    Profiles of the second ranking phase, picked by the rescore request parameter (defaultProfile when absent, none when empty).
+    The best windowSize hits per shard are rescored: queryWeight * score + rescoreQueryWeight * the sum of the signals, each times its weight.
+    The window is fixed, a page starting past it is not rescored.
+    proximity: the search terms as a phrase in the name (slop 2). geoDecay: gauss decay of the distance to the latitude / longitude
+    of the request, halved at geoDecayScale. a weight of 0 disables the signal.
+    * */
+    public record Rescore(String defaultProfile,
+                          @DefaultValue Map<String, Profile> profiles) {
+
+        public record Profile(@DefaultValue("50") int windowSize,
+                              @DefaultValue("1.0") float queryWeight,
+                              @DefaultValue("1.0") float rescoreQueryWeight,
+                              @DefaultValue("0") float proximityWeight,
+                              @DefaultValue("0") float geoDecayWeight,
+                              @DefaultValue("10km") String geoDecayScale) {
+        }
+
+    }
+
+    /*
+    none: the businesses are spread over the shards by their id, every search asks all the shards.
+    state: the searches filtered by state are routed to the shard of the state (its lowercased name is the routing key),
+    the others still ask all the shards. only while the index behind the alias is routed by state, see IndexLayoutMonitor.
+    hotspotRatio: a shard is reported as a hotspot when its documents or its searches exceed this ratio of the mean of the shards.
+    * */
+    public record Routing(@DefaultValue("none") Mode mode,
+                          @DefaultValue("1.5") double hotspotRatio) {
+
+        public enum Mode {
+            NONE,
+            STATE
+        }
+
+    }
+
+    public static SearchProperties defaults() {
+        return new Binder().bindOrCreate("search", SearchProperties.class);
+    }
+
+    public SearchProperties withFacets(Facets facets) {
+        return new SearchProperties(this.pagination, facets, this.batch, this.fuzziness, this.textMatch, this.keywordFilters, this.popularity, this.rescore, this.routing);
+    }
+
+    public SearchProperties withExactFacets() {
+        return this.withFacets(this.facets.withMode(Facets.Mode.EXACT));
+    }
+
+    public SearchProperties withTextMatch(TextMatch textMatch) {
+        return new SearchProperties(this.pagination, this.facets, this.batch, this.fuzziness, textMatch, this.keywordFilters, this.popularity, this.rescore, this.routing);
+    }
+
+    public SearchProperties withKeywordFilters(KeywordFilters keywordFilters) {
+        return new SearchProperties(this.pagination, this.facets, this.batch, this.fuzziness, this.textMatch, keywordFilters, this.popularity, this.rescore, this.routing);
+    }
+
+    public SearchProperties withPopularity(Popularity popularity) {
+        return new SearchProperties(this.pagination, this.facets, this.batch, this.fuzziness, this.textMatch, this.keywordFilters, popularity, this.rescore, this.routing);
+    }
+
+    public SearchProperties withRescore(Rescore rescore) {
+        return new SearchProperties(this.pagination, this.facets, this.batch, this.fuzziness, this.textMatch, this.keywordFilters, this.popularity, rescore, this.routing);
+    }
+
+    public SearchProperties withRouting(Routing routing) {
+        return new SearchProperties(this.pagination, this.facets, this.batch, this.fuzziness, this.textMatch, this.keywordFilters, this.popularity, this.rescore, routing);
+    }
+
+}
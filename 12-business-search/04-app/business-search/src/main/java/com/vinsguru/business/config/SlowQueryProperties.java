@@ -0,0 +1,14 @@
+package com.vinsguru.business.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "search.slow-query")
+public record SlowQueryProperties(@DefaultValue("true") boolean enabled,
+                                  @DefaultValue("500ms") Duration threshold,      // searches taking longer are captured
+                                  @DefaultValue("0.1") double profileSampleRate,  // share of the captured searches re-run with profile: true
+                                  @DefaultValue("1") int maxConcurrentProfiles,   // profiling is expensive, further samples are skipped meanwhile
+                                  @DefaultValue("100") int retained) {            // most recent captures listed by the admin endpoint
+}
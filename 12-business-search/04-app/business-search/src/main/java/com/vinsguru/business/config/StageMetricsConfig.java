@@ -0,0 +1,103 @@
+package com.vinsguru.business.config;
+
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.dto.SuggestionRequestParameters;
+import com.vinsguru.business.service.SearchStages;
+import com.vinsguru.business.service.StageMetrics;
+import com.vinsguru.business.util.NativeQueryBuilder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.ServletModelAttributeMethodProcessor;
+
+import java.util.List;
+
+/*
+The servlet side of the StageMetrics:
+ - binding: the query parameters are bound into SearchRequestParameters / SuggestionRequestParameters by the model attribute processor,
+   this resolver times it. It also binds the stages of the request, tagged with the rules which fire for its parameters
+   (and its rescore profile).
+ - response serialization: from ResponseSerializationAdvice, right before the body is written, to the completion of the request.
+   for async requests, that is the completion of their async dispatch.
+The reactive stack is not measured.
+* */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class StageMetricsConfig implements WebMvcConfigurer {
+
+    private final StageMetrics stageMetrics;
+    private final SearchProperties searchProperties;
+
+    public StageMetricsConfig(StageMetrics stageMetrics, SearchProperties searchProperties) {
+        this.stageMetrics = stageMetrics;
+        this.searchProperties = searchProperties;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new TimedBindingResolver(this.stageMetrics, this.searchProperties));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ResponseSerializationInterceptor());
+    }
+
+    // custom resolvers are consulted before the catch-all model attribute processor, which binds our parameter records otherwise
+    private static class TimedBindingResolver implements HandlerMethodArgumentResolver {
+
+        private final ServletModelAttributeMethodProcessor delegate = new ServletModelAttributeMethodProcessor(true);
+        private final StageMetrics stageMetrics;
+        private final SearchProperties searchProperties;
+
+        TimedBindingResolver(StageMetrics stageMetrics, SearchProperties searchProperties) {
+            this.stageMetrics = stageMetrics;
+            this.searchProperties = searchProperties;
+        }
+
+        @Override
+        public boolean supportsParameter(MethodParameter parameter) {
+            var type = parameter.getParameterType();
+            return type == SearchRequestParameters.class || type == SuggestionRequestParameters.class;
+        }
+
+        @Override
+        public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                      NativeWebRequest webRequest, WebDataBinderFactory binderFactory) throws Exception {
+            var start = System.nanoTime();
+            var startAllocatedBytes = StageMetrics.allocatedBytes();
+            var argument = this.delegate.resolveArgument(parameter, mavContainer, webRequest, binderFactory);
+            var nanos = System.nanoTime() - start;
+            var allocatedBytes = StageMetrics.allocatedBytes() - startAllocatedBytes;
+            var stages = argument instanceof SearchRequestParameters searchRequestParameters
+                    ? this.stageMetrics.start(StageMetrics.Pipeline.SEARCH, NativeQueryBuilder.firedRules(searchRequestParameters, this.searchProperties))
+                    : this.stageMetrics.start(StageMetrics.Pipeline.SUGGESTION, StageMetrics.NO_RULES);
+            stages.record(StageMetrics.Stage.BINDING, nanos, allocatedBytes);
+            webRequest.setAttribute(SearchStages.REQUEST_ATTRIBUTE, stages, RequestAttributes.SCOPE_REQUEST);
+            return argument;
+        }
+
+    }
+
+    private static class ResponseSerializationInterceptor implements HandlerInterceptor {
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+            if (request.getAttribute(SearchStages.REQUEST_ATTRIBUTE) instanceof SearchStages stages) {
+                stages.responseSerializationFinished();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.vinsguru.business.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "suggestion.cache")
+public record SuggestionCacheProperties(@DefaultValue("true") boolean enabled,
+                                        @DefaultValue("10000") long maximumSize,
+                                        @DefaultValue("10m") Duration ttl) {
+}
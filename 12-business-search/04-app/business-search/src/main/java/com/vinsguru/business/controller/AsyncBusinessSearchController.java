@@ -0,0 +1,40 @@
+package com.vinsguru.business.controller;
+
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.dto.SearchResponse;
+import com.vinsguru.business.dto.SuggestionRequestParameters;
+import com.vinsguru.business.service.SearchService;
+import com.vinsguru.business.service.SuggestionService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// same API as BusinessSearchController. the servlet thread is released while elasticsearch works on the request
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "search.execution.mode", havingValue = "async")
+public class AsyncBusinessSearchController {
+
+    private final SearchService searchService;
+    private final SuggestionService suggestionService;
+
+    public AsyncBusinessSearchController(SearchService searchService, SuggestionService suggestionService) {
+        this.searchService = searchService;
+        this.suggestionService = suggestionService;
+    }
+
+    @GetMapping("/api/suggestions")
+    public CompletableFuture<List<String>> suggest(SuggestionRequestParameters parameters){
+        return this.suggestionService.fetchSuggestionsAsync(parameters);
+    }
+
+    @GetMapping("/api/search")
+    public CompletableFuture<SearchResponse> search(SearchRequestParameters parameters){
+        return this.searchService.searchAsync(parameters);
+    }
+
+}
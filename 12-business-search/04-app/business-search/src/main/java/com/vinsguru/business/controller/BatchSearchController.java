@@ -0,0 +1,30 @@
+package com.vinsguru.business.controller;
+
+import com.vinsguru.business.dto.BatchSearchResponse;
+import com.vinsguru.business.service.BatchSearchService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import tools.jackson.databind.JsonNode;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// a json array of searches, each with the query parameters of /api/search as properties. served by a single _msearch
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BatchSearchController {
+
+    private final BatchSearchService batchSearchService;
+
+    public BatchSearchController(BatchSearchService batchSearchService) {
+        this.batchSearchService = batchSearchService;
+    }
+
+    @PostMapping("/api/search/batch")
+    public CompletableFuture<BatchSearchResponse> search(@RequestBody List<JsonNode> requests){
+        return this.batchSearchService.search(requests);
+    }
+
+}
@@ -5,12 +5,16 @@ import com.vinsguru.business.dto.SearchResponse;
 import com.vinsguru.business.dto.SuggestionRequestParameters;
 import com.vinsguru.business.service.SearchService;
 import com.vinsguru.business.service.SuggestionService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "search.execution.mode", havingValue = "blocking", matchIfMissing = true)
 public class BusinessSearchController {
 
     private final SearchService searchService;
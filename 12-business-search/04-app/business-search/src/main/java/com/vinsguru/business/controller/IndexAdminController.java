@@ -0,0 +1,53 @@
+package com.vinsguru.business.controller;
+
+import com.vinsguru.business.dto.IndexLayout;
+import com.vinsguru.business.dto.IndexMigration;
+import com.vinsguru.business.dto.ShardReport;
+import com.vinsguru.business.event.IndexReloadedEvent;
+import com.vinsguru.business.service.IndexMigrationService;
+import com.vinsguru.business.service.ShardReportService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/indices")
+public class IndexAdminController {
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final IndexMigrationService indexMigrationService;
+    private final ShardReportService shardReportService;
+
+    public IndexAdminController(ApplicationEventPublisher eventPublisher,
+                                IndexMigrationService indexMigrationService,
+                                ShardReportService shardReportService) {
+        this.eventPublisher = eventPublisher;
+        this.indexMigrationService = indexMigrationService;
+        this.shardReportService = shardReportService;
+    }
+
+    // to be called by the data loading job once it has (re)loaded an index
+    @PostMapping("/{index}/reloaded")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void reloaded(@PathVariable String index){
+        this.eventPublisher.publishEvent(new IndexReloadedEvent(index));
+    }
+
+    // reindexes into a new index with the current mapping and the given layout (sort, routing, shards), then moves the alias over. blocks until done
+    @PostMapping("/{index}/migration")
+    public IndexMigration migrate(@PathVariable String index, IndexLayout layout){
+        return this.indexMigrationService.migrate(index, layout);
+    }
+
+    // documents, searches and top states per shard, with the hotspots. e.g. to check the balance of the routing by state
+    @GetMapping("/{index}/shards")
+    public ShardReport shards(@PathVariable String index){
+        return this.shardReportService.report(index);
+    }
+
+}
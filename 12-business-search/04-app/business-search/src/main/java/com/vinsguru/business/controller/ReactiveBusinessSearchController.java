@@ -0,0 +1,48 @@
+package com.vinsguru.business.controller;
+
+import com.vinsguru.business.dto.BatchSearchResponse;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.dto.SearchResponse;
+import com.vinsguru.business.dto.SuggestionRequestParameters;
+import com.vinsguru.business.service.BatchSearchService;
+import com.vinsguru.business.service.ReactiveSearchService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import tools.jackson.databind.JsonNode;
+
+import java.util.List;
+
+// same API as BusinessSearchController for the webflux stack. run with the "reactive" profile
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveBusinessSearchController {
+
+    private final ReactiveSearchService reactiveSearchService;
+    private final BatchSearchService batchSearchService;
+
+    public ReactiveBusinessSearchController(ReactiveSearchService reactiveSearchService, BatchSearchService batchSearchService) {
+        this.reactiveSearchService = reactiveSearchService;
+        this.batchSearchService = batchSearchService;
+    }
+
+    @GetMapping("/api/suggestions")
+    public Flux<String> suggest(SuggestionRequestParameters parameters){
+        return this.reactiveSearchService.fetchSuggestions(parameters);
+    }
+
+    @GetMapping("/api/search")
+    public Mono<SearchResponse> search(SearchRequestParameters parameters){
+        return this.reactiveSearchService.search(parameters);
+    }
+
+    @PostMapping("/api/search/batch")
+    public Mono<BatchSearchResponse> search(@RequestBody List<JsonNode> requests){
+        return Mono.fromFuture(() -> this.batchSearchService.search(requests));
+    }
+
+}
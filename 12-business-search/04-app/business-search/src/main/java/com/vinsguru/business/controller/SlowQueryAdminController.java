@@ -0,0 +1,28 @@
+package com.vinsguru.business.controller;
+
+import com.vinsguru.business.dto.SlowQuery;
+import com.vinsguru.business.service.SlowQueryLog;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/slow-queries")
+public class SlowQueryAdminController {
+
+    private final SlowQueryLog slowQueryLog;
+
+    public SlowQueryAdminController(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    // the slowest of the recently captured searches, slowest first
+    @GetMapping
+    public List<SlowQuery> slowest(@RequestParam(defaultValue = "20") int limit){
+        return this.slowQueryLog.slowest(limit);
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.vinsguru.business.controller;
+
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.service.StreamingSearchService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+// same parameters and response structure as /api/search. the results are the raw elasticsearch documents
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class StreamingSearchController {
+
+    private final StreamingSearchService streamingSearchService;
+
+    public StreamingSearchController(StreamingSearchService streamingSearchService) {
+        this.streamingSearchService = streamingSearchService;
+    }
+
+    @GetMapping("/api/search/stream")
+    public ResponseEntity<StreamingResponseBody> search(SearchRequestParameters parameters){
+        return ResponseEntity.ok()
+                             .contentType(MediaType.APPLICATION_JSON)
+                             .body(this.streamingSearchService.search(parameters));
+    }
+
+}
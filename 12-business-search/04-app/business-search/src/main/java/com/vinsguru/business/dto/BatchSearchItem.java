@@ -0,0 +1,23 @@
+package com.vinsguru.business.dto;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ProblemDetail;
+
+// outcome of one search of a batch: either its response, or the problem (RFC9457) which made it fail
+public record BatchSearchItem(SearchResponse response,
+                              ProblemDetail error) {
+
+    public static BatchSearchItem success(SearchResponse response) {
+        return new BatchSearchItem(response, null);
+    }
+
+    public static BatchSearchItem failure(HttpStatus status, String detail) {
+        return failure(status.value(), detail);
+    }
+
+    public static BatchSearchItem failure(int status, String detail) {
+        return new BatchSearchItem(null, ProblemDetail.forStatusAndDetail(HttpStatusCode.valueOf(status), detail));
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.vinsguru.business.dto;
+
+import java.util.List;
+
+// one item per search of the batch, in the order of the request
+public record BatchSearchResponse(List<BatchSearchItem> items) {
+}
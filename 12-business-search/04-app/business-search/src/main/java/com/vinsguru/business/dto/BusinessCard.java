@@ -0,0 +1,10 @@
+package com.vinsguru.business.dto;
+
+import org.springframework.data.elasticsearch.annotations.Field;
+
+// what the list views render. see Projection.CARD
+public record BusinessCard(String id,
+                           String name,
+                           @Field(name = "avg_rating") Float rating,
+                           String url) {
+}
@@ -3,6 +3,20 @@ package com.vinsguru.business.dto;
 import java.util.List;
 
 public record Facet(String name,
-                    List<FacetItem> items) {
+                    List<FacetItem> items,
+                    boolean approximate) { // the counts are those of a sample of the matching businesses
+
+    public static Facet exact(String name, List<FacetItem> items) {
+        return new Facet(name, items, false);
+    }
+
+    /*
+    Counts of the sampledCount best matching businesses out of the scopeCount in the scope of the facet.
+    Not scaled up: the best matches are not a uniform sample, so the counts are the counts among the best matches.
+    * */
+    public static Facet sampled(String name, List<FacetItem> sampledItems, long scopeCount, long sampledCount) {
+        return new Facet(name, sampledItems, sampledCount >= 0 && sampledCount < scopeCount);
+    }
+
 }
 
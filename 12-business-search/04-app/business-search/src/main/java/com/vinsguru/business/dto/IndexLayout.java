@@ -0,0 +1,41 @@
+package com.vinsguru.business.dto;
+
+import com.vinsguru.business.exceptions.BadRequestException;
+import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.SortMode;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/*
+How IndexMigrationService lays out the new index. Bound from the query parameters of the migration.
+sort: the name of the SortMode the index is sorted by on disk, relevance (default) for an unsorted index.
+routing: the field whose (lowercased) value routes a business to its shard. state, or null for the routing by id.
+shards: the number of primary shards, the one of the index settings by default.
+* */
+public record IndexLayout(String sort,
+                          String routing,
+                          Integer shards) {
+
+    public static final IndexLayout DEFAULT = new IndexLayout(null, null, null);
+
+    public IndexLayout {
+        sort = SortMode.of(sort).tag();
+        if (Objects.nonNull(routing) && !Constants.Business.STATE.equals(routing.trim().toLowerCase(Locale.ROOT))) {
+            throw new BadRequestException("unknown routing: " + routing + ". supported: state");
+        }
+        routing = Objects.isNull(routing) ? null : Constants.Business.STATE;
+        if (Objects.nonNull(shards) && shards < 1) {
+            throw new BadRequestException("shards must be at least 1");
+        }
+    }
+
+    public SortMode sortMode() {
+        return SortMode.of(this.sort);
+    }
+
+    public boolean isRoutedByState() {
+        return Objects.nonNull(this.routing);
+    }
+
+}
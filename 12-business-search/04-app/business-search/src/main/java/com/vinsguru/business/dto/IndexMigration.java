@@ -0,0 +1,17 @@
+package com.vinsguru.business.dto;
+
+import java.util.List;
+
+/*
+Outcome of a reindex behind an alias, see IndexMigrationService.
+previousIndices: the indices the alias pointed to before. a concrete index of the alias name is gone (its documents were copied),
+the others are kept until they are deleted by hand, e.g. once a rollback is no longer needed.
+layout: the sort, routing and shards of the new index.
+* */
+public record IndexMigration(String alias,
+                             List<String> previousIndices,
+                             String index,
+                             IndexLayout layout,
+                             long documents,
+                             long timeTaken) {
+}
@@ -3,5 +3,11 @@ package com.vinsguru.business.dto;
 public record Pagination(int page,
                          int size,
                          long totalElements,
-                         int totalPages) {
+                         String totalRelation, // eq when totalElements is accurate, gte when it is a lower bound
+                         int totalPages,
+                         String next) { // token of the next page in cursor based pagination. null on the last page
+
+    public static final String EQUAL_TO = "eq";
+    public static final String GREATER_THAN_OR_EQUAL_TO = "gte";
+
 }
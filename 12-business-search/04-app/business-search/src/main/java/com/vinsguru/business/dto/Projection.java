@@ -0,0 +1,52 @@
+package com.vinsguru.business.dto;
+
+import com.vinsguru.business.exceptions.BadRequestException;
+import com.vinsguru.business.util.Constants;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/*
+Named projections of the businesses we return for the "fields" request parameter.
+The includes are sent as the source filter, so only these fields are transferred and deserialized.
+An empty includes list fetches the whole source.
+* */
+public enum Projection {
+
+    CARD(BusinessCard.class, List.of(Constants.Business.NAME, Constants.Business.RATING, Constants.Business.URL)),
+    FULL(Business.class, List.of());
+
+    private final Class<?> type;
+    private final List<String> includes;
+
+    Projection(Class<?> type, List<String> includes) {
+        this.type = type;
+        this.includes = includes;
+    }
+
+    public Class<?> type() {
+        return this.type;
+    }
+
+    public List<String> includes() {
+        return this.includes;
+    }
+
+    public String tag() {
+        return this.name().toLowerCase(Locale.ROOT);
+    }
+
+    public static Projection of(String fields) {
+        if (Objects.isNull(fields)) {
+            return FULL;
+        }
+        for (var projection : values()) {
+            if (projection.tag().equals(fields.trim().toLowerCase(Locale.ROOT))) {
+                return projection;
+            }
+        }
+        throw new BadRequestException("unknown fields: " + fields + ". supported: card, full");
+    }
+
+}
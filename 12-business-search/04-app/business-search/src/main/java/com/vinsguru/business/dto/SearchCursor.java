@@ -0,0 +1,52 @@
+package com.vinsguru.business.dto;
+
+import com.vinsguru.business.exceptions.BadRequestException;
+import com.vinsguru.business.util.MatchMode;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/*
+Position of a cursor based (point in time + search_after) pagination.
+Clients only see it as an opaque token which they pass back as the cursor parameter.
+The match mode is decided by the first page, null until then.
+* */
+public record SearchCursor(String pointInTimeId,
+                           List<Object> searchAfter,
+                           int page,
+                           MatchMode matchMode) {
+
+    public static final String START = "*";
+
+    private static final JsonMapper JSON_MAPPER = JsonMapper.builder().build();
+
+    public static SearchCursor start(String pointInTimeId) {
+        return new SearchCursor(pointInTimeId, List.of(), 0, null);
+    }
+
+    public static SearchCursor decode(String token) {
+        try {
+            var json = Base64.getUrlDecoder().decode(token);
+            return JSON_MAPPER.readValue(json, SearchCursor.class);
+        } catch (IllegalArgumentException | JacksonException e) {
+            throw new BadRequestException("invalid cursor");
+        }
+    }
+
+    public SearchCursor next(String pointInTimeId, List<Object> searchAfter) {
+        return new SearchCursor(pointInTimeId, searchAfter, this.page + 1, this.matchMode);
+    }
+
+    public SearchCursor withMatchMode(MatchMode matchMode) {
+        return new SearchCursor(this.pointInTimeId, this.searchAfter, this.page, matchMode);
+    }
+
+    public String encode() {
+        var json = JSON_MAPPER.writeValueAsString(this);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
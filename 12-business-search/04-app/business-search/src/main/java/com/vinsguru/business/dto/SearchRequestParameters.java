@@ -1,9 +1,22 @@
 package com.vinsguru.business.dto;
 
 import com.vinsguru.business.exceptions.BadRequestException;
+import com.vinsguru.business.util.DistanceUnits;
+import com.vinsguru.business.util.FacetField;
+import com.vinsguru.business.util.SortMode;
 import org.springframework.util.StringUtils;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /*
 For an application with 1000s of attributes, we can use Map<K,V>.
@@ -20,7 +33,15 @@ public record SearchRequestParameters(String query,
                                       String state,
                                       String offerings,
                                       Integer page,  // 0 indexed
-                                      Integer size){
+                                      Integer size,
+                                      String cursor,  // "*" to start cursor based pagination, then the token of Pagination.next
+                                      Boolean exactTotal, // count all the matching businesses instead of stopping at the tracking threshold
+                                      String fields,  // name of the Projection. full by default
+                                      String facet,   // selected facet values, e.g. offerings:Wi-Fi||offerings:Parking||state:Texas
+                                      String rescore, // name of a rescore profile, see SearchProperties.Rescore
+                                      String sort){   // name of the SortMode. relevance by default
+
+    private static final Pattern FACET_SEPARATOR = Pattern.compile("\\|\\|");
 
     public SearchRequestParameters {
         if(!StringUtils.hasText(query)){
@@ -28,6 +49,113 @@ public record SearchRequestParameters(String query,
         }
         page = Objects.requireNonNullElse(page, 0);
         size = Objects.requireNonNullElse(size, 10);
+        exactTotal = Objects.requireNonNullElse(exactTotal, false);
+        fields = Projection.of(fields).tag();
+        sort = SortMode.of(sort).tag();
+        parseFacetSelections(facet, offerings); // validates the facet keys
+    }
+
+    /*
+    Equivalent requests produce equal canonical parameters, so they can be used as a cache key.
+    query, state and offerings are matched case-insensitively. distance is converted to meters.
+    coordinates are rounded to the given number of decimals.
+    * */
+    public SearchRequestParameters canonical(int coordinatePrecision) {
+        return new SearchRequestParameters(
+                this.query.trim().toLowerCase(Locale.ROOT),
+                Objects.isNull(this.distance) ? null : DistanceUnits.normalize(this.distance),
+                round(this.latitude, coordinatePrecision),
+                round(this.longitude, coordinatePrecision),
+                this.rating,
+                lowerCase(this.state),
+                lowerCase(this.offerings),
+                this.page,
+                this.size,
+                this.cursor,
+                this.exactTotal,
+                this.fields,
+                canonicalFacet(this.facet),
+                this.rescore,
+                this.sort
+        );
+    }
+
+    public Projection projection() {
+        return Projection.of(this.fields);
+    }
+
+    public SortMode sortMode() {
+        return SortMode.of(this.sort);
+    }
+
+    /*
+    Selected values per facet. Values of the same facet are alternatives, selections of different facets all have to match.
+    The offerings parameter is a selection of the offerings facet.
+    * */
+    public Map<FacetField, List<String>> facetSelections() {
+        return parseFacetSelections(this.facet, this.offerings);
+    }
+
+    // whether anything but the search terms narrows the matching businesses: state, rating, distance or a facet selection
+    public boolean hasFilters() {
+        return Objects.nonNull(this.state)
+                || Objects.nonNull(this.rating)
+                || Stream.of(this.distance, this.latitude, this.longitude).allMatch(Objects::nonNull)
+                || !this.facetSelections().isEmpty();
+    }
+
+    public boolean isCursorPagination() {
+        return Objects.nonNull(this.cursor);
+    }
+
+    public boolean isCursorStart() {
+        return SearchCursor.START.equals(this.cursor);
+    }
+
+    private static Double round(Double value, int precision) {
+        return Objects.isNull(value) ? null : BigDecimal.valueOf(value).setScale(precision, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    private static Map<FacetField, List<String>> parseFacetSelections(String facet, String offerings) {
+        var selections = new EnumMap<FacetField, List<String>>(FacetField.class);
+        if (Objects.nonNull(offerings)) {
+            selections.computeIfAbsent(FacetField.OFFERINGS, k -> new ArrayList<>()).add(offerings);
+        }
+        if (Objects.isNull(facet)) {
+            return selections;
+        }
+        for (var selection : FACET_SEPARATOR.split(facet)) {
+            if (!StringUtils.hasText(selection)) {
+                continue;
+            }
+            var index = selection.indexOf(':');
+            if (index <= 0 || index == selection.length() - 1) {
+                throw new BadRequestException("invalid facet selection: " + selection + ". expected key:value");
+            }
+            var values = selections.computeIfAbsent(FacetField.of(selection.substring(0, index)), k -> new ArrayList<>());
+            var value = selection.substring(index + 1).trim();
+            if (!values.contains(value)) {
+                values.add(value);
+            }
+        }
+        return selections;
+    }
+
+    // facet values are matched case-insensitively, and the order of the selections does not matter
+    private static String canonicalFacet(String facet) {
+        if (Objects.isNull(facet)) {
+            return null;
+        }
+        return FACET_SEPARATOR.splitAsStream(facet)
+                              .filter(StringUtils::hasText)
+                              .map(selection -> selection.trim().toLowerCase(Locale.ROOT))
+                              .distinct()
+                              .sorted()
+                              .collect(Collectors.joining("||"));
+    }
+
+    private static String lowerCase(String value) {
+        return Objects.isNull(value) ? null : value.trim().toLowerCase(Locale.ROOT);
     }
 
 }
@@ -1,9 +1,23 @@
 package com.vinsguru.business.dto;
 
+import com.vinsguru.business.util.MatchMode;
+
 import java.util.List;
 
-public record SearchResponse(List<Business> results,
+public record SearchResponse(List<?> results, // Business or BusinessCard, depending on the Projection
                              List<Facet> facets,
                              Pagination pagination,
-                             long timeTaken) {
-}
\ No newline at end of file
+                             long timeTaken,
+                             boolean cached,
+                             String matchMode) { // exact | fuzzy, see MatchMode
+
+    // a cached response reports the time it took to serve it from the cache
+    public SearchResponse fromCache(long timeTaken) {
+        return new SearchResponse(this.results, this.facets, this.pagination, timeTaken, true, this.matchMode);
+    }
+
+    public SearchResponse withMatchMode(MatchMode matchMode) {
+        return new SearchResponse(this.results, this.facets, this.pagination, this.timeTaken, this.cached, matchMode.tag());
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.vinsguru.business.dto;
+
+import java.util.List;
+
+/*
+Load of one shard of an index, see ShardReportService.
+documents and sizeInBytes: of the primary. queries: the query phases run by all its copies since they started.
+states: the states with the most businesses on the shard, a hint at which routing keys make it hot.
+* */
+public record ShardLoad(String index,
+                        int shard,
+                        long documents,
+                        long sizeInBytes,
+                        long queries,
+                        List<FacetItem> states,
+                        boolean hotspot) {
+}
@@ -0,0 +1,13 @@
+package com.vinsguru.business.dto;
+
+import java.util.List;
+
+/*
+How the documents and the searches of an alias are spread over its shards. hotspots: the shards with
+more than hotspotRatio times the mean documents or queries of the shards, as <index>/<shard>.
+* */
+public record ShardReport(String alias,
+                          double hotspotRatio,
+                          List<ShardLoad> shards,
+                          List<String> hotspots) {
+}
@@ -0,0 +1,15 @@
+package com.vinsguru.business.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.Instant;
+
+// a search which exceeded the slow query threshold. profiled: its profile breakdown is written to the slow query profile log
+public record SlowQuery(String id,
+                        Instant timestamp,
+                        long elapsedMillis,  // as seen by the service: building, sending and mapping the search
+                        long tookMillis,     // as reported by elasticsearch
+                        SearchRequestParameters parameters,
+                        @JsonRawValue String request, // the compiled elasticsearch search request
+                        boolean profiled) {
+}
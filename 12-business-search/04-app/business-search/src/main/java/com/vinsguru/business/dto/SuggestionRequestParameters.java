@@ -3,6 +3,7 @@ package com.vinsguru.business.dto;
 import com.vinsguru.business.exceptions.BadRequestException;
 import org.springframework.util.StringUtils;
 
+import java.util.Locale;
 import java.util.Objects;
 
 public record SuggestionRequestParameters(String prefix,
@@ -15,4 +16,18 @@ public record SuggestionRequestParameters(String prefix,
         limit = Objects.requireNonNullElse(limit, 10);
     }
 
+    /*
+    Key of the cached and of the coalesced suggestions, the prefix itself is sent to elasticsearch (see NativeQueryBuilder.toSuggestQuery).
+    The "simple" analyzer of the completion field lowercases the prefix and drops what is not a letter, so differently typed prefixes
+    produce the same suggestions (see SuggestionTest).
+    * */
+    public String normalizedPrefix() {
+        return this.prefix.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // equivalent requests produce equal canonical parameters
+    public SuggestionRequestParameters canonical() {
+        return new SuggestionRequestParameters(this.normalizedPrefix(), this.limit);
+    }
+
 }
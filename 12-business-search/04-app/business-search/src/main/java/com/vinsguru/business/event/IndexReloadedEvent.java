@@ -0,0 +1,12 @@
+package com.vinsguru.business.event;
+
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+
+// published whenever the documents of an index have been (re)loaded, so that anything derived from them can be dropped
+public record IndexReloadedEvent(String indexName) {
+
+    public boolean isFor(IndexCoordinates index) {
+        return index.getIndexName().equals(this.indexName);
+    }
+
+}
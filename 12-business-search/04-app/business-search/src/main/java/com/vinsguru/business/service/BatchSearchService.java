@@ -0,0 +1,212 @@
+package com.vinsguru.business.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.RequestItem;
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.BatchSearchItem;
+import com.vinsguru.business.dto.BatchSearchResponse;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.exceptions.BadRequestException;
+import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.ElasticsearchUtil;
+import com.vinsguru.business.util.MatchMode;
+import com.vinsguru.business.util.NativeQueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/*
+Runs several independent searches (e.g. one per carousel of a page) with a single _msearch request.
+Each search is validated and compiled on its own, so an invalid search fails its item only, not the batch.
+Cursor pagination is not supported, and the batch bypasses the search cache.
+* */
+@Service
+public class BatchSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchSearchService.class);
+
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+    private final SearchResponseMapper searchResponseMapper;
+    private final InFlightRequests inFlightRequests;
+    private final SearchProperties searchProperties;
+    private final IndexLayoutMonitor indexLayoutMonitor;
+    private final JsonMapper jsonMapper;
+
+    public BatchSearchService(ElasticsearchAsyncClient elasticsearchAsyncClient,
+                              SearchResponseMapper searchResponseMapper,
+                              InFlightRequests inFlightRequests,
+                              SearchProperties searchProperties,
+                              IndexLayoutMonitor indexLayoutMonitor,
+                              JsonMapper jsonMapper) {
+        this.elasticsearchAsyncClient = elasticsearchAsyncClient;
+        this.searchResponseMapper = searchResponseMapper;
+        this.inFlightRequests = inFlightRequests;
+        this.searchProperties = searchProperties;
+        this.indexLayoutMonitor = indexLayoutMonitor;
+        this.jsonMapper = jsonMapper;
+    }
+
+    public CompletableFuture<BatchSearchResponse> search(List<JsonNode> requests) {
+        log.info("batch search request: {} searches", Objects.isNull(requests) ? 0 : requests.size());
+        if (Objects.isNull(requests) || requests.isEmpty()) {
+            throw new BadRequestException("batch can not be empty");
+        }
+        var maxSize = this.searchProperties.batch().maxSize();
+        if (requests.size() > maxSize) {
+            throw new BadRequestException("batch size " + requests.size() + " exceeds the maximum of " + maxSize);
+        }
+
+        // items which fail validation keep their slot, the valid ones are sent to elasticsearch
+        var matchMode = MatchMode.initial(null, this.searchProperties.fuzziness());
+        var properties = this.indexLayoutMonitor.searchProperties();
+        var items = new BatchSearchItem[requests.size()];
+        var positions = new ArrayList<Integer>();
+        var searches = new ArrayList<Search>();
+        var requestItems = new ArrayList<RequestItem>();
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                var search = new Search(this.toParameters(requests.get(i)), matchMode, properties);
+                requestItems.add(search.requestItem()); // compiling the search validates it
+                searches.add(search);
+                positions.add(i);
+            } catch (BadRequestException e) {
+                items[i] = BatchSearchItem.failure(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+        }
+        if (searches.isEmpty()) {
+            return CompletableFuture.completedFuture(new BatchSearchResponse(List.of(items)));
+        }
+        return this.execute(searches, requestItems)
+                   .thenApply(results -> this.toResponse(items, positions, results));
+    }
+
+    /*
+    See SearchService.executeSearch for the fallbacks: the searches which fall back run again together, in a further _msearch.
+    A search falls back to fuzziness and to exact facets at most once each.
+    * */
+    private CompletableFuture<List<SearchResult>> execute(List<Search> searches, List<RequestItem> requestItems) {
+        return this.msearch(requestItems)
+                   .thenCompose(responses -> {
+                       var results = new ArrayList<SearchResult>(responses.size());
+                       var fallbacks = new ArrayList<Integer>();
+                       var fallbackSearches = new ArrayList<Search>();
+                       for (int i = 0; i < responses.size(); i++) {
+                           var result = new SearchResult(searches.get(i), responses.get(i));
+                           results.add(result);
+                           var fallback = this.fallback(result);
+                           if (Objects.nonNull(fallback)) {
+                               fallbacks.add(i);
+                               fallbackSearches.add(fallback);
+                           }
+                       }
+                       if (fallbacks.isEmpty()) {
+                           return CompletableFuture.completedFuture(results);
+                       }
+                       var fallbackItems = fallbackSearches.stream()
+                                                           .map(Search::requestItem)
+                                                           .toList();
+                       return this.execute(fallbackSearches, fallbackItems)
+                                  .thenApply(fallbackResults -> {
+                                      for (int i = 0; i < fallbacks.size(); i++) {
+                                          results.set(fallbacks.get(i), fallbackResults.get(i));
+                                      }
+                                      return results;
+                                  });
+                   });
+    }
+
+    // the search to run again, or null
+    private Search fallback(SearchResult result) {
+        var search = result.search();
+        var item = result.item();
+        if (item.isFailure()) {
+            return null;
+        }
+        if (search.matchMode().fallsBack(search.parameters(), SearchService.totalHits(item.result()), this.searchProperties.fuzziness())) {
+            return new Search(search.parameters(), MatchMode.FUZZY, search.properties());
+        }
+        if (search.properties().facets().fallsBack(this.searchResponseMapper.sampledCount(item.result().aggregations()))) {
+            return new Search(search.parameters(), search.matchMode(), search.properties().withExactFacets());
+        }
+        return null;
+    }
+
+    private CompletableFuture<List<MultiSearchResponseItem<Map>>> msearch(List<RequestItem> searches) {
+        var request = MsearchRequest.of(builder -> builder.searches(searches)
+                                                          .maxConcurrentSearches(this.searchProperties.batch().maxConcurrentSearches()));
+        return this.inFlightRequests.async(() -> this.elasticsearchAsyncClient.msearch(request, Map.class))
+                                    .thenApply(response -> response.responses());
+    }
+
+    // the results are in the order of the searches
+    private BatchSearchResponse toResponse(BatchSearchItem[] items, List<Integer> positions, List<SearchResult> results) {
+        for (int i = 0; i < results.size(); i++) {
+            var search = results.get(i).search();
+            var item = results.get(i).item();
+            items[positions.get(i)] = item.isFailure()
+                    ? toFailure(item.failure())
+                    : BatchSearchItem.success(this.searchResponseMapper.toSearchResponse(search.parameters(), null, item.result()).withMatchMode(search.matchMode()));
+        }
+        return new BatchSearchResponse(List.of(items));
+    }
+
+    // binds like the query parameters of /api/search. validation errors of the parameters become a BadRequestException
+    private SearchRequestParameters toParameters(JsonNode request) {
+        SearchRequestParameters parameters;
+        try {
+            parameters = this.jsonMapper.treeToValue(request, SearchRequestParameters.class);
+        } catch (JacksonException e) {
+            throw toBadRequest(e);
+        }
+        if (Objects.isNull(parameters)) {
+            throw new BadRequestException("search can not be null");
+        }
+        if (parameters.isCursorPagination()) {
+            throw new BadRequestException("cursor pagination is not supported by the batch search");
+        }
+        return parameters;
+    }
+
+    private record Search(SearchRequestParameters parameters, MatchMode matchMode, SearchProperties properties) {
+
+        RequestItem requestItem() {
+            var query = NativeQueryBuilder.toSearchQuery(this.parameters, null, this.properties, this.matchMode);
+            log.info("{} bool query: {}", this.matchMode.tag(), query.getQuery());
+            var body = ElasticsearchUtil.buildSearchRequestBody(query);
+            return RequestItem.of(builder -> builder.header(h -> h.index(Constants.Index.BUSINESS.getIndexName()).routing(query.getRoute()))
+                                                    .body(body));
+        }
+
+    }
+
+    private record SearchResult(Search search, MultiSearchResponseItem<Map> item) {
+    }
+
+    private static BadRequestException toBadRequest(JacksonException e) {
+        for (Throwable cause = e; Objects.nonNull(cause); cause = cause.getCause()) {
+            if (cause instanceof BadRequestException badRequestException) {
+                return badRequestException;
+            }
+        }
+        return new BadRequestException(e.getOriginalMessage());
+    }
+
+    private static BatchSearchItem toFailure(ErrorResponse errorResponse) {
+        var error = errorResponse.error();
+        return BatchSearchItem.failure(errorResponse.status(), Objects.requireNonNullElse(error.reason(), error.type()));
+    }
+
+}
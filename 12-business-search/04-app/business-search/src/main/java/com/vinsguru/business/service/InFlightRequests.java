@@ -0,0 +1,52 @@
+package com.vinsguru.business.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// number of elasticsearch requests in flight, per execution mode. compare it with the jvm.threads.* metrics
+@Component
+public class InFlightRequests {
+
+    private final AtomicInteger blocking = new AtomicInteger();
+    private final AtomicInteger async = new AtomicInteger();
+    private final AtomicInteger reactive = new AtomicInteger();
+
+    public InFlightRequests(MeterRegistry meterRegistry) {
+        Gauge.builder("elasticsearch.requests.inflight", this.blocking, AtomicInteger::get).tag("mode", "blocking").register(meterRegistry);
+        Gauge.builder("elasticsearch.requests.inflight", this.async, AtomicInteger::get).tag("mode", "async").register(meterRegistry);
+        Gauge.builder("elasticsearch.requests.inflight", this.reactive, AtomicInteger::get).tag("mode", "reactive").register(meterRegistry);
+    }
+
+    public <T> T blocking(Supplier<T> supplier) {
+        this.blocking.incrementAndGet();
+        try {
+            return supplier.get();
+        } finally {
+            this.blocking.decrementAndGet();
+        }
+    }
+
+    public <T> CompletableFuture<T> async(Supplier<CompletableFuture<T>> supplier) {
+        this.async.incrementAndGet();
+        try {
+            return supplier.get().whenComplete((result, throwable) -> this.async.decrementAndGet());
+        } catch (RuntimeException e) {
+            this.async.decrementAndGet();
+            throw e;
+        }
+    }
+
+    public <T> Mono<T> reactive(Mono<T> mono) {
+        return Mono.defer(() -> {
+            this.reactive.incrementAndGet();
+            return mono.doFinally(signal -> this.reactive.decrementAndGet());
+        });
+    }
+
+}
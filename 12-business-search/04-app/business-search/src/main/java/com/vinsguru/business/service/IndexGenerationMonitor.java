@@ -0,0 +1,100 @@
+package com.vinsguru.business.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.indices.stats.IndicesStats;
+import com.vinsguru.business.config.IndexMonitorProperties;
+import com.vinsguru.business.event.IndexReloadedEvent;
+import com.vinsguru.business.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Detects changes to the monitored indices by polling their stats, and publishes an IndexReloadedEvent when they change.
+ * Every reload (detected or announced via the admin endpoint) bumps the generation of the index.
+ * The generation can be used to tag derived data (caches, in-memory copies) and discard it once the index has moved on.
+ * */
+@Service
+public class IndexGenerationMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexGenerationMonitor.class);
+    private static final List<IndexCoordinates> MONITORED_INDICES = List.of(
+            Constants.Index.SUGGESTION,
+            Constants.Index.BUSINESS
+    );
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IndexMonitorProperties properties;
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public IndexGenerationMonitor(ElasticsearchClient elasticsearchClient,
+                                  ApplicationEventPublisher eventPublisher,
+                                  IndexMonitorProperties properties) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.eventPublisher = eventPublisher;
+        this.properties = properties;
+    }
+
+    public long generation(IndexCoordinates index) {
+        return this.generationOf(index.getIndexName()).get();
+    }
+
+    @EventListener
+    public void onIndexReloaded(IndexReloadedEvent event) {
+        var generation = this.generationOf(event.indexName()).incrementAndGet();
+        log.info("index {} is now at generation {}", event.indexName(), generation);
+    }
+
+    @Scheduled(fixedDelayString = "${index.monitor.interval:30s}")
+    public void poll() {
+        if (!this.properties.enabled()) {
+            return;
+        }
+        for (var index : MONITORED_INDICES) {
+            var indexName = index.getIndexName();
+            var token = this.currentToken(indexName);
+            var previous = this.tokens.put(indexName, token);
+            if (previous != null && !previous.equals(token)) {
+                log.info("change detected on index {}", indexName);
+                this.eventPublisher.publishEvent(new IndexReloadedEvent(indexName));
+            }
+        }
+    }
+
+    // uuid changes when the index (or the index behind the alias) is recreated, the counters when documents are written
+    private String currentToken(String indexName) {
+        try {
+            var response = this.elasticsearchClient.indices().stats(builder -> builder.index(indexName));
+            return new TreeMap<>(response.indices()).entrySet()
+                                                    .stream()
+                                                    .map(e -> e.getKey() + ":" + this.token(e.getValue()))
+                                                    .reduce("", String::concat);
+        } catch (Exception e) {
+            log.debug("unable to fetch stats of index {}: {}", indexName, e.getMessage());
+            return "unavailable";
+        }
+    }
+
+    private String token(IndicesStats stats) {
+        var indexing = Objects.requireNonNull(stats.primaries().indexing());
+        return "%s/%d/%d;".formatted(stats.uuid(), indexing.indexTotal(), indexing.deleteTotal());
+    }
+
+    private AtomicLong generationOf(String indexName) {
+        return this.generations.computeIfAbsent(indexName, k -> new AtomicLong());
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.vinsguru.business.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.event.IndexReloadedEvent;
+import com.vinsguru.business.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Objects;
+
+/*
+ * Knows whether the index behind the businesses alias is routed by state, from the _meta its migration recorded (see IndexMigrationService).
+ * The searches are routed by state (search.routing.mode=state) only while it is: a routed search on an index routed by id misses businesses.
+ * The layout is read at startup and on every reload of the index. A migration publishes one, migrations of other instances
+ * are detected by the IndexGenerationMonitor.
+ * */
+@Service
+public class IndexLayoutMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexLayoutMonitor.class);
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final SearchProperties routed;
+    private final SearchProperties unrouted;
+    private volatile boolean routedByState;
+
+    public IndexLayoutMonitor(ElasticsearchClient elasticsearchClient, SearchProperties searchProperties) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.routed = searchProperties;
+        this.unrouted = searchProperties.withRouting(new SearchProperties.Routing(SearchProperties.Routing.Mode.NONE, searchProperties.routing().hotspotRatio()));
+    }
+
+    // the properties to build the searches with, routed by state only on an index routed by state
+    public SearchProperties searchProperties() {
+        return this.routedByState ? this.routed : this.unrouted;
+    }
+
+    public boolean isRoutedByState() {
+        return this.routedByState;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        this.refresh();
+    }
+
+    @EventListener
+    public void onIndexReloaded(IndexReloadedEvent event) {
+        if (event.isFor(Constants.Index.BUSINESS)) {
+            this.refresh();
+        }
+    }
+
+    // routed when every index behind the alias is. keeps the previous layout when the mapping can not be read
+    private void refresh() {
+        if (this.routed.routing().mode() == SearchProperties.Routing.Mode.NONE) {
+            return;
+        }
+        try {
+            var indexName = Constants.Index.BUSINESS.getIndexName();
+            var mappings = this.elasticsearchClient.indices().getMapping(builder -> builder.index(indexName)).mappings();
+            var routedByState = !mappings.isEmpty() && mappings.values().stream().allMatch(mapping -> {
+                var meta = mapping.mappings().meta();
+                return Objects.nonNull(meta.get(Constants.IndexMeta.ROUTING))
+                        && Constants.Business.STATE.equals(meta.get(Constants.IndexMeta.ROUTING).to(String.class));
+            });
+            if (routedByState != this.routedByState) {
+                log.info("index {} is {}", indexName, routedByState ? "routed by state" : "not routed by state, the searches ask all the shards");
+            }
+            this.routedByState = routedByState;
+        } catch (Exception e) {
+            log.warn("unable to read the layout of index {}: {}", Constants.Index.BUSINESS.getIndexName(), e.getMessage());
+        }
+    }
+
+}
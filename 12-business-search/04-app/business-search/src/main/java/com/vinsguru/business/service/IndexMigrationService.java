@@ -0,0 +1,245 @@
+package com.vinsguru.business.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import co.elastic.clients.elasticsearch.ingest.Pipeline;
+import co.elastic.clients.json.JsonData;
+import com.vinsguru.business.dto.IndexLayout;
+import com.vinsguru.business.dto.IndexMigration;
+import com.vinsguru.business.event.IndexReloadedEvent;
+import com.vinsguru.business.exceptions.BadRequestException;
+import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.ElasticsearchUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/*
+Moves an index to the current settings, mapping and ingest pipeline (src/main/resources/elasticsearch) without downtime:
+ - stores the pipeline of the new index as <alias>-<timestamp>-pipeline, it fills the fields which are derived from the others (e.g. popularity)
+ - creates <alias>-<timestamp> with the current settings and mapping, and that pipeline as its default pipeline
+ - reindexes the documents of the alias into it, then checks that all of them arrived
+ - switches the alias over in one atomic _aliases request, searches and writes go on against the old index until then
+The old index keeps its own pipeline, so writes to it are not affected by the layout of the new one.
+A failed migration deletes the new index and its pipeline again. Deleting an old index later on leaves its pipeline behind.
+An index which is not behind an alias yet (a concrete index named like the alias) is replaced by the alias in the same request.
+Its documents are already copied, but cursors opened on it fail from then on. Indices which were behind the alias are kept.
+Documents written to the old index during the reindex are not copied, so run it while the data loading job is idle.
+Documents written through the alias later on go through the pipeline as well.
+The IndexLayout of the migration shapes the new index:
+ - sort: sorted on disk by the fields of a SortMode, so that the searches sorted the same way terminate early
+ - routing: the documents are routed by their state, the pipeline sets the routing of every document (see SearchProperties.Routing).
+   the routing of the reindexed documents is discarded first, so a migration without it moves back to the routing by id.
+   it is recorded in the _meta of the mapping, the searches are only routed while the index behind the alias is (see IndexLayoutMonitor)
+ - shards: the number of primary shards
+All of them are fixed when an index is created, so changing them takes another migration.
+* */
+@Service
+public class IndexMigrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexMigrationService.class);
+    private static final DateTimeFormatter INDEX_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS").withZone(ZoneOffset.UTC);
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+    private static final String PIPELINE_SUFFIX = "-pipeline";
+    private static final String DISCARD_ROUTING = "discard"; // the pipeline of the new index decides the routing
+    private static final Map<String, IndexDefinition> DEFINITIONS = Map.of(
+            Constants.Index.BUSINESS.getIndexName(), new IndexDefinition(
+                    "elasticsearch/business-index-setting.json",
+                    "elasticsearch/business-index-mapping.json",
+                    "elasticsearch/business-pipeline.json",
+                    "elasticsearch/business-routing-pipeline.json"
+            )
+    );
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public IndexMigrationService(ElasticsearchClient elasticsearchClient, ApplicationEventPublisher eventPublisher) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public IndexMigration migrate(String alias) {
+        return this.migrate(alias, IndexLayout.DEFAULT);
+    }
+
+    // one migration at a time
+    public synchronized IndexMigration migrate(String alias, IndexLayout layout) {
+        var definition = DEFINITIONS.get(alias);
+        if (Objects.isNull(definition)) {
+            throw new BadRequestException("index " + alias + " can not be migrated");
+        }
+        try {
+            var start = System.nanoTime();
+            var previousIndices = this.currentIndices(alias);
+            if (previousIndices.isEmpty()) {
+                throw new BadRequestException("index " + alias + " does not exist");
+            }
+            var index = alias + "-" + INDEX_SUFFIX.format(Instant.now());
+            log.info("migrating {} from {} to {}, layout {}", alias, previousIndices, index, layout);
+            var pipeline = this.putPipeline(index, definition, layout);
+            long documents;
+            try {
+                this.createIndex(index, definition, pipeline, layout);
+                documents = this.reindex(alias, index);
+                this.switchAlias(alias, previousIndices, index);
+            } catch (RuntimeException | IOException e) {
+                this.delete(index, pipeline);
+                throw e;
+            }
+            this.eventPublisher.publishEvent(new IndexReloadedEvent(alias));
+            var timeTaken = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            log.info("migrated {} documents of {} to {} in {}ms", documents, alias, index, timeTaken);
+            return new IndexMigration(alias, previousIndices, index, layout, documents, timeTaken);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // routingPipeline: the processors which route the documents by state, appended to the pipeline of a routed layout
+    private record IndexDefinition(String settings, String mapping, String pipeline, String routingPipeline) {
+    }
+
+    // the indices behind the alias, or the concrete index of that name
+    private List<String> currentIndices(String alias) throws IOException {
+        var indices = this.elasticsearchClient.indices();
+        if (indices.existsAlias(builder -> builder.name(alias)).value()) {
+            return indices.getAlias(builder -> builder.name(alias))
+                          .aliases()
+                          .keySet()
+                          .stream()
+                          .sorted()
+                          .toList();
+        }
+        return indices.exists(builder -> builder.index(alias)).value() ? List.of(alias) : List.of();
+    }
+
+    // the pipeline of the new index only. returns its id
+    private String putPipeline(String index, IndexDefinition definition, IndexLayout layout) throws IOException {
+        var id = index + PIPELINE_SUFFIX;
+        var pipeline = readPipeline(definition.pipeline());
+        var processors = new ArrayList<>(pipeline.processors());
+        var description = pipeline.description();
+        if (layout.isRoutedByState()) {
+            var routingPipeline = readPipeline(definition.routingPipeline());
+            processors.addAll(routingPipeline.processors());
+            description += ". " + routingPipeline.description();
+        }
+        var pipelineDescription = description;
+        this.elasticsearchClient.ingest().putPipeline(builder -> builder.id(id)
+                                                                        .description(pipelineDescription)
+                                                                        .processors(processors));
+        return id;
+    }
+
+    // the failure of the migration is reported, not the one of the clean up
+    private void delete(String index, String pipeline) {
+        try {
+            this.elasticsearchClient.indices().delete(builder -> builder.index(index).ignoreUnavailable(true));
+            this.elasticsearchClient.ingest().deletePipeline(builder -> builder.id(pipeline));
+        } catch (RuntimeException | IOException e) {
+            log.warn("unable to delete index {} and pipeline {} of the failed migration: {}", index, pipeline, e.getMessage());
+        }
+    }
+
+    private static Pipeline readPipeline(String resource) throws IOException {
+        try (var json = new ClassPathResource(resource).getInputStream()) {
+            return Pipeline.of(builder -> builder.withJson(json));
+        }
+    }
+
+    private void createIndex(String index, IndexDefinition definition, String pipeline, IndexLayout layout) throws IOException {
+        try (var settings = new ClassPathResource(definition.settings()).getInputStream();
+             var mapping = new ClassPathResource(definition.mapping()).getInputStream()) {
+            var indexSettings = IndexSettings.of(builder -> {
+                builder.withJson(settings).defaultPipeline(pipeline);
+                var indexSort = layout.sortMode();
+                if (!indexSort.isRelevance()) {
+                    builder.sort(ElasticsearchUtil.buildDescendingIndexSort(indexSort.fields()));
+                }
+                if (Objects.nonNull(layout.shards())) {
+                    builder.numberOfShards(String.valueOf(layout.shards()));
+                }
+                return builder;
+            });
+            var typeMapping = TypeMapping.of(builder -> builder.withJson(mapping).meta(buildMeta(layout)));
+            this.elasticsearchClient.indices().create(builder -> builder.index(index)
+                                                                        .settings(indexSettings)
+                                                                        .mappings(typeMapping));
+        }
+    }
+
+    // the layout as the _meta of the mapping. an index without it (created before, or outside of a migration) is not routed
+    private static Map<String, JsonData> buildMeta(IndexLayout layout) {
+        var meta = new HashMap<String, JsonData>();
+        meta.put(Constants.IndexMeta.SORT, JsonData.of(layout.sort()));
+        if (layout.isRoutedByState()) {
+            meta.put(Constants.IndexMeta.ROUTING, JsonData.of(layout.routing()));
+        }
+        return meta;
+    }
+
+    // runs as a task, so that large indices do not run into the timeout of the http client. returns the documents copied
+    private long reindex(String source, String target) throws IOException {
+        var task = this.elasticsearchClient.reindex(builder -> builder.source(s -> s.index(source))
+                                                                      .dest(d -> d.index(target).routing(DISCARD_ROUTING))
+                                                                      .waitForCompletion(false))
+                                           .task();
+        while (true) {
+            var status = this.elasticsearchClient.tasks().get(builder -> builder.taskId(task));
+            if (status.completed()) {
+                if (Objects.nonNull(status.error())) {
+                    throw new IllegalStateException("reindex of " + source + " failed: " + status.error().reason());
+                }
+                break;
+            }
+            sleep(POLL_INTERVAL);
+        }
+        this.elasticsearchClient.indices().refresh(builder -> builder.index(target));
+        var expected = this.elasticsearchClient.count(builder -> builder.index(source)).count();
+        var documents = this.elasticsearchClient.count(builder -> builder.index(target)).count();
+        if (documents != expected) {
+            throw new IllegalStateException("reindex of " + source + " copied " + documents + " of " + expected + " documents");
+        }
+        return documents;
+    }
+
+    private void switchAlias(String alias, List<String> previousIndices, String index) throws IOException {
+        var concreteIndex = previousIndices.equals(List.of(alias));
+        var actions = new ArrayList<Action>();
+        actions.add(Action.of(builder -> builder.add(a -> a.index(index).alias(alias))));
+        if (concreteIndex) {
+            actions.add(Action.of(builder -> builder.removeIndex(r -> r.index(alias))));
+        } else {
+            previousIndices.forEach(previous -> actions.add(Action.of(builder -> builder.remove(r -> r.index(previous).alias(alias)))));
+        }
+        this.elasticsearchClient.indices().updateAliases(builder -> builder.actions(actions));
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the reindex", e);
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.vinsguru.business.service;
+
+import com.vinsguru.business.config.LocalSuggestionProperties;
+import com.vinsguru.business.dto.SuggestionRequestParameters;
+import com.vinsguru.business.event.IndexReloadedEvent;
+import com.vinsguru.business.util.CompletionTrie;
+import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.NativeQueryBuilder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Serves completion suggestions from an in-memory trie of every search_term of the suggestions index.
+ * The trie is rebuilt in the background whenever the index is reloaded and swapped in atomically.
+ * Elasticsearch stays the source of truth. Until the first build completes, the engine is not ready.
+ * */
+@Service
+public class LocalSuggestionEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalSuggestionEngine.class);
+    private static final String INPUT = "input";
+    private static final String WEIGHT = "weight";
+    private static final int DEFAULT_WEIGHT = 1;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final LocalSuggestionProperties properties;
+    private final AtomicReference<CompletionTrie> trie = new AtomicReference<>();
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(Thread.ofPlatform()
+                                                                                             .name("suggestion-trie-rebuild")
+                                                                                             .daemon(true)
+                                                                                             .factory());
+
+    public LocalSuggestionEngine(ElasticsearchOperations elasticsearchOperations, LocalSuggestionProperties properties) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.properties = properties;
+    }
+
+    public boolean isReady() {
+        return this.properties.enabled() && Objects.nonNull(this.trie.get());
+    }
+
+    public List<String> suggest(SuggestionRequestParameters parameters) {
+        return this.trie.get().suggest(parameters.normalizedPrefix(), parameters.limit());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        this.scheduleRebuild();
+    }
+
+    @EventListener
+    public void onIndexReloaded(IndexReloadedEvent event) {
+        if (event.isFor(Constants.Index.SUGGESTION)) {
+            this.scheduleRebuild();
+        }
+    }
+
+    // with the application context: a rebuild in progress is interrupted, the events of the shutdown do not schedule another one
+    @PreDestroy
+    public void shutdown() {
+        this.rebuildExecutor.shutdownNow();
+    }
+
+    private void scheduleRebuild() {
+        if (this.properties.enabled() && !this.rebuildExecutor.isShutdown()) {
+            this.rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+        try {
+            var start = System.nanoTime();
+            var builder = CompletionTrie.builder();
+            var query = NativeQueryBuilder.toSuggestionTermsQuery(this.properties.loadBatchSize());
+            try (var hits = this.elasticsearchOperations.searchForStream(query, Map.class, Constants.Index.SUGGESTION)) {
+                hits.forEachRemaining(hit -> addSearchTerm(builder, hit.getContent().get(Constants.Suggestion.SEARCH_TERM)));
+            }
+            var rebuilt = builder.build();
+            this.trie.set(rebuilt);
+            log.info("suggestion trie rebuilt with {} inputs in {} ms", rebuilt.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            // keep serving the previous trie (or elasticsearch, if there is none yet)
+            log.warn("unable to rebuild the suggestion trie", e);
+        }
+    }
+
+    // a completion field accepts "term", ["term1", "term2"], {"input": ..., "weight": n} or a list of those objects
+    private static void addSearchTerm(CompletionTrie.Builder builder, Object value) {
+        switch (value) {
+            case String input -> builder.add(input, DEFAULT_WEIGHT);
+            case Collection<?> values -> values.forEach(v -> addSearchTerm(builder, v));
+            case Map<?, ?> map -> {
+                var weight = map.get(WEIGHT) instanceof Number n ? n.intValue() : DEFAULT_WEIGHT;
+                var inputs = map.get(INPUT) instanceof Collection<?> c ? c : List.of(Objects.requireNonNullElse(map.get(INPUT), List.of()));
+                inputs.stream()
+                      .filter(String.class::isInstance)
+                      .forEach(input -> builder.add((String) input, weight));
+            }
+            case null, default -> { }
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.vinsguru.business.service;
+
+import com.vinsguru.business.dto.Projection;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/*
+What a projection saves, per projection:
+ - search.hits.read: time of the elasticsearch call beyond the engine took time, i.e. transferring and deserializing the hits
+ - search.response.size: bytes of the /api/search response body
+* */
+@Component
+public class ProjectionMetrics {
+
+    private final Map<Projection, Timer> readTimers = new EnumMap<>(Projection.class);
+    private final Map<Projection, DistributionSummary> responseSizes = new EnumMap<>(Projection.class);
+
+    public ProjectionMetrics(MeterRegistry meterRegistry) {
+        for (var projection : Projection.values()) {
+            this.readTimers.put(projection, Timer.builder("search.hits.read")
+                                                 .tag("projection", projection.tag())
+                                                 .register(meterRegistry));
+            this.responseSizes.put(projection, DistributionSummary.builder("search.response.size")
+                                                                  .baseUnit("bytes")
+                                                                  .tag("projection", projection.tag())
+                                                                  .register(meterRegistry));
+        }
+    }
+
+    public void recordRead(Projection projection, long elapsedNanos, long tookMillis) {
+        var read = Duration.ofNanos(elapsedNanos).minusMillis(tookMillis);
+        this.readTimers.get(projection).record(read.isNegative() ? Duration.ZERO : read);
+    }
+
+    public void recordResponseSize(Projection projection, long bytes) {
+        this.responseSizes.get(projection).record(bytes);
+    }
+
+}
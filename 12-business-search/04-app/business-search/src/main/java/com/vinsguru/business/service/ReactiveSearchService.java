@@ -0,0 +1,169 @@
+package com.vinsguru.business.service;
+
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.SearchCursor;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.dto.SearchResponse;
+import com.vinsguru.business.dto.SuggestionRequestParameters;
+import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.MatchMode;
+import com.vinsguru.business.util.NativeQueryBuilder;
+import com.vinsguru.business.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.ReactiveSearchHits;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+// non-blocking counterpart of SearchService and SuggestionService, sharing their caches and the local suggestion engine
+@Service
+public class ReactiveSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveSearchService.class);
+
+    private final ReactiveElasticsearchOperations reactiveElasticsearchOperations;
+    private final SearchCache searchCache;
+    private final SuggestionCache suggestionCache;
+    private final LocalSuggestionEngine localSuggestionEngine;
+    private final SearchResponseMapper searchResponseMapper;
+    private final InFlightRequests inFlightRequests;
+    private final SearchProperties searchProperties;
+    private final IndexLayoutMonitor indexLayoutMonitor;
+    private final ProjectionMetrics projectionMetrics;
+    private final SlowQueryLog slowQueryLog;
+    private final SingleFlight<SearchRequestParameters, SearchResponse> searchSingleFlight;
+    private final SingleFlight<SuggestionRequestParameters, List<String>> suggestionSingleFlight;
+
+    public ReactiveSearchService(ReactiveElasticsearchOperations reactiveElasticsearchOperations,
+                                 SearchCache searchCache,
+                                 SuggestionCache suggestionCache,
+                                 LocalSuggestionEngine localSuggestionEngine,
+                                 SearchResponseMapper searchResponseMapper,
+                                 InFlightRequests inFlightRequests,
+                                 SearchProperties searchProperties,
+                                 IndexLayoutMonitor indexLayoutMonitor,
+                                 ProjectionMetrics projectionMetrics,
+                                 SlowQueryLog slowQueryLog,
+                                 MeterRegistry meterRegistry) {
+        this.reactiveElasticsearchOperations = reactiveElasticsearchOperations;
+        this.searchCache = searchCache;
+        this.suggestionCache = suggestionCache;
+        this.localSuggestionEngine = localSuggestionEngine;
+        this.searchResponseMapper = searchResponseMapper;
+        this.inFlightRequests = inFlightRequests;
+        this.searchProperties = searchProperties;
+        this.indexLayoutMonitor = indexLayoutMonitor;
+        this.projectionMetrics = projectionMetrics;
+        this.slowQueryLog = slowQueryLog;
+        this.searchSingleFlight = new SingleFlight<>("search", meterRegistry);
+        this.suggestionSingleFlight = new SingleFlight<>("suggestion", meterRegistry);
+    }
+
+    /*
+    The suggestions are emitted on demand. The trie and the completion suggester rank every candidate before the first suggestion,
+    so it is the emitting, not the ranking, which follows the demand.
+    * */
+    public Flux<String> fetchSuggestions(SuggestionRequestParameters parameters) {
+        log.info("suggestion request: {}", parameters);
+        if (this.localSuggestionEngine.isReady()) {
+            return Flux.defer(() -> Flux.fromIterable(this.localSuggestionEngine.suggest(parameters)));
+        }
+        return this.suggestionCache.getReactive(parameters, p -> this.suggestionSingleFlight.executeReactive(p.canonical(), key -> this.searchSuggestions(p)))
+                                   .flatMapIterable(suggestions -> suggestions);
+    }
+
+    // a request cancelled by its client cancels the search, unless other requests still wait for the same search
+    public Mono<SearchResponse> search(SearchRequestParameters parameters) {
+        log.info("search request: {}", parameters);
+        return this.searchCache.getReactive(parameters, this::coalescedSearch);
+    }
+
+    // see SearchService.coalescedSearch
+    private Mono<SearchResponse> coalescedSearch(SearchRequestParameters key, SearchRequestParameters parameters) {
+        if (parameters.isCursorPagination()) {
+            return this.executeSearch(parameters);
+        }
+        return this.searchSingleFlight.executeReactive(key, k -> this.executeSearch(parameters));
+    }
+
+    private Mono<List<String>> searchSuggestions(SuggestionRequestParameters parameters) {
+        var query = NativeQueryBuilder.toSuggestQuery(parameters);
+        return this.inFlightRequests.reactive(this.reactiveElasticsearchOperations.suggest(query, Object.class, Constants.Index.SUGGESTION))
+                                    .map(SuggestionService::toSuggestions);
+    }
+
+    private Mono<SearchResponse> executeSearch(SearchRequestParameters parameters) {
+        return this.resolveCursor(parameters)
+                   .map(Optional::of)
+                   .defaultIfEmpty(Optional.empty())
+                   .flatMap(cursor -> this.executeSearch(parameters, cursor.orElse(null)));
+    }
+
+    // see SearchService.executeSearch for the fallbacks to fuzziness and to exact facets
+    private Mono<SearchResponse> executeSearch(SearchRequestParameters parameters, SearchCursor cursor) {
+        var fuzziness = this.searchProperties.fuzziness();
+        var searchResponse = Mono.defer(() -> {
+            var properties = this.indexLayoutMonitor.searchProperties();
+            var start = System.nanoTime();
+            return this.executeQuery(parameters, cursor, MatchMode.initial(cursor, fuzziness), properties)
+                       .flatMap(result -> result.matchMode().fallsBack(parameters, result.hits().getTotalHits(), fuzziness)
+                               ? this.executeQuery(parameters, cursor, MatchMode.FUZZY, properties)
+                               : Mono.just(result))
+                       .flatMap(result -> properties.facets().fallsBack(this.searchResponseMapper.sampledCount(result.hits().getAggregations()))
+                               ? this.executeQuery(parameters, cursor, result.matchMode(), properties.withExactFacets())
+                               : Mono.just(result))
+                       .flatMap(result -> this.toSearchResponse(parameters, cursor, result)
+                                              .doOnNext(response -> this.projectionMetrics.recordRead(parameters.projection(), System.nanoTime() - start, response.timeTaken()))
+                                              .doOnNext(response -> this.slowQueryLog.record(parameters, result.query(), System.nanoTime() - start, response))
+                                              .flatMap(response -> this.closeIfLastPage(cursor, response, result.hits().getPointInTimeId())));
+        });
+        return this.inFlightRequests.reactive(searchResponse);
+    }
+
+    private Mono<QueryResult<?>> executeQuery(SearchRequestParameters parameters, SearchCursor cursor, MatchMode matchMode, SearchProperties properties) {
+        var query = NativeQueryBuilder.toSearchQuery(parameters, cursor, properties, matchMode);
+        log.info("{} bool query: {}", matchMode.tag(), query.getQuery());
+        return this.reactiveElasticsearchOperations.searchForHits(query, parameters.projection().type(), Constants.Index.BUSINESS)
+                                                   .map(hits -> new QueryResult<>(matchMode, query, hits));
+    }
+
+    private <T> Mono<SearchResponse> toSearchResponse(SearchRequestParameters parameters, SearchCursor cursor, QueryResult<T> result) {
+        var pageCursor = SearchService.withMatchMode(cursor, result.matchMode());
+        return result.hits()
+                     .getSearchHits()
+                     .collectList()
+                     .map(results -> this.searchResponseMapper.toSearchResponse(parameters, pageCursor, results, result.hits())
+                                                              .withMatchMode(result.matchMode()));
+    }
+
+    private record QueryResult<T>(MatchMode matchMode, NativeQuery query, ReactiveSearchHits<T> hits) {
+    }
+
+    // see SearchService.resolveCursor
+    private Mono<SearchCursor> resolveCursor(SearchRequestParameters parameters) {
+        if (parameters.isCursorStart()) {
+            return this.reactiveElasticsearchOperations.openPointInTime(Constants.Index.BUSINESS, this.searchProperties.pagination().pointInTimeKeepAlive())
+                                                       .map(SearchCursor::start);
+        }
+        return parameters.isCursorPagination() ? Mono.fromCallable(() -> SearchCursor.decode(parameters.cursor())) : Mono.empty();
+    }
+
+    private Mono<SearchResponse> closeIfLastPage(SearchCursor cursor, SearchResponse response, String pointInTimeId) {
+        if (!SearchService.isLastPage(cursor, response)) {
+            return Mono.just(response);
+        }
+        return this.reactiveElasticsearchOperations.closePointInTime(Objects.requireNonNullElse(pointInTimeId, cursor.pointInTimeId()))
+                                                   .doOnError(e -> log.warn("unable to close point in time: {}", e.getMessage()))
+                                                   .onErrorReturn(false)
+                                                   .thenReturn(response);
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.vinsguru.business.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.vinsguru.business.config.SearchCacheProperties;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.dto.SearchResponse;
+import com.vinsguru.business.util.Constants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+/*
+ * Caches search responses keyed by the canonical request parameters.
+ * Every entry is tagged with the generation of the businesses index it was computed from,
+ * so it is discarded as soon as the index changes - not only when the TTL expires.
+ * */
+@Component
+public class SearchCache {
+
+    private final SearchCacheProperties properties;
+    private final IndexGenerationMonitor indexGenerationMonitor;
+    private final Cache<SearchRequestParameters, Entry> cache;
+    private final MeterRegistry meterRegistry;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public SearchCache(SearchCacheProperties properties, IndexGenerationMonitor indexGenerationMonitor, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.indexGenerationMonitor = indexGenerationMonitor;
+        this.meterRegistry = meterRegistry;
+        this.cache = Caffeine.newBuilder()
+                             .maximumSize(properties.maximumSize())
+                             .expireAfterWrite(properties.ttl())
+                             .evictionListener((SearchRequestParameters key, Entry entry, RemovalCause cause) -> this.onEviction(cause))
+                             .build();
+        this.hitCounter = this.requestCounter("hit");
+        this.missCounter = this.requestCounter("miss");
+        Gauge.builder("search.cache.size", this.cache, Cache::estimatedSize).register(meterRegistry);
+    }
+
+    /*
+    The canonical parameters are only the key: the loader receives them to coalesce equivalent requests,
+    and searches with the parameters of the request as they were sent.
+    * */
+    public SearchResponse get(SearchRequestParameters parameters, BiFunction<SearchRequestParameters, SearchRequestParameters, SearchResponse> loader) {
+        return this.getAsync(parameters, (key, p) -> CompletableFuture.completedFuture(loader.apply(key, p))).join();
+    }
+
+    public CompletableFuture<SearchResponse> getAsync(SearchRequestParameters parameters,
+                                                      BiFunction<SearchRequestParameters, SearchRequestParameters, CompletableFuture<SearchResponse>> loader) {
+        var key = parameters.canonical(this.properties.coordinatePrecision());
+        // cursor pages depend on a point in time, which is not part of the request parameters
+        if (!this.properties.enabled() || parameters.isCursorPagination()) {
+            return loader.apply(key, parameters);
+        }
+        var generation = this.indexGenerationMonitor.generation(Constants.Index.BUSINESS);
+        var cached = this.cached(key, generation);
+        if (Objects.nonNull(cached)) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return loader.apply(key, parameters)
+                     .thenApply(response -> this.put(key, generation, response));
+    }
+
+    // the reactive path stays a Mono, so that a cancelled request cancels its search
+    public Mono<SearchResponse> getReactive(SearchRequestParameters parameters,
+                                            BiFunction<SearchRequestParameters, SearchRequestParameters, Mono<SearchResponse>> loader) {
+        return Mono.defer(() -> {
+            var key = parameters.canonical(this.properties.coordinatePrecision());
+            if (!this.properties.enabled() || parameters.isCursorPagination()) {
+                return loader.apply(key, parameters);
+            }
+            var generation = this.indexGenerationMonitor.generation(Constants.Index.BUSINESS);
+            var cached = this.cached(key, generation);
+            if (Objects.nonNull(cached)) {
+                return Mono.just(cached);
+            }
+            return loader.apply(key, parameters)
+                         .map(response -> this.put(key, generation, response));
+        });
+    }
+
+    // the response cached for the generation, or null
+    private SearchResponse cached(SearchRequestParameters key, long generation) {
+        var start = System.nanoTime();
+        var entry = this.cache.getIfPresent(key);
+        if (entry != null && entry.generation() == generation) {
+            this.hitCounter.increment();
+            return entry.response().fromCache((System.nanoTime() - start) / 1_000_000);
+        }
+        this.missCounter.increment();
+        return null;
+    }
+
+    // the generation was read before searching, so a response racing with a reload is never served as current
+    private SearchResponse put(SearchRequestParameters key, long generation, SearchResponse response) {
+        this.cache.put(key, new Entry(generation, response));
+        return response;
+    }
+
+    private void onEviction(RemovalCause cause) {
+        this.meterRegistry.counter("search.cache.evictions", "cause", cause.name().toLowerCase()).increment();
+    }
+
+    private Counter requestCounter(String result) {
+        return Counter.builder("search.cache.requests")
+                      .tag("result", result)
+                      .register(this.meterRegistry);
+    }
+
+    private record Entry(long generation,
+                         SearchResponse response) {
+    }
+
+}
@@ -0,0 +1,257 @@
+package com.vinsguru.business.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsAggregate;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.json.JsonpMapper;
+import com.vinsguru.business.dto.*;
+import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.FacetField;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregation;
+import org.springframework.data.elasticsearch.core.AggregationsContainer;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.ReactiveSearchHits;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+// maps the search results of the (reactive) ElasticsearchOperations or of the elasticsearch java client into our SearchResponse
+@Component
+public class SearchResponseMapper {
+
+    private static final String BUCKETS = "buckets";
+
+    private final ElasticsearchConverter elasticsearchConverter;
+    private final JsonpMapper jsonpMapper;
+
+    public SearchResponseMapper(ElasticsearchConverter elasticsearchConverter, JsonpMapper jsonpMapper) {
+        this.elasticsearchConverter = elasticsearchConverter;
+        this.jsonpMapper = jsonpMapper;
+    }
+
+    public <T> SearchResponse toSearchResponse(SearchRequestParameters parameters, SearchCursor cursor, SearchHits<T> searchHits) {
+        return this.toSearchResponse(parameters, cursor, searchHits, SearchStages.none());
+    }
+
+    // the facets are recorded as a stage of the request
+    public <T> SearchResponse toSearchResponse(SearchRequestParameters parameters, SearchCursor cursor, SearchHits<T> searchHits, SearchStages stages) {
+        var results = searchHits.getSearchHits()
+                                .stream()
+                                .map(SearchHit::getContent)
+                                .toList();
+        var lastSortValues = searchHits.getSearchHits().isEmpty() ? List.of() : searchHits.getSearchHits().getLast().getSortValues();
+        return this.toSearchResponse(parameters, cursor, stages, new ResultPage(
+                results,
+                searchHits.getTotalHits(),
+                toTotalRelation(searchHits.getTotalHitsRelation()),
+                toAggregateMap(searchHits.getAggregations()),
+                searchHits.getExecutionDuration().toMillis(),
+                searchHits.getPointInTimeId(),
+                lastSortValues
+        ));
+    }
+
+    public <T> SearchResponse toSearchResponse(SearchRequestParameters parameters, SearchCursor cursor, List<SearchHit<T>> searchHitList, ReactiveSearchHits<T> searchHits) {
+        var results = searchHitList.stream()
+                                   .map(SearchHit::getContent)
+                                   .toList();
+        var lastSortValues = searchHitList.isEmpty() ? List.of() : searchHitList.getLast().getSortValues();
+        return this.toSearchResponse(parameters, cursor, SearchStages.none(), new ResultPage(
+                results,
+                searchHits.getTotalHits(),
+                toTotalRelation(searchHits.getTotalHitsRelation()),
+                toAggregateMap(searchHits.getAggregations()),
+                searchHits.getExecutionDuration().toMillis(),
+                searchHits.getPointInTimeId(),
+                lastSortValues
+        ));
+    }
+
+    // a search response, or the result of a _msearch item
+    public SearchResponse toSearchResponse(SearchRequestParameters parameters, SearchCursor cursor, ResponseBody<Map> response) {
+        return this.toSearchResponse(parameters, cursor, response, SearchStages.none());
+    }
+
+    public SearchResponse toSearchResponse(SearchRequestParameters parameters, SearchCursor cursor, ResponseBody<Map> response, SearchStages stages) {
+        var hits = response.hits().hits();
+        var results = hits.stream()
+                          .map(hit -> this.toResult(hit, parameters.projection()))
+                          .toList();
+        var total = Objects.isNull(response.hits().total()) ? results.size() : response.hits().total().value();
+        var totalRelation = Objects.isNull(response.hits().total()) ? Pagination.EQUAL_TO : response.hits().total().relation().jsonValue();
+        var lastSortValues = hits.isEmpty() ? List.of() : hits.getLast().sort().stream().map(FieldValue::_get).toList();
+        return this.toSearchResponse(parameters, cursor, stages, new ResultPage(
+                results,
+                total,
+                totalRelation,
+                response.aggregations(),
+                response.took(),
+                response.pitId(),
+                lastSortValues
+        ));
+    }
+
+    private SearchResponse toSearchResponse(SearchRequestParameters parameters, SearchCursor cursor, SearchStages stages, ResultPage resultPage) {
+        var pageNumber = Objects.isNull(cursor) ? parameters.page() : cursor.page();
+        var page = new PageImpl<>(resultPage.results(), PageRequest.of(pageNumber, parameters.size()), resultPage.totalHits());
+        return new SearchResponse(
+                resultPage.results(),
+                stages.time(StageMetrics.Stage.FACETS, () -> this.buildFacets(resultPage.aggregations())),
+                buildPagination(page, resultPage.totalRelation(), nextCursor(parameters, cursor, resultPage)),
+                resultPage.timeTaken(),
+                false,
+                null
+        );
+    }
+
+    // there is a next page as long as pages are full
+    private static String nextCursor(SearchRequestParameters parameters, SearchCursor cursor, ResultPage resultPage) {
+        if (Objects.isNull(cursor) || resultPage.results().size() < parameters.size()) {
+            return null;
+        }
+        var pointInTimeId = Objects.requireNonNullElse(resultPage.pointInTimeId(), cursor.pointInTimeId());
+        return cursor.next(pointInTimeId, resultPage.lastSortValues()).encode();
+    }
+
+    private static String toTotalRelation(TotalHitsRelation relation) {
+        return relation == TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO ? Pagination.GREATER_THAN_OR_EQUAL_TO : Pagination.EQUAL_TO;
+    }
+
+    private static Map<String, Aggregate> toAggregateMap(AggregationsContainer<?> aggregationsContainer) {
+        if (Objects.isNull(aggregationsContainer)) {
+            return Map.of();
+        }
+        return ((List<ElasticsearchAggregation>) aggregationsContainer.aggregations())
+                .stream()
+                .map(ElasticsearchAggregation::aggregation)
+                .collect(Collectors.toMap(
+                        a -> a.getName(),
+                        a -> a.getAggregate()
+                ));
+    }
+
+    private Object toResult(Hit<Map> hit, Projection projection) {
+        var document = Document.from(hit.source());
+        document.setId(hit.id());
+        return this.elasticsearchConverter.read(projection.type(), document);
+    }
+
+    private static Pagination buildPagination(Page<?> page, String totalRelation, String next) {
+        return new Pagination(
+                page.getNumber(),
+                page.getNumberOfElements(),
+                page.getTotalElements(),
+                totalRelation,
+                page.getTotalPages(),
+                next
+        );
+    }
+
+    // number of businesses the random_sampler around the facets counted, -1 without it. see SearchProperties.Facets.fallsBack
+    public long sampledCount(AggregationsContainer<?> aggregationsContainer) {
+        return this.sampledCount(toAggregateMap(aggregationsContainer));
+    }
+
+    public long sampledCount(Map<String, Aggregate> aggregations) {
+        var randomSampler = aggregations.get(Constants.Business.FACET_SAMPLER_AGGREGATE_NAME);
+        if (Objects.isNull(randomSampler)) {
+            return -1;
+        }
+        return randomSampler._custom().toJson(this.jsonpMapper).asJsonObject().getJsonNumber("doc_count").longValue();
+    }
+
+    // aggregations are absent on the follow-up pages of a cursor. see NativeQueryBuilder.applyFacets for their structure
+    private List<Facet> buildFacets(Map<String, Aggregate> aggregations) {
+        var randomSampler = aggregations.get(Constants.Business.FACET_SAMPLER_AGGREGATE_NAME);
+        if (Objects.nonNull(randomSampler)) {
+            return buildRandomSampledFacets(randomSampler._custom().toJson(this.jsonpMapper).asJsonObject());
+        }
+        var facets = new ArrayList<Facet>();
+        for (var facetField : FacetField.values()) {
+            var name = facetField.aggregateName();
+            var aggregate = aggregations.get(name);
+            if (Objects.isNull(aggregate)) {
+                continue;
+            }
+            var scopeCount = -1L;
+            var sampledCount = -1L;
+            if (aggregate.isFilter()) {
+                scopeCount = aggregate.filter().docCount();
+                aggregate = aggregate.filter().aggregations().get(name);
+            }
+            if (aggregate.isSampler()) {
+                sampledCount = aggregate.sampler().docCount();
+                aggregate = aggregate.sampler().aggregations().get(name);
+            }
+            facets.add(Facet.sampled(name, buildFacetItems(aggregate.sterms()), scopeCount, sampledCount));
+        }
+        return facets;
+    }
+
+    private static List<FacetItem> buildFacetItems(StringTermsAggregate stringTermsAggregate) {
+        return stringTermsAggregate.buckets()
+                                   .array()
+                                   .stream()
+                                   .map(b -> new FacetItem(b.key().stringValue(), b.docCount()))
+                                   .toList();
+    }
+
+    /*
+    The java client has no type for the random_sampler aggregate, so it comes as json (with typed keys, e.g. "sterms#name").
+    Elasticsearch already scaled the counts of the sampled buckets up.
+    * */
+    private static List<Facet> buildRandomSampledFacets(JsonObject randomSampler) {
+        var facets = new ArrayList<Facet>();
+        for (var facetField : FacetField.values()) {
+            var aggregate = findAggregate(randomSampler, facetField.aggregateName());
+            while (Objects.nonNull(aggregate) && !aggregate.containsKey(BUCKETS)) {
+                aggregate = findAggregate(aggregate, facetField.aggregateName()); // within the filter of a multi-select facet
+            }
+            if (Objects.isNull(aggregate)) {
+                continue;
+            }
+            var items = aggregate.getJsonArray(BUCKETS)
+                                 .stream()
+                                 .map(JsonValue::asJsonObject)
+                                 .map(b -> new FacetItem(b.getString("key"), b.getJsonNumber("doc_count").longValue()))
+                                 .toList();
+            facets.add(new Facet(facetField.aggregateName(), items, true));
+        }
+        return facets;
+    }
+
+    private static JsonObject findAggregate(JsonObject parent, String name) {
+        for (var entry : parent.entrySet()) {
+            var key = entry.getKey();
+            if ((key.equals(name) || key.endsWith("#" + name)) && entry.getValue() instanceof JsonObject aggregate) {
+                return aggregate;
+            }
+        }
+        return null;
+    }
+
+    private record ResultPage(List<?> results,
+                              long totalHits,
+                              String totalRelation,
+                              Map<String, Aggregate> aggregations,
+                              long timeTaken,
+                              String pointInTimeId,
+                              List<Object> lastSortValues) {
+    }
+
+}
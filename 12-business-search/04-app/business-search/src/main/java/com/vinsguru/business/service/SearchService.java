@@ -1,23 +1,27 @@
 package com.vinsguru.business.service;
 
-import co.elastic.clients.elasticsearch._types.aggregations.StringTermsAggregate;
-import com.vinsguru.business.dto.*;
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.SearchCursor;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.dto.SearchResponse;
 import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.ElasticsearchUtil;
+import com.vinsguru.business.util.MatchMode;
 import com.vinsguru.business.util.NativeQueryBuilder;
+import com.vinsguru.business.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregation;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.SearchHit;
-import org.springframework.data.elasticsearch.core.SearchHitSupport;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
-import static com.vinsguru.business.util.Constants.Business.OFFERINGS_AGGREGATE_NAME;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class SearchService {
@@ -25,60 +29,199 @@ public class SearchService {
     private static final Logger log = LoggerFactory.getLogger(SearchService.class);
 
     private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+    private final SearchCache searchCache;
+    private final SearchResponseMapper searchResponseMapper;
+    private final InFlightRequests inFlightRequests;
+    private final SearchProperties searchProperties;
+    private final IndexLayoutMonitor indexLayoutMonitor;
+    private final ProjectionMetrics projectionMetrics;
+    private final StageMetrics stageMetrics;
+    private final SlowQueryLog slowQueryLog;
+    private final SingleFlight<SearchRequestParameters, SearchResponse> singleFlight;
 
-    public SearchService(ElasticsearchOperations elasticsearchOperations) {
+    public SearchService(ElasticsearchOperations elasticsearchOperations,
+                         ElasticsearchAsyncClient elasticsearchAsyncClient,
+                         SearchCache searchCache,
+                         SearchResponseMapper searchResponseMapper,
+                         InFlightRequests inFlightRequests,
+                         SearchProperties searchProperties,
+                         IndexLayoutMonitor indexLayoutMonitor,
+                         ProjectionMetrics projectionMetrics,
+                         StageMetrics stageMetrics,
+                         SlowQueryLog slowQueryLog,
+                         MeterRegistry meterRegistry) {
         this.elasticsearchOperations = elasticsearchOperations;
+        this.elasticsearchAsyncClient = elasticsearchAsyncClient;
+        this.searchCache = searchCache;
+        this.searchResponseMapper = searchResponseMapper;
+        this.inFlightRequests = inFlightRequests;
+        this.searchProperties = searchProperties;
+        this.indexLayoutMonitor = indexLayoutMonitor;
+        this.projectionMetrics = projectionMetrics;
+        this.stageMetrics = stageMetrics;
+        this.slowQueryLog = slowQueryLog;
+        this.singleFlight = new SingleFlight<>("search", meterRegistry);
     }
 
     public SearchResponse search(SearchRequestParameters parameters) {
         log.info("search request: {}", parameters);
-        var query = NativeQueryBuilder.toSearchQuery(parameters);
-        log.info("bool query: {}", query.getQuery());
-
-        var searchHits = this.elasticsearchOperations.search(query, Business.class, Constants.Index.BUSINESS);
-        return buildResponse(parameters, searchHits);
-    }
-
-    private SearchResponse buildResponse(SearchRequestParameters parameters, SearchHits<Business> searchHits) {
-        var results = searchHits.getSearchHits()
-                                .stream()
-                                .map(SearchHit::getContent)
-                                .toList();
-        var searchPage = SearchHitSupport.searchPageFor(searchHits, PageRequest.of(parameters.page(), parameters.size()));
-        var pagination = new Pagination(
-                searchPage.getNumber(),
-                searchPage.getNumberOfElements(),
-                searchPage.getTotalElements(),
-                searchPage.getTotalPages()
-        );
-        var facets = buildFacets((List<ElasticsearchAggregation>) searchHits.getAggregations().aggregations());
-        return new SearchResponse(
-                results,
-                facets,
-                pagination,
-                searchHits.getExecutionDuration().toMillis()
-        );
-    }
-
-    private List<Facet> buildFacets(List<ElasticsearchAggregation> aggregations) {
-        var map = aggregations.stream()
-                              .map(ElasticsearchAggregation::aggregation)
-                              .collect(Collectors.toMap(
-                                      a -> a.getName(),
-                                      a -> a.getAggregate()
-                              ));
-        return List.of(
-                buildFacet(OFFERINGS_AGGREGATE_NAME, map.get(OFFERINGS_AGGREGATE_NAME).sterms())
-        );
-    }
-
-    private Facet buildFacet(String name, StringTermsAggregate stringTermsAggregate) {
-        var facetItems = stringTermsAggregate.buckets()
-                                             .array()
-                                             .stream()
-                                             .map(b -> new FacetItem(b.key().stringValue(), b.docCount()))
-                                             .toList();
-        return new Facet(name, facetItems);
+        return this.searchCache.get(parameters, this::coalescedSearch);
+    }
+
+    public CompletableFuture<SearchResponse> searchAsync(SearchRequestParameters parameters) {
+        log.info("search request: {}", parameters);
+        return this.searchCache.getAsync(parameters, this::coalescedSearchAsync);
+    }
+
+    // identical concurrent searches share one elasticsearch request. cursor pages each have their own point in time
+    private SearchResponse coalescedSearch(SearchRequestParameters key, SearchRequestParameters parameters) {
+        if (parameters.isCursorPagination()) {
+            return this.executeSearch(parameters);
+        }
+        return this.singleFlight.execute(key, k -> this.executeSearch(parameters));
+    }
+
+    private CompletableFuture<SearchResponse> coalescedSearchAsync(SearchRequestParameters key, SearchRequestParameters parameters) {
+        if (parameters.isCursorPagination()) {
+            return this.executeSearchAsync(parameters);
+        }
+        return this.singleFlight.executeAsync(key, k -> this.executeSearchAsync(parameters));
+    }
+
+    /*
+    With adaptive fuzziness, a search without filters which matches too few businesses exactly runs again with fuzziness.
+    With random_sampler facets, a search whose sample is too small runs again with exact facets.
+    * */
+    private SearchResponse executeSearch(SearchRequestParameters parameters) {
+        var begin = System.nanoTime();
+        var cursor = this.resolveCursor(parameters);
+        var stages = this.stageMetrics.start(StageMetrics.Pipeline.SEARCH, NativeQueryBuilder.firedRules(parameters, this.searchProperties));
+        var fuzziness = this.searchProperties.fuzziness();
+        var matchMode = MatchMode.initial(cursor, fuzziness);
+        var properties = this.indexLayoutMonitor.searchProperties();
+        var query = this.buildQuery(parameters, cursor, matchMode, properties, stages);
+
+        var start = System.nanoTime();
+        var searchHits = this.executeQuery(parameters, query, stages);
+        if (matchMode.fallsBack(parameters, searchHits.getTotalHits(), fuzziness)) {
+            matchMode = MatchMode.FUZZY;
+            query = this.buildQuery(parameters, cursor, matchMode, properties, stages);
+            searchHits = this.executeQuery(parameters, query, stages);
+        }
+        if (properties.facets().fallsBack(this.searchResponseMapper.sampledCount(searchHits.getAggregations()))) {
+            query = this.buildQuery(parameters, cursor, matchMode, properties.withExactFacets(), stages);
+            searchHits = this.executeQuery(parameters, query, stages);
+        }
+        var hits = searchHits;
+        var pageCursor = withMatchMode(cursor, matchMode);
+        var response = stages.mapHits(() -> this.searchResponseMapper.toSearchResponse(parameters, pageCursor, hits, stages))
+                             .withMatchMode(matchMode);
+        this.projectionMetrics.recordRead(parameters.projection(), System.nanoTime() - start, response.timeTaken());
+        this.slowQueryLog.record(parameters, query, System.nanoTime() - begin, response);
+        if (isLastPage(cursor, response)) {
+            this.closePointInTime(Objects.requireNonNullElse(searchHits.getPointInTimeId(), cursor.pointInTimeId()));
+        }
+        return response;
+    }
+
+    private CompletableFuture<SearchResponse> executeSearchAsync(SearchRequestParameters parameters) {
+        var begin = System.nanoTime();
+        return this.resolveCursorAsync(parameters)
+                   .thenCompose(cursor -> {
+                       var stages = this.stageMetrics.start(StageMetrics.Pipeline.SEARCH, NativeQueryBuilder.firedRules(parameters, this.searchProperties));
+                       var fuzziness = this.searchProperties.fuzziness();
+                       var properties = this.indexLayoutMonitor.searchProperties();
+                       var start = System.nanoTime();
+                       return this.executeQueryAsync(parameters, cursor, MatchMode.initial(cursor, fuzziness), properties, stages)
+                                  .thenCompose(result -> result.matchMode().fallsBack(parameters, totalHits(result.response()), fuzziness)
+                                          ? this.executeQueryAsync(parameters, cursor, MatchMode.FUZZY, properties, stages)
+                                          : CompletableFuture.completedFuture(result))
+                                  .thenCompose(result -> properties.facets().fallsBack(this.searchResponseMapper.sampledCount(result.response().aggregations()))
+                                          ? this.executeQueryAsync(parameters, cursor, result.matchMode(), properties.withExactFacets(), stages)
+                                          : CompletableFuture.completedFuture(result))
+                                  .thenApply(result -> {
+                                      var response = result.response();
+                                      var pageCursor = withMatchMode(cursor, result.matchMode());
+                                      var searchResponse = stages.mapHits(() -> this.searchResponseMapper.toSearchResponse(parameters, pageCursor, response, stages))
+                                                                 .withMatchMode(result.matchMode());
+                                      this.projectionMetrics.recordRead(parameters.projection(), System.nanoTime() - start, searchResponse.timeTaken());
+                                      this.slowQueryLog.record(parameters, result.query(), System.nanoTime() - begin, searchResponse);
+                                      if (isLastPage(cursor, searchResponse)) {
+                                          this.closePointInTimeAsync(Objects.requireNonNullElse(response.pitId(), cursor.pointInTimeId()));
+                                      }
+                                      return searchResponse;
+                                  });
+                   });
+    }
+
+    private NativeQuery buildQuery(SearchRequestParameters parameters, SearchCursor cursor, MatchMode matchMode, SearchProperties properties, SearchStages stages) {
+        var query = stages.time(StageMetrics.Stage.QUERY_BUILDING, () -> NativeQueryBuilder.toSearchQuery(parameters, cursor, properties, matchMode, stages::recordRule));
+        log.info("{} bool query: {}", matchMode.tag(), query.getQuery());
+        return query;
+    }
+
+    private SearchHits<?> executeQuery(SearchRequestParameters parameters, NativeQuery query, SearchStages stages) {
+        return stages.elasticsearch(() -> this.inFlightRequests.blocking(() -> this.elasticsearchOperations.search(query, parameters.projection().type(), Constants.Index.BUSINESS)));
+    }
+
+    private CompletableFuture<QueryResult> executeQueryAsync(SearchRequestParameters parameters, SearchCursor cursor, MatchMode matchMode, SearchProperties properties, SearchStages stages) {
+        var query = this.buildQuery(parameters, cursor, matchMode, properties, stages);
+        var request = ElasticsearchUtil.buildSearchRequest(Constants.Index.BUSINESS, query);
+        return stages.elasticsearchAsync(() -> this.inFlightRequests.async(() -> this.elasticsearchAsyncClient.search(request, Map.class)))
+                     .thenApply(response -> new QueryResult(matchMode, query, response));
+    }
+
+    private record QueryResult(MatchMode matchMode, NativeQuery query, ResponseBody<Map> response) {
+    }
+
+    static long totalHits(ResponseBody<?> response) {
+        return Objects.isNull(response.hits().total()) ? response.hits().hits().size() : response.hits().total().value();
+    }
+
+    // the next cursors of the page keep the match mode which served it
+    static SearchCursor withMatchMode(SearchCursor cursor, MatchMode matchMode) {
+        return Objects.isNull(cursor) ? null : cursor.withMatchMode(matchMode);
+    }
+
+    // cursor=* opens a point in time, any other cursor continues from the page it was issued for
+    private SearchCursor resolveCursor(SearchRequestParameters parameters) {
+        if (parameters.isCursorStart()) {
+            var pointInTimeId = this.elasticsearchOperations.openPointInTime(Constants.Index.BUSINESS, this.searchProperties.pagination().pointInTimeKeepAlive());
+            return SearchCursor.start(pointInTimeId);
+        }
+        return parameters.isCursorPagination() ? SearchCursor.decode(parameters.cursor()) : null;
+    }
+
+    private CompletableFuture<SearchCursor> resolveCursorAsync(SearchRequestParameters parameters) {
+        if (parameters.isCursorStart()) {
+            var keepAlive = this.searchProperties.pagination().pointInTimeKeepAlive().toMillis() + "ms";
+            return this.elasticsearchAsyncClient.openPointInTime(builder -> builder.index(Constants.Index.BUSINESS.getIndexName())
+                                                                                   .keepAlive(t -> t.time(keepAlive)))
+                                                .thenApply(response -> SearchCursor.start(response.id()));
+        }
+        return CompletableFuture.completedFuture(parameters.isCursorPagination() ? SearchCursor.decode(parameters.cursor()) : null);
+    }
+
+    // the point in time is released once the last page was served. abandoned cursors expire with the keep alive
+    private void closePointInTime(String pointInTimeId) {
+        try {
+            this.elasticsearchOperations.closePointInTime(pointInTimeId);
+        } catch (Exception e) {
+            log.warn("unable to close point in time: {}", e.getMessage());
+        }
+    }
+
+    private void closePointInTimeAsync(String pointInTimeId) {
+        this.elasticsearchAsyncClient.closePointInTime(builder -> builder.id(pointInTimeId))
+                                     .exceptionally(e -> {
+                                         log.warn("unable to close point in time: {}", e.getMessage());
+                                         return null;
+                                     });
+    }
+
+    static boolean isLastPage(SearchCursor cursor, SearchResponse response) {
+        return Objects.nonNull(cursor) && Objects.isNull(response.pagination().next());
     }
 
 }
@@ -0,0 +1,129 @@
+package com.vinsguru.business.service;
+
+import com.vinsguru.business.util.QueryRule;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/*
+Records the stages of one search or suggestion request into the StageMetrics. The stages run one after the other,
+possibly on different threads (async client), but never concurrently.
+none() records nothing, for the paths which are not measured.
+* */
+public final class SearchStages {
+
+    // the stages of a servlet request, bound while binding its parameters. see StageMetricsConfig
+    public static final String REQUEST_ATTRIBUTE = SearchStages.class.getName();
+
+    private static final SearchStages NONE = new SearchStages(null, StageMetrics.Pipeline.SEARCH, StageMetrics.NO_RULES);
+
+    private final StageMetrics stageMetrics;
+    private final StageMetrics.Pipeline pipeline;
+    private final String rules;
+
+    // start of the hit mapping: the response was received by the transport, on that thread
+    private long responseReceivedAt;
+    private long responseAllocatedBytes;
+    private Thread responseThread;
+    private long facetNanos;
+    private long facetAllocatedBytes;
+    private long serializationStartedAt;
+    private long serializationAllocatedBytes;
+
+    SearchStages(StageMetrics stageMetrics, StageMetrics.Pipeline pipeline, String rules) {
+        this.stageMetrics = stageMetrics;
+        this.pipeline = pipeline;
+        this.rules = rules;
+    }
+
+    public static SearchStages none() {
+        return NONE;
+    }
+
+    public <T> T time(StageMetrics.Stage stage, Supplier<T> supplier) {
+        if (Objects.isNull(this.stageMetrics)) {
+            return supplier.get();
+        }
+        var start = System.nanoTime();
+        var startAllocatedBytes = StageMetrics.allocatedBytes();
+        var result = supplier.get();
+        var nanos = System.nanoTime() - start;
+        var allocatedBytes = StageMetrics.allocatedBytes() - startAllocatedBytes;
+        if (stage == StageMetrics.Stage.FACETS) {
+            this.facetNanos += nanos;
+            this.facetAllocatedBytes += allocatedBytes;
+        }
+        this.record(stage, nanos, allocatedBytes);
+        return result;
+    }
+
+    // the query serialization and the round trip of the elasticsearch request sent by the supplier are recorded
+    public <T> T elasticsearch(Supplier<T> supplier) {
+        StageMetrics.bind(this);
+        try {
+            return supplier.get();
+        } finally {
+            StageMetrics.unbind();
+        }
+    }
+
+    public <T> CompletableFuture<T> elasticsearchAsync(Supplier<CompletableFuture<T>> supplier) {
+        return this.elasticsearch(supplier);
+    }
+
+    /*
+    Decoding the response and mapping its hits into our results, from the moment the response was received.
+    Facets built meanwhile (see time) are recorded as their own stage and not counted here.
+    * */
+    public <T> T mapHits(Supplier<T> supplier) {
+        if (Objects.isNull(this.stageMetrics)) {
+            return supplier.get();
+        }
+        var sameThread = this.responseThread == Thread.currentThread();
+        var start = sameThread ? this.responseReceivedAt : System.nanoTime();
+        var startAllocatedBytes = sameThread ? this.responseAllocatedBytes : StageMetrics.allocatedBytes();
+        this.facetNanos = 0;
+        this.facetAllocatedBytes = 0;
+        var result = supplier.get();
+        this.record(StageMetrics.Stage.HIT_MAPPING,
+                    System.nanoTime() - start - this.facetNanos,
+                    StageMetrics.allocatedBytes() - startAllocatedBytes - this.facetAllocatedBytes);
+        return result;
+    }
+
+    public void recordRule(QueryRule rule, boolean fired, long nanos) {
+        if (Objects.nonNull(this.stageMetrics)) {
+            this.stageMetrics.recordRule(rule, fired, nanos);
+        }
+    }
+
+    // allocatedBytes is negative when it was not measured
+    public void record(StageMetrics.Stage stage, long nanos, long allocatedBytes) {
+        if (Objects.nonNull(this.stageMetrics)) {
+            this.stageMetrics.record(this.pipeline, stage, this.rules, nanos, allocatedBytes);
+        }
+    }
+
+    // the response body is written by the message converter between these two calls
+    public void responseSerializationStarted() {
+        this.serializationStartedAt = System.nanoTime();
+        this.serializationAllocatedBytes = StageMetrics.allocatedBytes();
+    }
+
+    public void responseSerializationFinished() {
+        if (this.serializationStartedAt != 0) {
+            this.record(StageMetrics.Stage.RESPONSE_SERIALIZATION,
+                        System.nanoTime() - this.serializationStartedAt,
+                        StageMetrics.allocatedBytes() - this.serializationAllocatedBytes);
+            this.serializationStartedAt = 0;
+        }
+    }
+
+    void responseReceived(long receivedAt) {
+        this.responseReceivedAt = receivedAt;
+        this.responseAllocatedBytes = StageMetrics.allocatedBytes();
+        this.responseThread = Thread.currentThread();
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.vinsguru.business.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Level;
+import co.elastic.clients.elasticsearch._types.SearchStats;
+import co.elastic.clients.elasticsearch.indices.stats.ShardStats;
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.FacetItem;
+import com.vinsguru.business.dto.ShardLoad;
+import com.vinsguru.business.dto.ShardReport;
+import com.vinsguru.business.exceptions.BadRequestException;
+import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.ElasticsearchUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/*
+Reports the shards of an index which get more than their share of the documents or of the searches.
+With the routing by id both are spread evenly. Routed by state, a shard holds whole states: one with the large states
+(or the states most searches filter by) becomes a hotspot, while others idle. See SearchProperties.Routing.
+The documents come from the index stats, the states per shard from a terms aggregation run on that shard alone.
+* */
+@Service
+public class ShardReportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardReportService.class);
+    private static final Set<String> REPORTED_INDICES = Set.of(Constants.Index.BUSINESS.getIndexName());
+    private static final String STATES_AGGREGATE_NAME = "states";
+    private static final String SHARDS_PREFERENCE = "_shards:";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final SearchProperties searchProperties;
+
+    public ShardReportService(ElasticsearchClient elasticsearchClient, SearchProperties searchProperties) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.searchProperties = searchProperties;
+    }
+
+    public ShardReport report(String alias) {
+        if (!REPORTED_INDICES.contains(alias)) {
+            throw new BadRequestException("index " + alias + " can not be reported");
+        }
+        try {
+            var response = this.elasticsearchClient.indices().stats(builder -> builder.index(alias)
+                                                                                      .level(Level.Shards)
+                                                                                      .metric("docs", "store", "search"));
+            var shards = new ArrayList<ShardLoad>();
+            for (var indexStats : new TreeMap<>(response.indices()).entrySet()) {
+                for (var shardStats : new TreeMap<>(indexStats.getValue().shards()).entrySet()) {
+                    shards.add(this.shardLoad(indexStats.getKey(), Integer.parseInt(shardStats.getKey()), shardStats.getValue()));
+                }
+            }
+            shards.sort(Comparator.comparing(ShardLoad::index).thenComparing(ShardLoad::shard));
+            var report = flagHotspots(alias, shards, this.searchProperties.routing().hotspotRatio());
+            if (!report.hotspots().isEmpty()) {
+                log.warn("hotspot shards of {}: {}", alias, report.hotspots());
+            }
+            return report;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // copies: the primary and the replicas of the shard
+    private ShardLoad shardLoad(String index, int shard, List<ShardStats> copies) throws IOException {
+        var primary = copies.stream()
+                            .filter(copy -> Objects.nonNull(copy.routing()) && copy.routing().primary())
+                            .findFirst()
+                            .orElse(copies.getFirst());
+        var queries = copies.stream()
+                            .map(ShardStats::search)
+                            .filter(Objects::nonNull)
+                            .mapToLong(SearchStats::queryTotal)
+                            .sum();
+        return new ShardLoad(
+                index,
+                shard,
+                Objects.isNull(primary.docs()) ? 0 : primary.docs().count(),
+                Objects.isNull(primary.store()) ? 0 : primary.store().sizeInBytes(),
+                queries,
+                this.topStates(index, shard),
+                false
+        );
+    }
+
+    private List<FacetItem> topStates(String index, int shard) throws IOException {
+        var response = this.elasticsearchClient.search(builder -> builder.index(index)
+                                                                         .preference(SHARDS_PREFERENCE + shard)
+                                                                         .size(0)
+                                                                         .aggregations(STATES_AGGREGATE_NAME, ElasticsearchUtil.buildTermsAggregation(Constants.Business.STATE)),
+                                                       Void.class);
+        return response.aggregations()
+                       .get(STATES_AGGREGATE_NAME)
+                       .sterms()
+                       .buckets()
+                       .array()
+                       .stream()
+                       .map(bucket -> new FacetItem(bucket.key().stringValue(), bucket.docCount()))
+                       .toList();
+    }
+
+    private static ShardReport flagHotspots(String alias, List<ShardLoad> shards, double hotspotRatio) {
+        if (shards.size() < 2) {
+            return new ShardReport(alias, hotspotRatio, shards, List.of());
+        }
+        var meanDocuments = shards.stream().mapToLong(ShardLoad::documents).average().orElse(0);
+        var meanQueries = shards.stream().mapToLong(ShardLoad::queries).average().orElse(0);
+        var flagged = shards.stream()
+                            .map(shard -> new ShardLoad(shard.index(), shard.shard(), shard.documents(), shard.sizeInBytes(), shard.queries(), shard.states(),
+                                                        shard.documents() > hotspotRatio * meanDocuments || shard.queries() > hotspotRatio * meanQueries))
+                            .toList();
+        var hotspots = flagged.stream()
+                              .filter(ShardLoad::hotspot)
+                              .map(shard -> shard.index() + "/" + shard.shard())
+                              .toList();
+        return new ShardReport(alias, hotspotRatio, flagged, hotspots);
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.vinsguru.business.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpUtils;
+import com.vinsguru.business.config.SlowQueryProperties;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.dto.SearchResponse;
+import com.vinsguru.business.dto.SlowQuery;
+import com.vinsguru.business.exceptions.BadRequestException;
+import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.ElasticsearchUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+Captures the searches which exceed the slow query threshold, with the compiled request, to tune the QueryRules against real traffic.
+A sample of them is re-run with profile: true. The shard level breakdown is written, one json line per search,
+to the "slow-query-profiles" logger, a rotating file (see logback-spring.xml).
+Below the threshold, recording a search costs a comparison.
+* */
+@Service
+public class SlowQueryLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowQueryLog.class);
+    private static final Logger profileLog = LoggerFactory.getLogger("slow-query-profiles");
+    private static final String PROFILE_FORMAT = "{\"id\":\"%s\",\"timestamp\":\"%s\",\"elapsedMillis\":%d,\"tookMillis\":%d,\"request\":%s,\"profile\":%s}";
+
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+    private final JsonpMapper jsonpMapper;
+    private final SlowQueryProperties properties;
+    private final long thresholdNanos;
+    private final Semaphore profiles;
+    private final ConcurrentLinkedDeque<SlowQuery> slowQueries = new ConcurrentLinkedDeque<>();
+
+    public SlowQueryLog(ElasticsearchAsyncClient elasticsearchAsyncClient, JsonpMapper jsonpMapper, SlowQueryProperties properties) {
+        this.elasticsearchAsyncClient = elasticsearchAsyncClient;
+        this.jsonpMapper = jsonpMapper;
+        this.properties = properties;
+        this.thresholdNanos = properties.threshold().toNanos();
+        this.profiles = new Semaphore(properties.maxConcurrentProfiles());
+    }
+
+    public void record(SearchRequestParameters parameters, NativeQuery query, long elapsedNanos, SearchResponse response) {
+        if (!this.properties.enabled() || elapsedNanos < this.thresholdNanos) {
+            return;
+        }
+        var id = UUID.randomUUID().toString();
+        var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        var request = JsonpUtils.toJsonString(ElasticsearchUtil.buildSearchRequest(Constants.Index.BUSINESS, query), this.jsonpMapper);
+        var profiled = this.profile(id, elapsedMillis, query, parameters);
+        var slowQuery = new SlowQuery(
+                id,
+                Instant.now(),
+                elapsedMillis,
+                response.timeTaken(),
+                parameters,
+                request,
+                profiled
+        );
+        log.warn("slow search {} took {} ms (elasticsearch {} ms): {}", id, slowQuery.elapsedMillis(), slowQuery.tookMillis(), request);
+        this.slowQueries.addFirst(slowQuery);
+        while (this.slowQueries.size() > this.properties.retained()) {
+            this.slowQueries.pollLast();
+        }
+    }
+
+    // the slowest of the recently captured searches
+    public List<SlowQuery> slowest(int limit) {
+        if (limit < 1) {
+            throw new BadRequestException("limit must be at least 1");
+        }
+        var snapshot = new ArrayList<>(this.slowQueries);
+        snapshot.sort(Comparator.comparingLong(SlowQuery::elapsedMillis).reversed());
+        return List.copyOf(snapshot.subList(0, Math.min(limit, snapshot.size())));
+    }
+
+    /*
+    Runs in the background, the response of the captured search is not delayed.
+    The profile line has the elapsed time of the captured search, and the took time of the profiled run.
+    Cursor pages are not profiled, their point in time may be closed by the time the profile runs.
+    * */
+    private boolean profile(String id, long elapsedMillis, NativeQuery query, SearchRequestParameters parameters) {
+        if (parameters.isCursorPagination()
+                || ThreadLocalRandom.current().nextDouble() >= this.properties.profileSampleRate()
+                || !this.profiles.tryAcquire()) {
+            return false;
+        }
+        try {
+            var request = ElasticsearchUtil.buildProfiledSearchRequest(Constants.Index.BUSINESS, query);
+            this.elasticsearchAsyncClient.search(request, Map.class)
+                                         .whenComplete((response, throwable) -> {
+                                             this.profiles.release();
+                                             if (Objects.nonNull(throwable)) {
+                                                 log.warn("unable to profile slow search {}: {}", id, throwable.getMessage());
+                                                 return;
+                                             }
+                                             profileLog.info(PROFILE_FORMAT.formatted(
+                                                     id,
+                                                     Instant.now(),
+                                                     elapsedMillis,
+                                                     response.took(),
+                                                     JsonpUtils.toJsonString(request, this.jsonpMapper),
+                                                     Objects.isNull(response.profile()) ? "null" : JsonpUtils.toJsonString(response.profile(), this.jsonpMapper)
+                                             ));
+                                         });
+            return true;
+        } catch (RuntimeException e) {
+            this.profiles.release();
+            log.warn("unable to profile slow search {}: {}", id, e.getMessage());
+            return false;
+        }
+    }
+
+}
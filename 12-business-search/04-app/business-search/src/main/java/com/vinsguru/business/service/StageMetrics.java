@@ -0,0 +1,208 @@
+package com.vinsguru.business.service;
+
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import co.elastic.clients.transport.http.TransportHttpClient;
+import co.elastic.clients.transport.instrumentation.Instrumentation;
+import com.vinsguru.business.util.QueryRule;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+
+/*
+Where the time of a search or a suggestion request goes, beyond the took time of elasticsearch:
+ - search.stage: latency of each stage (percentile histogram), tagged with the pipeline, the stage and the query rules which fired.
+   the rules of a rescored or field sorted search end with its rescore profile or its sort, see NativeQueryBuilder.firedRules
+ - search.stage.allocation: bytes allocated by the thread running the stage. not recorded for the http round trip
+ - search.rule.evaluation: latency of each query rule, i.e. its predicate and, if it fired, building its query
+The elasticsearch stages are measured by the instrumentation of the client transport, see ElasticsearchClientConfig.
+* */
+@Component
+public class StageMetrics {
+
+    public static final String NO_RULES = "none";
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = threadMXBean();
+    private static final ThreadLocal<SearchStages> CURRENT = new ThreadLocal<>();
+
+    private final Meter.MeterProvider<Timer> stageTimers;
+    private final Meter.MeterProvider<DistributionSummary> stageAllocations;
+    private final Meter.MeterProvider<Timer> ruleTimers;
+
+    public StageMetrics(MeterRegistry meterRegistry) {
+        this.stageTimers = Timer.builder("search.stage")
+                                .publishPercentileHistogram()
+                                .minimumExpectedValue(Duration.ofNanos(1000))
+                                .maximumExpectedValue(Duration.ofSeconds(10))
+                                .withRegistry(meterRegistry);
+        this.stageAllocations = DistributionSummary.builder("search.stage.allocation")
+                                                   .baseUnit("bytes")
+                                                   .withRegistry(meterRegistry);
+        this.ruleTimers = Timer.builder("search.rule.evaluation")
+                               .withRegistry(meterRegistry);
+    }
+
+    public enum Pipeline {
+        SEARCH,
+        SUGGESTION;
+
+        public String tag() {
+            return this.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public enum Stage {
+        BINDING,
+        QUERY_BUILDING,
+        QUERY_SERIALIZATION,
+        ROUND_TRIP,
+        HIT_MAPPING,
+        FACETS,
+        RESPONSE_SERIALIZATION;
+
+        public String tag() {
+            return this.name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    // stages of one request. rules are the names of the query rules which fired for it
+    public SearchStages start(Pipeline pipeline, String rules) {
+        return new SearchStages(this, pipeline, rules);
+    }
+
+    // measures the elasticsearch requests sent while the stages of a request are bound to the calling thread
+    public Instrumentation instrumentation() {
+        return new StageInstrumentation();
+    }
+
+    void record(Pipeline pipeline, Stage stage, String rules, long nanos, long allocatedBytes) {
+        this.stageTimers.withTags("pipeline", pipeline.tag(), "stage", stage.tag(), "rules", rules)
+                        .record(Duration.ofNanos(Math.max(nanos, 0)));
+        if (Objects.nonNull(THREAD_MX_BEAN) && allocatedBytes >= 0) {
+            this.stageAllocations.withTags("pipeline", pipeline.tag(), "stage", stage.tag(), "rules", rules)
+                                 .record(allocatedBytes);
+        }
+    }
+
+    void recordRule(QueryRule rule, boolean fired, long nanos) {
+        this.ruleTimers.withTags("rule", rule.name(), "fired", String.valueOf(fired))
+                       .record(Duration.ofNanos(nanos));
+    }
+
+    static void bind(SearchStages stages) {
+        CURRENT.set(stages);
+    }
+
+    static void unbind() {
+        CURRENT.remove();
+    }
+
+    // bytes allocated by the current thread so far, -1 if the jvm does not measure it
+    public static long allocatedBytes() {
+        return Objects.isNull(THREAD_MX_BEAN) ? -1 : THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean;
+        }
+        return null;
+    }
+
+    /*
+    The transport creates the context and serializes the request on the calling thread, for the blocking and the async client.
+    The response may be received on an io thread, so the context carries the stages along.
+    * */
+    private static class StageInstrumentation implements Instrumentation {
+
+        @Override
+        public <TRequest> Context newContext(TRequest request, Endpoint<TRequest, ?, ?> endpoint) {
+            var stages = CURRENT.get();
+            return Objects.isNull(stages) ? NoopContext.INSTANCE : new StageContext(stages);
+        }
+
+    }
+
+    private static class StageContext implements Instrumentation.Context {
+
+        private final SearchStages stages;
+        private final long start = System.nanoTime();
+        private final long startAllocatedBytes = allocatedBytes();
+        private long sentAt;
+
+        StageContext(SearchStages stages) {
+            this.stages = stages;
+        }
+
+        @Override
+        public Instrumentation.ThreadScope makeCurrent() {
+            return NoopContext.INSTANCE;
+        }
+
+        @Override
+        public void beforeSendingHttpRequest(TransportHttpClient.Request httpRequest, TransportOptions options) {
+            this.sentAt = System.nanoTime();
+            this.stages.record(Stage.QUERY_SERIALIZATION, this.sentAt - this.start, allocatedBytes() - this.startAllocatedBytes);
+        }
+
+        @Override
+        public void afterReceivingHttpResponse(TransportHttpClient.Response httpResponse) {
+            var receivedAt = System.nanoTime();
+            this.stages.record(Stage.ROUND_TRIP, receivedAt - this.sentAt, -1);
+            this.stages.responseReceived(receivedAt);
+        }
+
+        @Override
+        public <TResponse> void afterDecodingApiResponse(TResponse apiResponse) {
+        }
+
+        @Override
+        public void recordException(Throwable throwable) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+    private enum NoopContext implements Instrumentation.Context, Instrumentation.ThreadScope {
+
+        INSTANCE;
+
+        @Override
+        public Instrumentation.ThreadScope makeCurrent() {
+            return this;
+        }
+
+        @Override
+        public void beforeSendingHttpRequest(TransportHttpClient.Request httpRequest, TransportOptions options) {
+        }
+
+        @Override
+        public void afterReceivingHttpResponse(TransportHttpClient.Response httpResponse) {
+        }
+
+        @Override
+        public <TResponse> void afterDecodingApiResponse(TResponse apiResponse) {
+        }
+
+        @Override
+        public void recordException(Throwable throwable) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.vinsguru.business.service;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.transport.rest5_client.low_level.Request;
+import co.elastic.clients.transport.rest5_client.low_level.RequestOptions;
+import co.elastic.clients.transport.rest5_client.low_level.Response;
+import co.elastic.clients.transport.rest5_client.low_level.Rest5Client;
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.exceptions.BadRequestException;
+import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.ElasticsearchUtil;
+import com.vinsguru.business.util.NativeQueryBuilder;
+import com.vinsguru.business.util.SearchResponseStreamer;
+import com.vinsguru.business.util.StreamingResponseConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
+/*
+Pass-through variant of SearchService.search for large pages. The hits are not mapped into Business records,
+the body of the elasticsearch response is translated into the http response while it arrives (see StreamingResponseConsumer
+and SearchResponseStreamer), with the fields of the projection of the request. Not cached.
+The search itself runs before the response is committed, so its errors are reported like in the other endpoints.
+It runs once: there is no fallback to fuzziness, and random_sampler facets are counted exactly, as a too small sample
+(see SearchProperties.Facets) is only known once the hits were written.
+* */
+@Service
+public class StreamingSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingSearchService.class);
+    private static final String SEARCH_ENDPOINT = "/" + Constants.Index.BUSINESS.getIndexName() + "/_search";
+    private static final RequestOptions STREAMING = RequestOptions.DEFAULT.toBuilder()
+                                                                          .setHttpAsyncResponseConsumerFactory(StreamingResponseConsumer.FACTORY)
+                                                                          .build();
+
+    private final Rest5Client restClient;
+    private final JsonpMapper jsonpMapper;
+    private final IndexLayoutMonitor indexLayoutMonitor;
+    private final InFlightRequests inFlightRequests;
+
+    public StreamingSearchService(Rest5Client restClient,
+                                  JsonpMapper jsonpMapper,
+                                  IndexLayoutMonitor indexLayoutMonitor,
+                                  InFlightRequests inFlightRequests) {
+        this.restClient = restClient;
+        this.jsonpMapper = jsonpMapper;
+        this.indexLayoutMonitor = indexLayoutMonitor;
+        this.inFlightRequests = inFlightRequests;
+    }
+
+    public StreamingResponseBody search(SearchRequestParameters parameters) {
+        log.info("streaming search request: {}", parameters);
+        if (parameters.isCursorPagination()) {
+            throw new BadRequestException("cursor pagination is not supported by the streaming search");
+        }
+        var properties = this.indexLayoutMonitor.searchProperties();
+        if (properties.facets().mode() == SearchProperties.Facets.Mode.RANDOM_SAMPLER) {
+            properties = properties.withExactFacets();
+        }
+        var query = NativeQueryBuilder.toSearchQuery(parameters, properties);
+        log.info("bool query: {}", query.getQuery());
+
+        var searchRequest = ElasticsearchUtil.buildSearchRequest(Constants.Index.BUSINESS, query);
+        var request = new Request("POST", SEARCH_ENDPOINT);
+        if (Objects.nonNull(searchRequest.routing())) {
+            request.addParameter("routing", searchRequest.routing()); // a url parameter, not part of the body
+        }
+        request.setJsonEntity(JsonpUtils.toJsonString(searchRequest, this.jsonpMapper));
+        request.setOptions(STREAMING);
+        // returns with the head of the response, the body is read by the servlet container thread writing our response
+        var response = this.inFlightRequests.blocking(() -> this.perform(request));
+        return outputStream -> {
+            try (var content = response.getEntity().getContent()) {
+                SearchResponseStreamer.stream(content, outputStream, parameters);
+            }
+        };
+    }
+
+    private Response perform(Request request) {
+        try {
+            return this.restClient.performRequest(request);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
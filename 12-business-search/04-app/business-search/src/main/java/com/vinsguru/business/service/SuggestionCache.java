@@ -0,0 +1,136 @@
+package com.vinsguru.business.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.vinsguru.business.config.SuggestionCacheProperties;
+import com.vinsguru.business.dto.SuggestionRequestParameters;
+import com.vinsguru.business.event.IndexReloadedEvent;
+import com.vinsguru.business.util.Constants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/*
+ * Bounded (W-TinyLFU) cache of completion suggestions keyed by the normalized prefix.
+ * An entry remembers the limit it was fetched with, so that it can also answer any smaller limit.
+ * If it returned fewer suggestions than its limit, it holds every suggestion for the prefix and answers any limit.
+ * */
+@Component
+public class SuggestionCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SuggestionCache.class);
+
+    private final SuggestionCacheProperties properties;
+    private final Cache<String, Entry> cache;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final MeterRegistry meterRegistry;
+
+    public SuggestionCache(SuggestionCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.cache = Caffeine.newBuilder()
+                             .maximumSize(properties.maximumSize())
+                             .expireAfterWrite(properties.ttl())
+                             .evictionListener((String prefix, Entry entry, RemovalCause cause) -> this.onEviction(cause))
+                             .build();
+        this.hitCounter = this.requestCounter("hit");
+        this.missCounter = this.requestCounter("miss");
+        Gauge.builder("suggestion.cache.size", this.cache, Cache::estimatedSize).register(meterRegistry);
+    }
+
+    public List<String> get(SuggestionRequestParameters parameters, Function<SuggestionRequestParameters, List<String>> loader) {
+        return this.getAsync(parameters, p -> CompletableFuture.completedFuture(loader.apply(p))).join();
+    }
+
+    public CompletableFuture<List<String>> getAsync(SuggestionRequestParameters parameters,
+                                                    Function<SuggestionRequestParameters, CompletableFuture<List<String>>> loader) {
+        if (!this.properties.enabled()) {
+            return loader.apply(parameters);
+        }
+        var prefix = parameters.normalizedPrefix();
+        var cached = this.cached(prefix, parameters.limit());
+        if (Objects.nonNull(cached)) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return loader.apply(parameters)
+                     .thenApply(suggestions -> this.put(prefix, parameters.limit(), suggestions));
+    }
+
+    // see SearchCache.getReactive
+    public Mono<List<String>> getReactive(SuggestionRequestParameters parameters,
+                                          Function<SuggestionRequestParameters, Mono<List<String>>> loader) {
+        return Mono.defer(() -> {
+            if (!this.properties.enabled()) {
+                return loader.apply(parameters);
+            }
+            var prefix = parameters.normalizedPrefix();
+            var cached = this.cached(prefix, parameters.limit());
+            if (Objects.nonNull(cached)) {
+                return Mono.just(cached);
+            }
+            return loader.apply(parameters)
+                         .map(suggestions -> this.put(prefix, parameters.limit(), suggestions));
+        });
+    }
+
+    // the suggestions of the entry, if it can answer the limit. null otherwise
+    private List<String> cached(String prefix, int limit) {
+        var entry = this.cache.getIfPresent(prefix);
+        if (entry != null && entry.canAnswer(limit)) {
+            this.hitCounter.increment();
+            return entry.take(limit);
+        }
+        this.missCounter.increment();
+        return null;
+    }
+
+    // never replaces an entry which can answer more limits than the new one
+    private List<String> put(String prefix, int limit, List<String> suggestions) {
+        this.cache.asMap().merge(prefix, new Entry(limit, suggestions), (current, fetched) -> current.limit() >= fetched.limit() ? current : fetched);
+        return suggestions;
+    }
+
+    @EventListener
+    public void onIndexReloaded(IndexReloadedEvent event) {
+        if (event.isFor(Constants.Index.SUGGESTION)) {
+            log.info("suggestions index reloaded. invalidating {} cached prefixes", this.cache.estimatedSize());
+            this.cache.invalidateAll();
+        }
+    }
+
+    private void onEviction(RemovalCause cause) {
+        this.meterRegistry.counter("suggestion.cache.evictions", "cause", cause.name().toLowerCase()).increment();
+    }
+
+    private Counter requestCounter(String result) {
+        return Counter.builder("suggestion.cache.requests")
+                      .tag("result", result)
+                      .register(this.meterRegistry);
+    }
+
+    private record Entry(int limit,
+                         List<String> suggestions) {
+
+        boolean canAnswer(int requestedLimit) {
+            return requestedLimit <= this.limit || this.suggestions.size() < this.limit;
+        }
+
+        List<String> take(int requestedLimit) {
+            return this.suggestions.subList(0, Math.min(requestedLimit, this.suggestions.size()));
+        }
+
+    }
+
+}
@@ -1,8 +1,14 @@
 package com.vinsguru.business.service;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.core.search.CompletionSuggestOption;
+import co.elastic.clients.elasticsearch.core.search.Suggestion;
 import com.vinsguru.business.dto.SuggestionRequestParameters;
 import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.ElasticsearchUtil;
 import com.vinsguru.business.util.NativeQueryBuilder;
+import com.vinsguru.business.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
@@ -11,7 +17,9 @@ import org.springframework.stereotype.Service;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class SuggestionService {
@@ -19,16 +27,67 @@ public class SuggestionService {
     private static final Logger log = LoggerFactory.getLogger(SuggestionService.class);
 
     private final ElasticsearchOperations elasticsearchOperations;
+    private final SuggestionCache suggestionCache;
+    private final LocalSuggestionEngine localSuggestionEngine;
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+    private final InFlightRequests inFlightRequests;
+    private final StageMetrics stageMetrics;
+    private final SingleFlight<SuggestionRequestParameters, List<String>> singleFlight;
 
-    public SuggestionService(ElasticsearchOperations elasticsearchOperations) {
+    public SuggestionService(ElasticsearchOperations elasticsearchOperations,
+                             SuggestionCache suggestionCache,
+                             LocalSuggestionEngine localSuggestionEngine,
+                             ElasticsearchAsyncClient elasticsearchAsyncClient,
+                             InFlightRequests inFlightRequests,
+                             StageMetrics stageMetrics,
+                             MeterRegistry meterRegistry) {
         this.elasticsearchOperations = elasticsearchOperations;
+        this.suggestionCache = suggestionCache;
+        this.localSuggestionEngine = localSuggestionEngine;
+        this.elasticsearchAsyncClient = elasticsearchAsyncClient;
+        this.inFlightRequests = inFlightRequests;
+        this.stageMetrics = stageMetrics;
+        this.singleFlight = new SingleFlight<>("suggestion", meterRegistry);
     }
 
     public List<String> fetchSuggestions(SuggestionRequestParameters parameters) {
         log.info("suggestion request: {}", parameters);
-        var query = NativeQueryBuilder.toSuggestQuery(parameters);
-        var searchHits = this.elasticsearchOperations.search(query, Object.class, Constants.Index.SUGGESTION);
-        return Optional.ofNullable(searchHits.getSuggest())
+        if (this.localSuggestionEngine.isReady()) {
+            return this.localSuggestionEngine.suggest(parameters);
+        }
+        return this.suggestionCache.get(parameters, p -> this.singleFlight.execute(p.canonical(), key -> this.searchSuggestions(p)));
+    }
+
+    public CompletableFuture<List<String>> fetchSuggestionsAsync(SuggestionRequestParameters parameters) {
+        log.info("suggestion request: {}", parameters);
+        if (this.localSuggestionEngine.isReady()) {
+            return CompletableFuture.completedFuture(this.localSuggestionEngine.suggest(parameters));
+        }
+        return this.suggestionCache.getAsync(parameters, p -> this.singleFlight.executeAsync(p.canonical(), key -> this.searchSuggestionsAsync(p)));
+    }
+
+    private CompletableFuture<List<String>> searchSuggestionsAsync(SuggestionRequestParameters parameters) {
+        var stages = this.stageMetrics.start(StageMetrics.Pipeline.SUGGESTION, StageMetrics.NO_RULES);
+        var request = stages.time(StageMetrics.Stage.QUERY_BUILDING, () -> ElasticsearchUtil.buildSearchRequest(Constants.Index.SUGGESTION, NativeQueryBuilder.toSuggestQuery(parameters)));
+        return stages.elasticsearchAsync(() -> this.inFlightRequests.async(() -> this.elasticsearchAsyncClient.search(request, Map.class)))
+                     .thenApply(response -> stages.mapHits(() -> response.suggest()
+                                                                         .getOrDefault(Constants.Suggestion.SUGGEST_NAME, List.of())
+                                                                         .stream()
+                                                                         .map(Suggestion::completion)
+                                                                         .flatMap(c -> c.options().stream())
+                                                                         .map(CompletionSuggestOption::text)
+                                                                         .toList()));
+    }
+
+    private List<String> searchSuggestions(SuggestionRequestParameters parameters) {
+        var stages = this.stageMetrics.start(StageMetrics.Pipeline.SUGGESTION, StageMetrics.NO_RULES);
+        var query = stages.time(StageMetrics.Stage.QUERY_BUILDING, () -> NativeQueryBuilder.toSuggestQuery(parameters));
+        var searchHits = stages.elasticsearch(() -> this.inFlightRequests.blocking(() -> this.elasticsearchOperations.search(query, Object.class, Constants.Index.SUGGESTION)));
+        return stages.mapHits(() -> toSuggestions(searchHits.getSuggest()));
+    }
+
+    static List<String> toSuggestions(Suggest suggest) {
+        return Optional.ofNullable(suggest)
                        .map(s -> s.getSuggestion(Constants.Suggestion.SUGGEST_NAME))
                        .stream()
                        .map(Suggest.Suggestion::getEntries)
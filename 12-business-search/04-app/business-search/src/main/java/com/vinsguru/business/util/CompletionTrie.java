@@ -0,0 +1,265 @@
+package com.vinsguru.business.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/*
+ * Immutable, array backed trie of completion inputs. It mirrors the semantics of our completion suggester
+ * (see ElasticsearchUtil.buildCompletionSuggester):
+ *  - inputs and prefixes are analyzed like the "simple" analyzer of the completion field (lowercase, letters only)
+ *  - the first Constants.Fuzzy.PREFIX_LENGTH characters must match exactly
+ *  - the rest of the prefix may be Constants.Fuzzy.LEVEL edits (transpositions count as one edit) away
+ *  - duplicate suggestions are skipped
+ * Suggestions are ordered by edit distance, then weight, then text.
+ * */
+public final class CompletionTrie {
+
+    private static final Pattern NON_LETTERS = Pattern.compile("[^\\p{L}]+");
+    private static final CompletionTrie EMPTY = CompletionTrie.builder().build();
+
+    // nodes are laid out breadth first, so the children of a node are contiguous and sorted by label
+    private final char[] labels;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final int[] firstTerm;
+    private final int[] termCount;
+    private final String[] texts;
+    private final int[] weights;
+    private final int maxEdits;
+    private final int prefixLength;
+
+    private CompletionTrie(Builder builder) {
+        this.maxEdits = builder.maxEdits;
+        this.prefixLength = builder.prefixLength;
+
+        // sort the analyzed inputs, so that every node owns a contiguous range of terms
+        var entries = new ArrayList<>(builder.entries);
+        entries.sort(Comparator.comparing(Entry::analyzed).thenComparing(Entry::text));
+        this.texts = entries.stream().map(Entry::text).toArray(String[]::new);
+        this.weights = entries.stream().mapToInt(Entry::weight).toArray();
+
+        var root = new MutableNode();
+        for (int i = 0; i < entries.size(); i++) {
+            var node = root;
+            for (char c : entries.get(i).analyzed().toCharArray()) {
+                node.extend(i);
+                node = node.children.computeIfAbsent(c, k -> new MutableNode());
+            }
+            node.extend(i);
+        }
+
+        var nodes = new ArrayList<MutableNode>();
+        var nodeLabels = new ArrayList<Character>();
+        nodes.add(root);
+        nodeLabels.add('\0');
+        var size = 1;
+        this.firstChild = new int[this.countNodes(root)];
+        this.childCount = new int[this.firstChild.length];
+        this.firstTerm = new int[this.firstChild.length];
+        this.termCount = new int[this.firstChild.length];
+        for (int i = 0; i < nodes.size(); i++) {
+            var node = nodes.get(i);
+            this.firstChild[i] = size;
+            this.childCount[i] = node.children.size();
+            this.firstTerm[i] = node.firstTerm;
+            this.termCount[i] = node.lastTerm - node.firstTerm + 1;
+            for (var child : node.children.entrySet()) {
+                nodes.add(child.getValue());
+                nodeLabels.add(child.getKey());
+                size++;
+            }
+        }
+        this.labels = new char[size];
+        for (int i = 0; i < size; i++) {
+            this.labels[i] = nodeLabels.get(i);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static CompletionTrie empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return this.texts.length;
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        var query = analyze(prefix);
+        if (query.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        // exact part of the prefix
+        var exactLength = Math.min(this.prefixLength, query.length());
+        var node = 0;
+        for (int i = 0; i < exactLength && node >= 0; i++) {
+            node = this.child(node, query.charAt(i));
+        }
+        if (node < 0) {
+            return List.of();
+        }
+
+        // fuzzy part of the prefix: best edit distance per term
+        var distances = new HashMap<Integer, Integer>();
+        var remaining = query.substring(exactLength);
+        if (remaining.isEmpty() || this.maxEdits == 0) {
+            node = this.descendExactly(node, remaining);
+            if (node >= 0) {
+                this.collect(node, 0, distances);
+            }
+        } else {
+            var row = new int[remaining.length() + 1];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = i;
+            }
+            this.collectIfMatch(node, row, distances);
+            this.fuzzyDescend(node, remaining, null, row, '\0', distances);
+        }
+        return this.top(distances, limit);
+    }
+
+    private int descendExactly(int node, String path) {
+        for (int i = 0; i < path.length() && node >= 0; i++) {
+            node = this.child(node, path.charAt(i));
+        }
+        return node;
+    }
+
+    // optimal string alignment distance of the remaining prefix against the path to each node
+    private void fuzzyDescend(int node, String remaining, int[] previousRow, int[] row, char previousLabel, Map<Integer, Integer> distances) {
+        var columns = remaining.length();
+        for (int child = this.firstChild[node], end = child + this.childCount[node]; child < end; child++) {
+            var label = this.labels[child];
+            var nextRow = new int[columns + 1];
+            nextRow[0] = row[0] + 1;
+            var min = nextRow[0];
+            for (int i = 1; i <= columns; i++) {
+                var c = remaining.charAt(i - 1);
+                var cost = c == label ? 0 : 1;
+                nextRow[i] = Math.min(Math.min(nextRow[i - 1] + 1, row[i] + 1), row[i - 1] + cost);
+                if (previousRow != null && i > 1 && c == previousLabel && remaining.charAt(i - 2) == label) {
+                    nextRow[i] = Math.min(nextRow[i], previousRow[i - 2] + 1);
+                }
+                min = Math.min(min, nextRow[i]);
+            }
+            if (min > this.maxEdits) {
+                continue;
+            }
+            this.collectIfMatch(child, nextRow, distances);
+            this.fuzzyDescend(child, remaining, row, nextRow, label, distances);
+        }
+    }
+
+    private void collectIfMatch(int node, int[] row, Map<Integer, Integer> distances) {
+        var distance = row[row.length - 1];
+        if (distance <= this.maxEdits) {
+            this.collect(node, distance, distances);
+        }
+    }
+
+    private void collect(int node, int distance, Map<Integer, Integer> distances) {
+        for (int term = this.firstTerm[node], end = term + this.termCount[node]; term < end; term++) {
+            distances.merge(term, distance, Math::min);
+        }
+    }
+
+    private List<String> top(Map<Integer, Integer> distances, int limit) {
+        var comparator = Comparator.<Map.Entry<Integer, Integer>>comparingInt(Map.Entry::getValue)
+                                   .thenComparing(e -> this.weights[e.getKey()], Comparator.reverseOrder())
+                                   .thenComparing(e -> this.texts[e.getKey()]);
+        var candidates = new ArrayList<>(distances.entrySet());
+        candidates.sort(comparator);
+        var suggestions = new LinkedHashSet<String>(); // skip duplicates
+        for (int i = 0; i < candidates.size() && suggestions.size() < limit; i++) {
+            suggestions.add(this.texts[candidates.get(i).getKey()]);
+        }
+        return List.copyOf(suggestions);
+    }
+
+    // children are sorted by label
+    private int child(int node, char label) {
+        int low = this.firstChild[node];
+        int high = low + this.childCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (this.labels[mid] < label) {
+                low = mid + 1;
+            } else if (this.labels[mid] > label) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int countNodes(MutableNode node) {
+        return 1 + node.children.values().stream().mapToInt(this::countNodes).sum();
+    }
+
+    static String analyze(String text) {
+        return NON_LETTERS.matcher(text.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    private record Entry(String text,
+                         String analyzed,
+                         int weight) {
+    }
+
+    private static class MutableNode {
+
+        private final Map<Character, MutableNode> children = new TreeMap<>();
+        private int firstTerm = -1;
+        private int lastTerm = -2;
+
+        void extend(int term) {
+            if (this.firstTerm < 0) {
+                this.firstTerm = term;
+            }
+            this.lastTerm = term;
+        }
+
+    }
+
+    public static class Builder {
+
+        private final List<Entry> entries = new ArrayList<>();
+        private int maxEdits = Integer.parseInt(Constants.Fuzzy.LEVEL);
+        private int prefixLength = Constants.Fuzzy.PREFIX_LENGTH;
+
+        public Builder add(String input, int weight) {
+            var analyzed = analyze(input);
+            if (!analyzed.isEmpty()) {
+                this.entries.add(new Entry(input, analyzed, weight));
+            }
+            return this;
+        }
+
+        public Builder maxEdits(int maxEdits) {
+            this.maxEdits = maxEdits;
+            return this;
+        }
+
+        public Builder prefixLength(int prefixLength) {
+            this.prefixLength = prefixLength;
+            return this;
+        }
+
+        public CompletionTrie build() {
+            return new CompletionTrie(this);
+        }
+
+    }
+
+}
@@ -22,18 +22,39 @@ public class Constants {
        public static final Integer PREFIX_LENGTH = 2;
     }
 
+    // keys of the _meta of a migrated index, see IndexMigrationService
+    public static class IndexMeta {
+        public static final String SORT = "sort";
+        public static final String ROUTING = "routing";
+    }
+
+    public static class Sort {
+        public static final String SHARD_DOC = "_shard_doc"; // tiebreaker of point in time searches
+    }
+
     public static class Business {
         public static final String NAME = "name";
         public static final String ADDRESS = "address";
         public static final String DESCRIPTION = "description";
         public static final String STATE = "state";
+        public static final String STATE_LOWERCASE = "state.lowercase";
         public static final String LOCATION = "location";
         public static final String CATEGORY = "category";
         public static final String CATEGORY_RAW = "category.raw";
+        public static final String CATEGORY_LOWERCASE = "category.lowercase";
         public static final String OFFERINGS = "offerings";
         public static final String OFFERINGS_RAW = "offerings.raw";
+        public static final String OFFERINGS_LOWERCASE = "offerings.lowercase";
         public static final String RATING = "avg_rating";
+        public static final String REVIEWS = "num_of_reviews";
+        public static final String POPULARITY_RATING = "popularity.rating";   // rank_feature copies of avg_rating and num_of_reviews,
+        public static final String POPULARITY_REVIEWS = "popularity.reviews"; // set by the ingest pipeline of the index (positive values only)
+        public static final String URL = "url";
+        public static final String SEARCH_ALL = "search_all"; // copy_to target of name, category, offerings, address and description
         public static final String OFFERINGS_AGGREGATE_NAME = "offerings-term-aggregate";
+        public static final String STATE_AGGREGATE_NAME = "state-term-aggregate";
+        public static final String CATEGORY_AGGREGATE_NAME = "category-term-aggregate";
+        public static final String FACET_SAMPLER_AGGREGATE_NAME = "facet-sampler"; // random_sampler around all the facet aggregations
     }
 
 }
@@ -0,0 +1,52 @@
+package com.vinsguru.business.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+// parses elasticsearch distance strings like "5mi", "2.5 km" or "500" (meters)
+public class DistanceUnits {
+
+    private static final Pattern DISTANCE = Pattern.compile("^\\s*(\\d+(?:\\.\\d+)?)\\s*([a-z]*)\\s*$");
+    private static final Map<String, Double> METERS_PER_UNIT = Map.ofEntries(
+            Map.entry("", 1.0),
+            Map.entry("m", 1.0),
+            Map.entry("meters", 1.0),
+            Map.entry("km", 1000.0),
+            Map.entry("kilometers", 1000.0),
+            Map.entry("cm", 0.01),
+            Map.entry("centimeters", 0.01),
+            Map.entry("mm", 0.001),
+            Map.entry("millimeters", 0.001),
+            Map.entry("mi", 1609.344),
+            Map.entry("miles", 1609.344),
+            Map.entry("yd", 0.9144),
+            Map.entry("yards", 0.9144),
+            Map.entry("ft", 0.3048),
+            Map.entry("feet", 0.3048),
+            Map.entry("in", 0.0254),
+            Map.entry("inch", 0.0254),
+            Map.entry("nmi", 1852.0),
+            Map.entry("nauticalmiles", 1852.0)
+    );
+
+    private DistanceUnits() {}
+
+    public static Optional<Double> toMeters(String distance) {
+        var matcher = DISTANCE.matcher(distance.toLowerCase(Locale.ROOT));
+        if (!matcher.matches() || !METERS_PER_UNIT.containsKey(matcher.group(2))) {
+            return Optional.empty();
+        }
+        return Optional.of(Double.parseDouble(matcher.group(1)) * METERS_PER_UNIT.get(matcher.group(2)));
+    }
+
+    // "5mi" and "8046.72m" become the same string
+    public static String normalize(String distance) {
+        return toMeters(distance).map(meters -> BigDecimal.valueOf(meters).setScale(2, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString() + "m")
+                                 .orElse(distance);
+    }
+
+}
@@ -1,16 +1,34 @@
 package com.vinsguru.business.util;
 
+import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.GeoLocation;
 import co.elastic.clients.elasticsearch._types.LatLonGeoLocation;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
 import co.elastic.clients.elasticsearch._types.aggregations.TermsAggregation;
 import co.elastic.clients.elasticsearch._types.query_dsl.*;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.search.CompletionSuggester;
 import co.elastic.clients.elasticsearch.core.search.FieldSuggester;
+import co.elastic.clients.elasticsearch.core.search.Rescore;
+import co.elastic.clients.elasticsearch.core.search.RescoreQuery;
+import co.elastic.clients.elasticsearch.core.search.ScoreMode;
+import co.elastic.clients.elasticsearch.core.search.SearchRequestBody;
 import co.elastic.clients.elasticsearch.core.search.SuggestFuzziness;
 import co.elastic.clients.elasticsearch.core.search.Suggester;
+import co.elastic.clients.elasticsearch.indices.IndexSegmentSort;
+import co.elastic.clients.elasticsearch.indices.SegmentSortMissing;
+import co.elastic.clients.elasticsearch.indices.SegmentSortOrder;
+import co.elastic.clients.util.ApiTypeHelper;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.RescorerQuery;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.function.UnaryOperator;
 
 public class ElasticsearchUtil {
@@ -34,6 +52,14 @@ public class ElasticsearchUtil {
         return Query.of(builder -> builder.term(termQuery));
     }
 
+    // a plain term query, which the node query cache can reuse in a filter. the field has a lowercase normalizer, so does the value
+    public static Query buildNormalizedTermQuery(String field, String value, float boost) {
+        var termQuery = TermQuery.of(builder -> builder.field(field)
+                                                       .value(value.toLowerCase(Locale.ROOT))
+                                                       .boost(boost));
+        return Query.of(builder -> builder.term(termQuery));
+    }
+
     public static Query buildRangeQuery(String field, UnaryOperator<NumberRangeQuery.Builder> function) {
         var numberRangeQuery = NumberRangeQuery.of(builder -> function.apply(builder.field(field)));
         var rangeQuery = RangeQuery.of(builder -> builder.number(numberRangeQuery));
@@ -50,18 +76,234 @@ public class ElasticsearchUtil {
     }
 
     public static Query buildMultiMatchQuery(List<String> fields, String searchTerm) {
-        var multiMatchQuery = MultiMatchQuery.of(builder -> builder.query(searchTerm)
-                                                                   .fields(fields)
-                                                                   .fuzziness(Constants.Fuzzy.LEVEL)
-                                                                   .prefixLength(Constants.Fuzzy.PREFIX_LENGTH)
-                                                                   .type(TextQueryType.MostFields)
-                                                                   .operator(Operator.And));
+        return buildMultiMatchQuery(fields, searchTerm, true);
+    }
+
+    // without fuzziness, every term of the query is looked up as it is instead of being expanded into its variants
+    public static Query buildMultiMatchQuery(List<String> fields, String searchTerm, boolean fuzzy) {
+        var multiMatchQuery = MultiMatchQuery.of(builder -> {
+            builder.query(searchTerm)
+                   .fields(fields)
+                   .type(TextQueryType.MostFields)
+                   .operator(Operator.And);
+            if (fuzzy) {
+                builder.fuzziness(Constants.Fuzzy.LEVEL)
+                       .prefixLength(Constants.Fuzzy.PREFIX_LENGTH);
+            }
+            return builder;
+        });
         return Query.of(builder -> builder.multiMatch(multiMatchQuery));
     }
 
+    public static Query buildMatchQuery(String field, String searchTerm, boolean fuzzy) {
+        var matchQuery = MatchQuery.of(builder -> {
+            builder.field(field)
+                   .query(searchTerm)
+                   .operator(Operator.And);
+            if (fuzzy) {
+                builder.fuzziness(Constants.Fuzzy.LEVEL)
+                       .prefixLength(Constants.Fuzzy.PREFIX_LENGTH);
+            }
+            return builder;
+        });
+        return Query.of(builder -> builder.match(matchQuery));
+    }
+
+    /*
+    matches (and expands the fuzzy variants) on the catch-all field only. the boosted fields are still searched, with their exact terms,
+    in a should clause: they add to the score of the matching documents and do not match on their own.
+    * */
+    public static Query buildCatchAllQuery(String catchAllField, List<String> rankingFields, String searchTerm, boolean fuzzy) {
+        var boolQuery = BoolQuery.of(builder -> builder.must(buildMatchQuery(catchAllField, searchTerm, fuzzy))
+                                                       .should(buildMultiMatchQuery(rankingFields, searchTerm, false)));
+        return Query.of(builder -> builder.bool(boolQuery));
+    }
+
+    /*
+    ln(scalingFactor + value) of a rank_feature field, times the boost. a document without the field does not match (scores 0 in a should clause).
+    the score of a rank_feature query is bounded per block of documents, so the top hits collection can still skip the blocks which can not compete.
+    * */
+    public static Query buildRankFeatureLogQuery(String field, float scalingFactor, float boost) {
+        var rankFeatureQuery = RankFeatureQuery.of(builder -> builder.field(field)
+                                                                     .log(l -> l.scalingFactor(scalingFactor))
+                                                                     .boost(boost));
+        return Query.of(builder -> builder.rankFeature(rankFeatureQuery));
+    }
+
+    /*
+    adds weight * ln(1 + value) of every field to the score of the query, 0 for a document without the field.
+    the functions are unbounded, so every matching document has to be scored (no early termination of the top hits collection).
+    * */
+    public static Query buildLogFunctionScoreQuery(Query query, Map<String, Float> fieldWeights) {
+        var functions = fieldWeights.entrySet()
+                                    .stream()
+                                    .map(entry -> FunctionScore.of(builder -> builder.fieldValueFactor(f -> f.field(entry.getKey())
+                                                                                                             .modifier(FieldValueFactorModifier.Ln1p)
+                                                                                                             .missing(0.0))
+                                                                                     .weight((double) entry.getValue())))
+                                    .toList();
+        var functionScoreQuery = FunctionScoreQuery.of(builder -> builder.query(query)
+                                                                         .functions(functions)
+                                                                         .scoreMode(FunctionScoreMode.Sum)
+                                                                         .boostMode(FunctionBoostMode.Sum));
+        return Query.of(builder -> builder.functionScore(functionScoreQuery));
+    }
+
+    // the terms in this order, at most slop positions apart
+    public static Query buildPhraseQuery(String field, String searchTerm, int slop, float boost) {
+        var matchPhraseQuery = MatchPhraseQuery.of(builder -> builder.field(field)
+                                                                     .query(searchTerm)
+                                                                     .slop(slop)
+                                                                     .boost(boost));
+        return Query.of(builder -> builder.matchPhrase(matchPhraseQuery));
+    }
+
+    // weight at the origin, half of it at the scale distance (gauss). matches every document, 0 for one without the field
+    public static Query buildGeoDecayQuery(String field, Double latitude, Double longitude, String scale, float weight) {
+        var origin = GeoLocation.of(builder -> builder.latlon(l -> l.lat(latitude).lon(longitude)));
+        var decayFunction = DecayFunction.of(builder -> builder.geo(g -> g.field(field)
+                                                                          .placement(p -> p.origin(origin).scale(scale))));
+        var functionScoreQuery = FunctionScoreQuery.of(builder -> builder.functions(f -> f.gauss(decayFunction).weight((double) weight))
+                                                                         .boostMode(FunctionBoostMode.Replace));
+        return Query.of(builder -> builder.functionScore(functionScoreQuery));
+    }
+
     public static Aggregation buildTermsAggregation(String field){
         var termsAggregation = TermsAggregation.of(builder -> builder.field(field).size(10));
         return Aggregation.of(builder -> builder.terms(termsAggregation));
     }
 
+    // aggregates the documents matching the filter only
+    public static Aggregation buildFilterAggregation(Query filter, String name, Aggregation aggregation) {
+        return Aggregation.of(builder -> builder.filter(filter).aggregations(name, aggregation));
+    }
+
+    // aggregates the shardSize best matching documents per shard only
+    public static Aggregation buildSamplerAggregation(int shardSize, String name, Aggregation aggregation) {
+        return Aggregation.of(builder -> builder.sampler(s -> s.shardSize(shardSize)).aggregations(name, aggregation));
+    }
+
+    // aggregates a random sample of the matching documents. has to be a top level aggregation
+    public static Aggregation buildRandomSamplerAggregation(double probability, Map<String, Aggregation> aggregations) {
+        return Aggregation.of(builder -> builder.randomSampler(r -> r.probability(probability)).aggregations(aggregations));
+    }
+
+    // the rescorer query of a NativeQuery, the way ElasticsearchOperations converts it
+    public static Rescore buildRescore(RescorerQuery rescorerQuery) {
+        var query = ((NativeQuery) rescorerQuery.getQuery()).getQuery();
+        var rescoreQuery = RescoreQuery.of(builder -> {
+            builder.query(query)
+                   .queryWeight((double) Objects.requireNonNullElse(rescorerQuery.getQueryWeight(), 1.0f))
+                   .rescoreQueryWeight((double) Objects.requireNonNullElse(rescorerQuery.getRescoreQueryWeight(), 1.0f));
+            if (rescorerQuery.getScoreMode() != RescorerQuery.ScoreMode.Default) {
+                builder.scoreMode(ScoreMode.valueOf(rescorerQuery.getScoreMode().name()));
+            }
+            return builder;
+        });
+        return Rescore.of(builder -> builder.windowSize(rescorerQuery.getWindowSize()).query(rescoreQuery));
+    }
+
+    public static SortOptions buildScoreSort() {
+        return SortOptions.of(builder -> builder.score(s -> s.order(SortOrder.Desc)));
+    }
+
+    public static SortOptions buildFieldSort(String field, SortOrder order) {
+        return SortOptions.of(builder -> builder.field(f -> f.field(field).order(order)));
+    }
+
+    // the on-disk order of an index, descending with the missing values last like buildFieldSort(field, SortOrder.Desc)
+    public static IndexSegmentSort buildDescendingIndexSort(List<String> fields) {
+        return IndexSegmentSort.of(builder -> builder.field(fields)
+                                                     .order(fields.stream().map(field -> SegmentSortOrder.Desc).toList())
+                                                     .missing(fields.stream().map(field -> SegmentSortMissing.Last).toList()));
+    }
+
+    /*
+    ElasticsearchOperations converts a NativeQuery internally. For the Elasticsearch clients we use directly (async, msearch, ...),
+    buildSearchRequestBody converts the parts of the native query our NativeQueryBuilder sets, once. the search request is
+    that body plus the index (unless it searches a point in time) and the routing of the query.
+    * */
+    public static SearchRequest buildSearchRequest(IndexCoordinates index, NativeQuery query) {
+        return SearchRequest.of(builder -> applyBody(builder, index, query));
+    }
+
+    // the same search, with the shard level breakdown of its execution in the response
+    public static SearchRequest buildProfiledSearchRequest(IndexCoordinates index, NativeQuery query) {
+        return SearchRequest.of(builder -> applyBody(builder, index, query).profile(true));
+    }
+
+    private static SearchRequest.Builder applyBody(SearchRequest.Builder builder, IndexCoordinates index, NativeQuery query) {
+        var body = buildSearchRequestBody(query);
+        builder.size(body.size())
+               .from(body.from())
+               .pit(body.pit())
+               .query(body.query())
+               .postFilter(body.postFilter())
+               .suggest(body.suggest())
+               .trackTotalHits(body.trackTotalHits())
+               .source(body.source());
+        if (ApiTypeHelper.isDefined(body.aggregations())) {
+            builder.aggregations(body.aggregations());
+        }
+        if (ApiTypeHelper.isDefined(body.sort())) {
+            builder.sort(body.sort());
+        }
+        if (ApiTypeHelper.isDefined(body.searchAfter())) {
+            builder.searchAfter(body.searchAfter());
+        }
+        if (ApiTypeHelper.isDefined(body.rescore())) {
+            builder.rescore(body.rescore());
+        }
+        if (Objects.isNull(body.pit())) {
+            // a point in time search must not target an index
+            builder.index(List.of(index.getIndexNames()));
+        }
+        if (Objects.nonNull(query.getRoute())) {
+            builder.routing(query.getRoute());
+        }
+        return builder;
+    }
+
+    // body of a _msearch item, the index and the routing go into its header. buildSearchRequest adds them to this body
+    public static SearchRequestBody buildSearchRequestBody(NativeQuery query) {
+        return SearchRequestBody.of(builder -> {
+            builder.size(query.getRequestSize())
+                   .aggregations(query.getAggregations())
+                   .sort(query.getSortOptions());
+            if (Objects.nonNull(query.getPointInTime())) {
+                var pointInTime = query.getPointInTime();
+                builder.pit(p -> p.id(pointInTime.id()).keepAlive(t -> t.time(pointInTime.keepAlive().toSeconds() + "s")));
+            }
+            if (Objects.nonNull(query.getSearchAfter())) {
+                builder.searchAfter(query.getSearchAfter().stream().map(FieldValue::of).toList());
+            }
+            if (query.getPageable().isPaged()) {
+                builder.from((int) query.getPageable().getOffset());
+            }
+            if (Objects.nonNull(query.getQuery())) {
+                builder.query(query.getQuery());
+            }
+            if (Objects.nonNull(query.getFilter())) {
+                builder.postFilter(query.getFilter());
+            }
+            if (!query.getRescorerQueries().isEmpty()) {
+                builder.rescore(query.getRescorerQueries().stream().map(ElasticsearchUtil::buildRescore).toList());
+            }
+            if (Objects.nonNull(query.getSuggester())) {
+                builder.suggest(query.getSuggester());
+            }
+            if (Objects.nonNull(query.getTrackTotalHitsUpTo())) {
+                builder.trackTotalHits(t -> t.count(query.getTrackTotalHitsUpTo()));
+            } else if (Objects.nonNull(query.getTrackTotalHits())) {
+                builder.trackTotalHits(t -> t.enabled(query.getTrackTotalHits()));
+            }
+            if (Objects.nonNull(query.getSourceFilter())) {
+                var sourceFilter = query.getSourceFilter();
+                builder.source(s -> s.filter(f -> f.includes(List.of(Objects.requireNonNullElse(sourceFilter.getIncludes(), new String[0])))
+                                                   .excludes(List.of(Objects.requireNonNullElse(sourceFilter.getExcludes(), new String[0])))));
+            }
+            return builder;
+        });
+    }
+
 }
@@ -0,0 +1,50 @@
+package com.vinsguru.business.util;
+
+import com.vinsguru.business.exceptions.BadRequestException;
+
+import java.util.Locale;
+
+// the fields we offer facets for. the key is how a facet is selected via the "facet" request parameter, e.g. facet=state:Texas
+public enum FacetField {
+
+    OFFERINGS(Constants.Business.OFFERINGS_RAW, Constants.Business.OFFERINGS_LOWERCASE, Constants.Business.OFFERINGS_AGGREGATE_NAME),
+    STATE(Constants.Business.STATE, Constants.Business.STATE_LOWERCASE, Constants.Business.STATE_AGGREGATE_NAME),
+    CATEGORY(Constants.Business.CATEGORY_RAW, Constants.Business.CATEGORY_LOWERCASE, Constants.Business.CATEGORY_AGGREGATE_NAME);
+
+    private final String field;
+    private final String normalizedField;
+    private final String aggregateName;
+
+    FacetField(String field, String normalizedField, String aggregateName) {
+        this.field = field;
+        this.normalizedField = normalizedField;
+        this.aggregateName = aggregateName;
+    }
+
+    public String key() {
+        return this.name().toLowerCase(Locale.ROOT);
+    }
+
+    public String field() {
+        return this.field;
+    }
+
+    // the lowercase normalized copy of the field, for the selections. the facet values are aggregated on the field as it is
+    public String normalizedField() {
+        return this.normalizedField;
+    }
+
+    public String aggregateName() {
+        return this.aggregateName;
+    }
+
+    public static FacetField of(String key) {
+        for (var facetField : values()) {
+            if (facetField.key().equals(key.trim().toLowerCase(Locale.ROOT))) {
+                return facetField;
+            }
+        }
+        throw new BadRequestException("unknown facet: " + key);
+    }
+
+}
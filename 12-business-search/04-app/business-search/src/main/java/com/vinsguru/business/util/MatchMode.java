@@ -0,0 +1,41 @@
+package com.vinsguru.business.util;
+
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.SearchCursor;
+import com.vinsguru.business.dto.SearchRequestParameters;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/*
+How the search terms are matched: exact, or fuzzy (see Constants.Fuzzy). Reported by every SearchResponse.
+With search.fuzziness.mode=adaptive, a search starts exact and falls back to fuzzy when its terms match too few businesses.
+The total of a filtered search says little about its terms (coffee in Alaska may just not exist), so a filtered search does not fall back.
+The pages of a cursor keep the match mode of its first page.
+* */
+public enum MatchMode {
+
+    EXACT,
+    FUZZY;
+
+    public String tag() {
+        return this.name().toLowerCase(Locale.ROOT);
+    }
+
+    // the match mode of the first query of a search
+    public static MatchMode initial(SearchCursor cursor, SearchProperties.Fuzziness fuzziness) {
+        if (Objects.nonNull(cursor) && Objects.nonNull(cursor.matchMode())) {
+            return cursor.matchMode();
+        }
+        return fuzziness.mode() == SearchProperties.Fuzziness.Mode.ADAPTIVE ? EXACT : FUZZY;
+    }
+
+    // whether the search has to run again with fuzziness, given the total of businesses matched in this mode
+    public boolean fallsBack(SearchRequestParameters parameters, long totalHits, SearchProperties.Fuzziness fuzziness) {
+        return this == EXACT
+                && fuzziness.mode() == SearchProperties.Fuzziness.Mode.ADAPTIVE
+                && !parameters.hasFilters()
+                && totalHits < fuzziness.minExactHits();
+    }
+
+}
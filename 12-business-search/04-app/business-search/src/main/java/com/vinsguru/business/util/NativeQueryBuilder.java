@@ -1,23 +1,35 @@
 package com.vinsguru.business.util;
 
-import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.SearchCursor;
 import com.vinsguru.business.dto.SearchRequestParameters;
 import com.vinsguru.business.dto.SuggestionRequestParameters;
+import com.vinsguru.business.exceptions.BadRequestException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.RescorerQuery;
+import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 
 public class NativeQueryBuilder {
 
     private static final List<QueryRule> FILTER_QUERY_RULES = List.of(
             QueryRules.STATE_QUERY,
             QueryRules.RATING_QUERY,
-            QueryRules.DISTANCE_QUERY,
-            QueryRules.OFFERINGS_QUERY
+            QueryRules.DISTANCE_QUERY
     );
 
     private static final List<QueryRule> MUST_QUERY_RULES = List.of(
@@ -28,11 +40,51 @@ public class NativeQueryBuilder {
             QueryRules.CATEGORY_QUERY
     );
 
+    // one compiler per variant of the rules, see SearchProperties and MatchMode. the rules of all the variants have the same names
+    private static final Map<QueryVariant, QueryCompiler> QUERY_COMPILERS = new HashMap<>();
+
+    static {
+        for (var textMatch : SearchProperties.TextMatch.Mode.values()) {
+            for (var matchMode : MatchMode.values()) {
+                for (var keywordFilters : SearchProperties.KeywordFilters.Mode.values()) {
+                    for (var popularity : SearchProperties.Popularity.Mode.values()) {
+                        QUERY_COMPILERS.put(new QueryVariant(textMatch, matchMode, keywordFilters, popularity), new QueryCompiler(
+                                filterRules(keywordFilters),
+                                mustRules(textMatch, matchMode),
+                                shouldRules(keywordFilters, popularity)
+                        ));
+                    }
+                }
+            }
+        }
+    }
+
+    private static final QueryCompiler QUERY_COMPILER = QUERY_COMPILERS.get(new QueryVariant(
+            SearchProperties.TextMatch.Mode.MOST_FIELDS,
+            MatchMode.FUZZY,
+            SearchProperties.KeywordFilters.Mode.CASE_INSENSITIVE,
+            SearchProperties.Popularity.Mode.NONE
+    ));
+
+    private static final Query MATCH_ALL_QUERY = Query.of(builder -> builder.matchAll(m -> m));
+
+    private static final int PROXIMITY_SLOP = 2;
+    private static final String RESCORE_RULE_PREFIX = "rescore-";
+    private static final String SORT_RULE_PREFIX = "sort-";
+
+    private static final Map<FacetField, Aggregation> FACET_AGGREGATIONS = new EnumMap<>(FacetField.class);
+
+    static {
+        for (var facetField : FacetField.values()) {
+            FACET_AGGREGATIONS.put(facetField, ElasticsearchUtil.buildTermsAggregation(facetField.field()));
+        }
+    }
+
     public static NativeQuery toSuggestQuery(SuggestionRequestParameters parameters) {
         var suggester = ElasticsearchUtil.buildCompletionSuggester(
                 Constants.Suggestion.SUGGEST_NAME,
                 Constants.Suggestion.SEARCH_TERM,
-                parameters.prefix(),
+                parameters.prefix().toLowerCase(Locale.ROOT),
                 parameters.limit()
         );
         return NativeQuery.builder()
@@ -42,26 +94,351 @@ public class NativeQueryBuilder {
                           .build();
     }
 
-    public static NativeQuery toSearchQuery(SearchRequestParameters parameters) {
-        var filterQueries = buildQueries(FILTER_QUERY_RULES, parameters);
-        var mustQueries = buildQueries(MUST_QUERY_RULES, parameters);
-        var shouldQueries = buildQueries(SHOULD_QUERY_RULES, parameters);
-        var boolQuery = BoolQuery.of(builder -> builder.filter(filterQueries)
-                                                       .must(mustQueries)
-                                                       .should(shouldQueries));
+    public static NativeQuery toSuggestionTermsQuery(int batchSize) {
         return NativeQuery.builder()
-                          .withQuery(Query.of(builder -> builder.bool(boolQuery)))
-                          .withAggregation(Constants.Business.OFFERINGS_AGGREGATE_NAME, ElasticsearchUtil.buildTermsAggregation(Constants.Business.OFFERINGS_RAW))
-                          .withPageable(PageRequest.of(parameters.page(), parameters.size()))
-                          .withTrackTotalHits(true)
+                          .withQuery(Query.of(builder -> builder.matchAll(m -> m)))
+                          .withSourceFilter(FetchSourceFilter.of(b -> b.withIncludes(Constants.Suggestion.SEARCH_TERM)))
+                          .withPageable(PageRequest.of(0, batchSize))
                           .build();
     }
 
-    private static List<Query> buildQueries(List<QueryRule> queryRules, SearchRequestParameters parameters) {
-        return queryRules.stream()
-                         .map(qr -> qr.build(parameters))
-                         .flatMap(Optional::stream)
-                         .toList();
+    public static NativeQuery toSearchQuery(SearchRequestParameters parameters, SearchProperties properties) {
+        return toSearchQuery(parameters, null, properties);
+    }
+
+    // cursor is the position of a cursor based pagination, null for page number based pagination
+    public static NativeQuery toSearchQuery(SearchRequestParameters parameters, SearchCursor cursor, SearchProperties properties) {
+        return toSearchQuery(parameters, cursor, properties, MatchMode.FUZZY);
+    }
+
+    public static NativeQuery toSearchQuery(SearchRequestParameters parameters, SearchCursor cursor, SearchProperties properties, MatchMode matchMode) {
+        return toSearchQuery(parameters, cursor, properties, compiler(properties, matchMode).compile(parameters));
+    }
+
+    // same query, reports the time spent on every query rule to the timer
+    public static NativeQuery toSearchQuery(SearchRequestParameters parameters, SearchCursor cursor, SearchProperties properties, MatchMode matchMode, QueryRuleTimer timer) {
+        return toSearchQuery(parameters, cursor, properties, compiler(properties, matchMode).compile(parameters, timer));
+    }
+
+    public static String firedRules(SearchRequestParameters parameters) {
+        return QUERY_COMPILER.firedRules(parameters);
+    }
+
+    /*
+    the rules tag of the stage metrics: the fired rules, followed by the field sort or the rescore profile of the request,
+    e.g. search+category+rescore-nearby or search+sort-rating.
+    the round trip of the same rules with and without a profile tells the cost of the second ranking phase.
+    * */
+    public static String firedRules(SearchRequestParameters parameters, SearchProperties properties) {
+        var rules = firedRules(parameters);
+        var sortMode = parameters.sortMode();
+        if (!sortMode.isRelevance()) {
+            return rules + "+" + SORT_RULE_PREFIX + sortMode.tag();
+        }
+        if (parameters.isCursorPagination()) {
+            return rules;
+        }
+        var profile = rescoreProfileName(parameters, properties.rescore());
+        if (Objects.isNull(profile) || !properties.rescore().profiles().containsKey(profile)
+                || isPastWindow(parameters, properties.rescore().profiles().get(profile))) {
+            return rules;
+        }
+        return rules + "+" + RESCORE_RULE_PREFIX + profile;
+    }
+
+    private static QueryCompiler compiler(SearchProperties properties, MatchMode matchMode) {
+        return QUERY_COMPILERS.get(new QueryVariant(
+                properties.textMatch().mode(),
+                matchMode,
+                properties.keywordFilters().mode(),
+                properties.popularity().mode()
+        ));
+    }
+
+    private record QueryVariant(SearchProperties.TextMatch.Mode textMatch,
+                                MatchMode matchMode,
+                                SearchProperties.KeywordFilters.Mode keywordFilters,
+                                SearchProperties.Popularity.Mode popularity) {
+    }
+
+    private static List<QueryRule> filterRules(SearchProperties.KeywordFilters.Mode keywordFilters) {
+        if (keywordFilters == SearchProperties.KeywordFilters.Mode.NORMALIZED) {
+            return List.of(QueryRules.NORMALIZED_STATE_QUERY, QueryRules.RATING_QUERY, QueryRules.DISTANCE_QUERY);
+        }
+        return FILTER_QUERY_RULES;
+    }
+
+    private static List<QueryRule> mustRules(SearchProperties.TextMatch.Mode textMatch, MatchMode matchMode) {
+        var exact = matchMode == MatchMode.EXACT;
+        if (textMatch == SearchProperties.TextMatch.Mode.CATCH_ALL) {
+            return List.of(exact ? QueryRules.EXACT_CATCH_ALL_SEARCH_QUERY : QueryRules.CATCH_ALL_SEARCH_QUERY);
+        }
+        return exact ? List.of(QueryRules.EXACT_SEARCH_QUERY) : MUST_QUERY_RULES;
+    }
+
+    private static List<QueryRule> shouldRules(SearchProperties.KeywordFilters.Mode keywordFilters, SearchProperties.Popularity.Mode popularity) {
+        var shouldRules = new ArrayList<QueryRule>();
+        if (keywordFilters == SearchProperties.KeywordFilters.Mode.NORMALIZED) {
+            shouldRules.add(QueryRules.NORMALIZED_CATEGORY_QUERY);
+        } else {
+            shouldRules.addAll(SHOULD_QUERY_RULES);
+        }
+        if (popularity == SearchProperties.Popularity.Mode.RANK_FEATURE) {
+            shouldRules.add(QueryRules.POPULARITY_QUERY);
+        }
+        return shouldRules;
+    }
+
+    // function_score scores every matching document, see SearchProperties.Popularity
+    private static Query applyPopularity(Query query, SearchProperties.Popularity popularity) {
+        if (popularity.mode() == SearchProperties.Popularity.Mode.FUNCTION_SCORE) {
+            return QueryRules.withPopularityScore(query);
+        }
+        return query;
+    }
+
+    // the request around the bool query of the rules
+    static NativeQuery toSearchQuery(SearchRequestParameters parameters, SearchCursor cursor, SearchProperties properties, Query query) {
+        var builder = NativeQuery.builder()
+                                 .withQuery(applyPopularity(query, properties.popularity()));
+        var includes = parameters.projection().includes();
+        if (!includes.isEmpty()) {
+            builder.withSourceFilter(FetchSourceFilter.of(b -> b.withIncludes(includes.toArray(String[]::new))));
+        }
+        applyTotalHitsTracking(builder, parameters, properties.pagination());
+        var facetSelections = parameters.facetSelections();
+        if (!facetSelections.isEmpty()) {
+            builder.withFilter(buildSelectionsQuery(facetSelections, null, properties.keywordFilters()));
+        }
+        if (Objects.isNull(cursor)) {
+            checkDepth(parameters, properties.pagination());
+            applyFacets(builder, parameters, facetSelections, properties);
+            applyRescore(builder, parameters, properties.rescore());
+            applySort(builder, parameters.sortMode());
+            applyRouting(builder, parameters, properties.routing());
+            builder.withPageable(PageRequest.of(parameters.page(), parameters.size()));
+        } else {
+            applyCursor(builder, parameters, cursor, properties, facetSelections);
+        }
+        return builder.build();
+    }
+
+    /*
+    Two-phase ranking. The query ranks all the matching businesses, the rescore query re-ranks the best hits of every shard only,
+    so its costlier signals are computed for window size hits per shard instead of every match.
+    The window is the configured one, it does not grow with the page: a page starting past it is not rescored at all,
+    its hits keep the score of the query alone, like the hits beyond the window of the first pages.
+    Elasticsearch does not rescore sorted searches, so the cursor pages (sorted by _score, _shard_doc) are ranked by the query alone,
+    and searches sorted by a field are not rescored at all.
+    * */
+    private static void applyRescore(org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder builder,
+                                     SearchRequestParameters parameters,
+                                     SearchProperties.Rescore rescore) {
+        if (!parameters.sortMode().isRelevance()) {
+            return;
+        }
+        var profile = rescoreProfile(parameters, rescore);
+        if (Objects.isNull(profile) || isPastWindow(parameters, profile)) {
+            return;
+        }
+        var signals = buildRescoreSignals(parameters, profile);
+        if (signals.isEmpty()) {
+            return;
+        }
+        var rescoreQuery = NativeQuery.builder()
+                                      .withQuery(Query.of(b -> b.bool(bool -> bool.should(signals))))
+                                      .build();
+        builder.withRescorerQuery(new RescorerQuery(rescoreQuery).withWindowSize(profile.windowSize())
+                                                                 .withQueryWeight(profile.queryWeight())
+                                                                 .withRescoreQueryWeight(profile.rescoreQueryWeight())
+                                                                 .withScoreMode(RescorerQuery.ScoreMode.Total));
+    }
+
+    // the first hit of the page is beyond the hits the profile rescores
+    private static boolean isPastWindow(SearchRequestParameters parameters, SearchProperties.Rescore.Profile profile) {
+        return (long) parameters.page() * parameters.size() >= profile.windowSize();
+    }
+
+    // the signals of the profile which apply to the request
+    private static List<Query> buildRescoreSignals(SearchRequestParameters parameters, SearchProperties.Rescore.Profile profile) {
+        var signals = new ArrayList<Query>(2);
+        if (profile.proximityWeight() > 0) {
+            signals.add(ElasticsearchUtil.buildPhraseQuery(Constants.Business.NAME, parameters.query(), PROXIMITY_SLOP, profile.proximityWeight()));
+        }
+        if (profile.geoDecayWeight() > 0 && Objects.nonNull(parameters.latitude()) && Objects.nonNull(parameters.longitude())) {
+            signals.add(ElasticsearchUtil.buildGeoDecayQuery(Constants.Business.LOCATION,
+                                                             parameters.latitude(),
+                                                             parameters.longitude(),
+                                                             profile.geoDecayScale(),
+                                                             profile.geoDecayWeight()));
+        }
+        return signals;
+    }
+
+    // the rescore parameter of the request, the default profile otherwise. null for none
+    private static String rescoreProfileName(SearchRequestParameters parameters, SearchProperties.Rescore rescore) {
+        var name = Objects.requireNonNullElse(parameters.rescore(), Objects.requireNonNullElse(rescore.defaultProfile(), ""));
+        return StringUtils.hasText(name) ? name : null;
+    }
+
+    private static SearchProperties.Rescore.Profile rescoreProfile(SearchRequestParameters parameters, SearchProperties.Rescore rescore) {
+        var name = rescoreProfileName(parameters, rescore);
+        if (Objects.isNull(name)) {
+            return null;
+        }
+        var profile = rescore.profiles().get(name);
+        if (Objects.isNull(profile)) {
+            throw new BadRequestException("unknown rescore profile: " + name + ". supported: " + String.join(", ", rescore.profiles().keySet()));
+        }
+        return profile;
+    }
+
+    /*
+    On an index routed by state, all the businesses of a state are on one shard: a search filtered by state only has to ask that shard.
+    The state filter stays, the other states routed to the same shard have to be filtered out.
+    Cursor pages are not routed, their point in time covers all the shards.
+    * */
+    private static void applyRouting(org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder builder,
+                                     SearchRequestParameters parameters,
+                                     SearchProperties.Routing routing) {
+        if (routing.mode() == SearchProperties.Routing.Mode.STATE && StringUtils.hasText(parameters.state())) {
+            builder.withRoute(parameters.state().trim().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    // hits are in the order of the score by default
+    private static void applySort(org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder builder, SortMode sortMode) {
+        if (!sortMode.isRelevance()) {
+            builder.withSort(sortMode.sortOptions());
+        }
+    }
+
+    /*
+    Every shard has to collect and sort from + size hits for page number based pagination.
+    search_after within a point in time costs the same for every page. _shard_doc is the tiebreaker for hits with equal scores
+    (or equal values of the sorted fields). The pages of a cursor have to keep the sort of its first page, like all the other parameters.
+    Facets do not change from page to page, so they are computed for the first page only.
+    * */
+    private static void applyCursor(org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder builder,
+                                    SearchRequestParameters parameters,
+                                    SearchCursor cursor,
+                                    SearchProperties properties,
+                                    Map<FacetField, List<String>> facetSelections) {
+        var pagination = properties.pagination();
+        var sortMode = parameters.sortMode();
+        var sortOptions = new ArrayList<SortOptions>(sortMode.sortOptions().size() + 2);
+        if (sortMode.isRelevance()) {
+            sortOptions.add(ElasticsearchUtil.buildScoreSort());
+        } else {
+            sortOptions.addAll(sortMode.sortOptions());
+        }
+        sortOptions.add(ElasticsearchUtil.buildFieldSort(Constants.Sort.SHARD_DOC, SortOrder.Asc));
+        builder.withPointInTime(new org.springframework.data.elasticsearch.core.query.Query.PointInTime(cursor.pointInTimeId(), pagination.pointInTimeKeepAlive()))
+               .withSort(sortOptions)
+               .withPageable(PageRequest.of(0, parameters.size()));
+        if (cursor.searchAfter().isEmpty()) {
+            applyFacets(builder, parameters, facetSelections, properties);
+        } else {
+            builder.withSearchAfter(cursor.searchAfter());
+        }
+    }
+
+    /*
+    Multi-select faceting in one request. The facet selections are applied as the post filter, so they narrow down the hits
+    but not the aggregations. The aggregation of a facet is then filtered by the selections of all the other facets,
+    so its buckets show how many hits every value would add to the current selection.
+    Searches sorted by a field come without facets: an aggregation visits every matching business,
+    which would rule out the early termination on an index sorted the same way.
+    * */
+    private static void applyFacets(org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder builder,
+                                    SearchRequestParameters parameters,
+                                    Map<FacetField, List<String>> facetSelections,
+                                    SearchProperties properties) {
+        if (!parameters.sortMode().isRelevance()) {
+            return;
+        }
+        var facets = properties.facets();
+        var aggregations = new LinkedHashMap<String, Aggregation>();
+        for (var facetField : FacetField.values()) {
+            aggregations.put(facetField.aggregateName(), buildFacetAggregation(facetField, facetSelections, facets, properties.keywordFilters()));
+        }
+        if (facets.mode() == SearchProperties.Facets.Mode.RANDOM_SAMPLER) {
+            builder.withAggregation(Constants.Business.FACET_SAMPLER_AGGREGATE_NAME, ElasticsearchUtil.buildRandomSamplerAggregation(facets.probability(), aggregations));
+        } else {
+            aggregations.forEach(builder::withAggregation);
+        }
+    }
+
+    /*
+    The sampler caps the cost of a facet on broad queries, it counts the best matching facets.sampleSize() businesses per shard only.
+    The filter around it counts all the businesses in the scope of the facet, to tell whether the sample covered them all.
+    * */
+    private static Aggregation buildFacetAggregation(FacetField facetField,
+                                                     Map<FacetField, List<String>> facetSelections,
+                                                     SearchProperties.Facets facets,
+                                                     SearchProperties.KeywordFilters keywordFilters) {
+        var name = facetField.aggregateName();
+        var aggregation = FACET_AGGREGATIONS.get(facetField);
+        var otherSelections = facetSelections.keySet().stream().anyMatch(selected -> selected != facetField);
+        if (facets.mode() == SearchProperties.Facets.Mode.SAMPLER) {
+            aggregation = ElasticsearchUtil.buildSamplerAggregation(facets.sampleSize(), name, aggregation);
+            var scope = otherSelections ? buildSelectionsQuery(facetSelections, facetField, keywordFilters) : MATCH_ALL_QUERY;
+            return ElasticsearchUtil.buildFilterAggregation(scope, name, aggregation);
+        }
+        if (otherSelections) {
+            aggregation = ElasticsearchUtil.buildFilterAggregation(buildSelectionsQuery(facetSelections, facetField, keywordFilters), name, aggregation);
+        }
+        return aggregation;
+    }
+
+    // selections of all the facets except the excluded one (null for none)
+    private static Query buildSelectionsQuery(Map<FacetField, List<String>> facetSelections, FacetField excluded, SearchProperties.KeywordFilters keywordFilters) {
+        var queries = new ArrayList<Query>(facetSelections.size());
+        facetSelections.forEach((facetField, values) -> {
+            if (facetField != excluded) {
+                queries.add(buildSelectionQuery(facetField, values, keywordFilters));
+            }
+        });
+        return Query.of(builder -> builder.bool(b -> b.filter(queries)));
+    }
+
+    // the selected values of one facet are alternatives
+    private static Query buildSelectionQuery(FacetField facetField, List<String> values, SearchProperties.KeywordFilters keywordFilters) {
+        if (values.size() == 1) {
+            return buildSelectionTermQuery(facetField, values.getFirst(), keywordFilters);
+        }
+        var queries = values.stream()
+                            .map(value -> buildSelectionTermQuery(facetField, value, keywordFilters))
+                            .toList();
+        return Query.of(builder -> builder.bool(b -> b.should(queries).minimumShouldMatch("1")));
+    }
+
+    private static Query buildSelectionTermQuery(FacetField facetField, String value, SearchProperties.KeywordFilters keywordFilters) {
+        if (keywordFilters.mode() == SearchProperties.KeywordFilters.Mode.NORMALIZED) {
+            return ElasticsearchUtil.buildNormalizedTermQuery(facetField.normalizedField(), value, 1.0f);
+        }
+        return ElasticsearchUtil.buildTermQuery(facetField.field(), value, 1.0f);
+    }
+
+    /*
+    Counting every matching document disables the early termination of the top hits collection (block-max WAND).
+    Broad queries like "restaurant" stop counting at the threshold and report the total as a lower bound (relation gte).
+    The same goes for searches sorted like their index (see SortMode), they stop collecting once past the threshold.
+    * */
+    private static void applyTotalHitsTracking(org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder builder,
+                                               SearchRequestParameters parameters,
+                                               SearchProperties.Pagination pagination) {
+        if (parameters.exactTotal()) {
+            builder.withTrackTotalHits(true);
+        } else {
+            builder.withTrackTotalHitsUpTo(pagination.trackTotalHitsUpTo());
+        }
+    }
+
+    private static void checkDepth(SearchRequestParameters parameters, SearchProperties.Pagination pagination) {
+        if ((long) (parameters.page() + 1) * parameters.size() > pagination.maxDepth()) {
+            throw new BadRequestException("page is too deep. use the cursor parameter to paginate further");
+        }
     }
 
 }
@@ -0,0 +1,152 @@
+package com.vinsguru.business.util;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.vinsguru.business.dto.SearchRequestParameters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Pre-selects the filter / must / should query rules for every combination of active rules.
+ * Bit i of the combination is set when the predicate of rule i matches the request parameters.
+ * At request time, only the predicates are evaluated, then the functions of the selected rules build their clauses
+ * and the bool query around them. The query itself is built for every request, nothing of it is shared between requests:
+ * what is saved is walking the rule lists with streams and optionals, not building the query tree.
+ * Every selection also knows the names of its rules, e.g. to tag the metrics of a request with the rules it fired.
+ * */
+public class QueryCompiler {
+
+    private static final String NO_RULES = "none";
+
+    private final List<QueryRule> rules;
+    private final Map<QueryRule, Integer> ruleIndexes = new IdentityHashMap<>();
+    private final RuleSelection[] selections;
+
+    public QueryCompiler(List<QueryRule> filterRules, List<QueryRule> mustRules, List<QueryRule> shouldRules) {
+        var allRules = new ArrayList<QueryRule>();
+        allRules.addAll(filterRules);
+        allRules.addAll(mustRules);
+        allRules.addAll(shouldRules);
+        if (allRules.size() > Integer.SIZE - 2) {
+            throw new IllegalArgumentException("too many query rules to compile: " + allRules.size());
+        }
+        this.rules = List.copyOf(allRules);
+        for (int i = 0; i < this.rules.size(); i++) {
+            this.ruleIndexes.put(this.rules.get(i), i);
+        }
+        this.selections = new RuleSelection[1 << this.rules.size()];
+        for (int mask = 0; mask < this.selections.length; mask++) {
+            var selectedFilterRules = this.activeRules(mask, 0, filterRules.size());
+            var selectedMustRules = this.activeRules(mask, filterRules.size(), mustRules.size());
+            var selectedShouldRules = this.activeRules(mask, filterRules.size() + mustRules.size(), shouldRules.size());
+            this.selections[mask] = new RuleSelection(
+                    selectedFilterRules,
+                    selectedMustRules,
+                    selectedShouldRules,
+                    ruleNames(selectedFilterRules, selectedMustRules, selectedShouldRules)
+            );
+        }
+    }
+
+    public Query compile(SearchRequestParameters parameters) {
+        return this.select(parameters).buildQuery(parameters, null);
+    }
+
+    // same query, reports the time spent on every rule to the timer
+    public Query compile(SearchRequestParameters parameters, QueryRuleTimer timer) {
+        var nanos = new long[this.rules.size()];
+        var mask = 0;
+        for (int i = 0; i < this.rules.size(); i++) {
+            var start = System.nanoTime();
+            if (this.rules.get(i).predicate().test(parameters)) {
+                mask |= 1 << i;
+            }
+            nanos[i] = System.nanoTime() - start;
+        }
+        var query = this.selections[mask].buildQuery(parameters, (rule, elapsed) -> nanos[this.ruleIndexes.get(rule)] += elapsed);
+        for (int i = 0; i < this.rules.size(); i++) {
+            timer.record(this.rules.get(i), (mask & (1 << i)) != 0, nanos[i]);
+        }
+        return query;
+    }
+
+    // names of the rules which fire for the parameters, in their declared order. e.g. state+search+category
+    public String firedRules(SearchRequestParameters parameters) {
+        return this.select(parameters).ruleNames();
+    }
+
+    public int mask(SearchRequestParameters parameters) {
+        var mask = 0;
+        for (int i = 0; i < this.rules.size(); i++) {
+            if (this.rules.get(i).predicate().test(parameters)) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    // the rules selected for the predicates which match the parameters
+    private RuleSelection select(SearchRequestParameters parameters) {
+        return this.selections[this.mask(parameters)];
+    }
+
+    // rules in [offset, offset + length) which are active in the given combination, in their declared order
+    private QueryRule[] activeRules(int mask, int offset, int length) {
+        var selected = new ArrayList<QueryRule>(length);
+        for (int i = offset; i < offset + length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                selected.add(this.rules.get(i));
+            }
+        }
+        return selected.toArray(QueryRule[]::new);
+    }
+
+    private static String ruleNames(QueryRule[]... rules) {
+        var names = Stream.of(rules)
+                          .flatMap(Arrays::stream)
+                          .map(QueryRule::name)
+                          .collect(Collectors.joining("+"));
+        return names.isEmpty() ? NO_RULES : names;
+    }
+
+    private record RuleSelection(QueryRule[] filterRules,
+                                 QueryRule[] mustRules,
+                                 QueryRule[] shouldRules,
+                                 String ruleNames) {
+
+        // builds the whole bool query for the parameters. timer is null unless the time of each rule is measured
+        Query buildQuery(SearchRequestParameters parameters, ObjLongConsumer<QueryRule> timer) {
+            var filterQueries = buildClauses(this.filterRules, parameters, timer);
+            var mustQueries = buildClauses(this.mustRules, parameters, timer);
+            var shouldQueries = buildClauses(this.shouldRules, parameters, timer);
+            var boolQuery = BoolQuery.of(builder -> builder.filter(filterQueries)
+                                                           .must(mustQueries)
+                                                           .should(shouldQueries));
+            return Query.of(builder -> builder.bool(boolQuery));
+        }
+
+        private static List<Query> buildClauses(QueryRule[] rules, SearchRequestParameters parameters, ObjLongConsumer<QueryRule> timer) {
+            var queries = new Query[rules.length];
+            for (int i = 0; i < rules.length; i++) {
+                if (Objects.isNull(timer)) {
+                    queries[i] = rules[i].function().apply(parameters);
+                } else {
+                    var start = System.nanoTime();
+                    queries[i] = rules[i].function().apply(parameters);
+                    timer.accept(rules[i], System.nanoTime() - start);
+                }
+            }
+            return Arrays.asList(queries);
+        }
+
+    }
+
+}
@@ -7,12 +7,14 @@ import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
-public record QueryRule(Predicate<SearchRequestParameters> predicate,
+public record QueryRule(String name, // tags the metrics of the rule, and of the requests it fired for
+                        Predicate<SearchRequestParameters> predicate,
                         Function<SearchRequestParameters, Query> function) {
 
-    public static QueryRule of(Predicate<SearchRequestParameters> predicate,
+    public static QueryRule of(String name,
+            Predicate<SearchRequestParameters> predicate,
             Function<SearchRequestParameters, Query> function) {
-        return new QueryRule(predicate, function);
+        return new QueryRule(name, predicate, function);
     }
 
     public Optional<Query> build(SearchRequestParameters parameters) {
@@ -0,0 +1,9 @@
+package com.vinsguru.business.util;
+
+// receives the time spent on each query rule of a compiled query: evaluating its predicate and, if it fired, building its query
+@FunctionalInterface
+public interface QueryRuleTimer {
+
+    void record(QueryRule rule, boolean fired, long nanos);
+
+}
@@ -1,8 +1,10 @@
 package com.vinsguru.business.util;
 
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import org.springframework.data.util.Predicates;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Stream;
 
@@ -14,30 +16,42 @@ public class QueryRules {
     private static final String BOOST_FIELD_FORMAT = "%s^%f";
 
     public static final QueryRule STATE_QUERY = QueryRule.of(
+        "state",
         srp -> Objects.nonNull(srp.state()),
         srp -> buildTermQuery(STATE, srp.state(), 1.0f)
     );
 
-    public static final QueryRule OFFERINGS_QUERY = QueryRule.of(
-            srp -> Objects.nonNull(srp.offerings()),
-            srp -> buildTermQuery(OFFERINGS_RAW, srp.offerings(), 1.0f)
+    // the state and category rules of SearchProperties.KeywordFilters.Mode.NORMALIZED
+    public static final QueryRule NORMALIZED_STATE_QUERY = QueryRule.of(
+            "state",
+            srp -> Objects.nonNull(srp.state()),
+            srp -> buildNormalizedTermQuery(STATE_LOWERCASE, srp.state(), 1.0f)
     );
 
     public static final QueryRule RATING_QUERY = QueryRule.of(
+            "rating",
             srp -> Objects.nonNull(srp.rating()),
             srp -> buildRangeQuery(RATING, builder -> builder.gte(srp.rating()))
     );
 
     public static final QueryRule DISTANCE_QUERY = QueryRule.of(
+            "distance",
             srp -> Stream.of(srp.distance(), srp.longitude(), srp.latitude()).allMatch(Objects::nonNull),
             srp -> buildGeoDistanceQuery(LOCATION, srp.distance(), srp.latitude(), srp.longitude())
     );
 
     public static final QueryRule CATEGORY_QUERY = QueryRule.of(
+            "category",
             srp -> Objects.nonNull(srp.query()),  // can also use Predicates.isTrue() if it is true always
             srp -> buildTermQuery(CATEGORY_RAW, srp.query(), 5.0f)
     );
 
+    public static final QueryRule NORMALIZED_CATEGORY_QUERY = QueryRule.of(
+            "category",
+            srp -> Objects.nonNull(srp.query()),
+            srp -> buildNormalizedTermQuery(CATEGORY_LOWERCASE, srp.query(), 5.0f)
+    );
+
     private static final List<String> SEARCH_BOOST_FIELDS = List.of(
             boostField(NAME, 2.0f),
             boostField(CATEGORY, 1.5f),
@@ -47,10 +61,57 @@ public class QueryRules {
     );
 
     public static final QueryRule SEARCH_QUERY = QueryRule.of(
+            "search",
             srp -> Objects.nonNull(srp.query()),  // can also use Predicates.isTrue() if it is true always
             srp -> buildMultiMatchQuery(SEARCH_BOOST_FIELDS, srp.query())
     );
 
+    // the search query of MatchMode.EXACT
+    public static final QueryRule EXACT_SEARCH_QUERY = QueryRule.of(
+            "search",
+            srp -> Objects.nonNull(srp.query()),
+            srp -> buildMultiMatchQuery(SEARCH_BOOST_FIELDS, srp.query(), false)
+    );
+
+    // the search queries of SearchProperties.TextMatch.Mode.CATCH_ALL
+    public static final QueryRule CATCH_ALL_SEARCH_QUERY = QueryRule.of(
+            "search",
+            srp -> Objects.nonNull(srp.query()),
+            srp -> buildCatchAllQuery(SEARCH_ALL, SEARCH_BOOST_FIELDS, srp.query(), true)
+    );
+
+    public static final QueryRule EXACT_CATCH_ALL_SEARCH_QUERY = QueryRule.of(
+            "search",
+            srp -> Objects.nonNull(srp.query()),
+            srp -> buildCatchAllQuery(SEARCH_ALL, SEARCH_BOOST_FIELDS, srp.query(), false)
+    );
+
+    /*
+    Popularity: weight * ln(1 + value) of the rating and of the number of reviews, added to the score of a search.
+    As rank_feature queries in a should clause, the top hits collection can still skip non-competitive documents.
+    SearchProperties.Popularity.Mode.FUNCTION_SCORE adds the same scores with a function_score around the query instead.
+    * */
+    private static final float POPULARITY_SCALING_FACTOR = 1.0f;
+    private static final Map<String, Float> POPULARITY_WEIGHTS = Map.of(
+            RATING, 1.0f,
+            REVIEWS, 0.5f
+    );
+
+    private static final Query POPULARITY_FEATURES = Query.of(builder -> builder.bool(b -> b.should(
+            buildRankFeatureLogQuery(POPULARITY_RATING, POPULARITY_SCALING_FACTOR, POPULARITY_WEIGHTS.get(RATING)),
+            buildRankFeatureLogQuery(POPULARITY_REVIEWS, POPULARITY_SCALING_FACTOR, POPULARITY_WEIGHTS.get(REVIEWS))
+    )));
+
+    public static final QueryRule POPULARITY_QUERY = QueryRule.of(
+            "popularity",
+            Predicates.isTrue(),
+            srp -> POPULARITY_FEATURES
+    );
+
+    public static Query withPopularityScore(Query query) {
+        return buildLogFunctionScoreQuery(query, POPULARITY_WEIGHTS);
+    }
+
     private static String boostField(String field, float boost){
         return BOOST_FIELD_FORMAT.formatted(field, boost);
     }
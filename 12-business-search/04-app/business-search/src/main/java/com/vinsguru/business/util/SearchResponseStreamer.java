@@ -0,0 +1,290 @@
+package com.vinsguru.business.util;
+
+import com.vinsguru.business.dto.Facet;
+import com.vinsguru.business.dto.FacetItem;
+import com.vinsguru.business.dto.Pagination;
+import com.vinsguru.business.dto.Projection;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.util.ReflectionUtils;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+Translates the body of an elasticsearch search response into the body of our SearchResponse, token by token.
+ - every hit becomes a result of the projection of the request (Business or BusinessCard), with the same fields /api/search returns:
+   the _id as "id", the _source fields under the names of the record (e.g. avg_rating as rating), null when absent.
+   the other _source fields are skipped
+ - the buckets of the terms aggregations become the facets
+ - pagination, timeTaken, cached and matchMode are written once the hits went through
+ - the match mode is always fuzzy: the hits are on their way to the client before their total is known, too late to fall back
+No hit is turned into an object, so the memory needed does not grow with the page size.
+* */
+public class SearchResponseStreamer {
+
+    // the servlet container owns the output stream
+    private static final JsonMapper JSON_MAPPER = JsonMapper.builder()
+                                                            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+                                                            .build();
+
+    private static final String ID = "id";
+
+    private static final Set<String> FACET_AGGREGATE_NAMES = Arrays.stream(FacetField.values())
+                                                                   .map(FacetField::aggregateName)
+                                                                   .collect(Collectors.toSet());
+
+    private static final Map<Projection, ResultFields> RESULT_FIELDS = new EnumMap<>(Projection.class);
+
+    static {
+        for (var projection : Projection.values()) {
+            RESULT_FIELDS.put(projection, ResultFields.of(projection.type()));
+        }
+    }
+
+    private SearchResponseStreamer() {}
+
+    public static void stream(InputStream source, OutputStream target, SearchRequestParameters parameters) {
+        try (var parser = JSON_MAPPER.createParser(source);
+             var generator = JSON_MAPPER.createGenerator(target)) {
+            var hits = new Hits();
+            var facets = new ArrayList<Facet>();
+            var took = 0L;
+            parser.nextToken(); // start of the response
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                var name = parser.currentName();
+                parser.nextToken();
+                switch (name) {
+                    case "took" -> took = parser.getLongValue();
+                    case "hits" -> streamHits(parser, generator, hits, RESULT_FIELDS.get(parameters.projection()));
+                    case "aggregations" -> readFacets(parser, facets, false);
+                    default -> parser.skipChildren();
+                }
+            }
+            var totalElements = hits.total < 0 ? hits.count : hits.total;
+            generator.writePOJOProperty("facets", facets);
+            generator.writePOJOProperty("pagination", new Pagination(
+                    parameters.page(),
+                    hits.count,
+                    totalElements,
+                    hits.relation,
+                    (int) Math.ceilDiv(totalElements, (long) parameters.size()),
+                    null
+            ));
+            generator.writeNumberProperty("timeTaken", took);
+            generator.writeBooleanProperty("cached", false);
+            generator.writeStringProperty("matchMode", MatchMode.FUZZY.tag());
+            generator.writeEndObject();
+        }
+    }
+
+    private static void streamHits(JsonParser parser, JsonGenerator generator, Hits hits, ResultFields resultFields) {
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            var name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "total" -> readTotal(parser, hits);
+                case "hits" -> streamResults(parser, generator, hits, resultFields);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readTotal(JsonParser parser, Hits hits) {
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            var name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "value" -> hits.total = parser.getLongValue();
+                case "relation" -> hits.relation = parser.getString();
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    // the _id of a hit precedes its _source
+    private static void streamResults(JsonParser parser, JsonGenerator generator, Hits hits, ResultFields resultFields) {
+        generator.writeArrayPropertyStart("results");
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            var written = new boolean[resultFields.fields().size()];
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                var name = parser.currentName();
+                parser.nextToken();
+                switch (name) {
+                    case "_id" -> writeId(parser, generator, resultFields, written);
+                    case "_source" -> writeSource(parser, generator, resultFields, written);
+                    default -> parser.skipChildren();
+                }
+            }
+            for (int i = 0; i < written.length; i++) {
+                if (!written[i]) {
+                    generator.writeNullProperty(resultFields.fields().get(i).name());
+                }
+            }
+            generator.writeEndObject();
+            hits.count++;
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeId(JsonParser parser, JsonGenerator generator, ResultFields resultFields, boolean[] written) {
+        if (resultFields.idIndex() >= 0) {
+            generator.writeStringProperty(ID, parser.getString());
+            written[resultFields.idIndex()] = true;
+        }
+    }
+
+    private static void writeSource(JsonParser parser, JsonGenerator generator, ResultFields resultFields, boolean[] written) {
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            var index = resultFields.indexOf(parser.currentName());
+            parser.nextToken();
+            if (index < 0 || index == resultFields.idIndex() || written[index]) {
+                parser.skipChildren();
+                continue;
+            }
+            var field = resultFields.fields().get(index);
+            generator.writeName(field.name());
+            writeValue(parser, generator, field.type());
+            written[index] = true;
+        }
+    }
+
+    // the value as the record component reads it, e.g. a single category as a list of one
+    private static void writeValue(JsonParser parser, JsonGenerator generator, Class<?> type) {
+        var token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            generator.writeNull();
+        } else if (List.class.isAssignableFrom(type) && token != JsonToken.START_ARRAY) {
+            generator.writeStartArray();
+            generator.copyCurrentStructure(parser);
+            generator.writeEndArray();
+        } else if (type == Float.class) {
+            generator.writeNumber(parser.getFloatValue());
+        } else if (type == Integer.class) {
+            generator.writeNumber(parser.getIntValue());
+        } else {
+            generator.copyCurrentStructure(parser);
+        }
+    }
+
+    /*
+    The aggregations are small (a few buckets each), unlike the hits. See NativeQueryBuilder.applyFacets for their structure.
+    Aggregations which are not facets are samplers around the facets.
+    * */
+    private static void readFacets(JsonParser parser, List<Facet> facets, boolean randomSampled) {
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            var name = parser.currentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+            } else if (FACET_AGGREGATE_NAMES.contains(name)) {
+                facets.add(readFacet(parser, name, randomSampled));
+            } else {
+                readFacets(parser, facets, true);
+            }
+        }
+    }
+
+    // the terms aggregation of a facet, possibly within a filter and a sampler aggregation
+    private static Facet readFacet(JsonParser parser, String name, boolean randomSampled) {
+        var items = new ArrayList<FacetItem>();
+        var docCounts = new ArrayList<Long>(); // of the enclosing filter and sampler, outermost first
+        readBuckets(parser, items, docCounts);
+        if (randomSampled) {
+            return new Facet(name, items, true); // scaled by elasticsearch
+        }
+        if (docCounts.size() < 2) {
+            return Facet.exact(name, items);
+        }
+        return Facet.sampled(name, items, docCounts.getFirst(), docCounts.getLast());
+    }
+
+    private static void readBuckets(JsonParser parser, List<FacetItem> items, List<Long> docCounts) {
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            var property = parser.currentName();
+            var token = parser.nextToken();
+            if ("buckets".equals(property) && token == JsonToken.START_ARRAY) {
+                readItems(parser, items);
+            } else if ("doc_count".equals(property)) {
+                docCounts.add(parser.getLongValue());
+            } else if (token == JsonToken.START_OBJECT) {
+                readBuckets(parser, items, docCounts);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readItems(JsonParser parser, List<FacetItem> items) {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String key = null;
+            var count = 0L;
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                var name = parser.currentName();
+                parser.nextToken();
+                switch (name) {
+                    case "key" -> key = parser.getValueAsString();
+                    case "doc_count" -> count = parser.getLongValue();
+                    default -> parser.skipChildren();
+                }
+            }
+            items.add(new FacetItem(key, count));
+        }
+    }
+
+    // a field of the results, read from the _source field the ElasticsearchConverter reads it from (see @Field)
+    private record ResultField(String name, String sourceName, Class<?> type) {
+    }
+
+    // the record components of a projection type, in their declared order
+    private record ResultFields(List<ResultField> fields, Map<String, Integer> sourceIndexes, int idIndex) {
+
+        static ResultFields of(Class<?> type) {
+            var fields = Arrays.stream(type.getRecordComponents())
+                               .map(component -> new ResultField(component.getName(), sourceName(type, component), component.getType()))
+                               .toList();
+            var sourceIndexes = new HashMap<String, Integer>();
+            for (int i = 0; i < fields.size(); i++) {
+                sourceIndexes.put(fields.get(i).sourceName(), i);
+            }
+            return new ResultFields(fields, sourceIndexes, sourceIndexes.getOrDefault(ID, -1));
+        }
+
+        int indexOf(String sourceName) {
+            return this.sourceIndexes.getOrDefault(sourceName, -1);
+        }
+
+        private static String sourceName(Class<?> type, RecordComponent component) {
+            var field = ReflectionUtils.findField(type, component.getName());
+            var annotation = Objects.isNull(field) ? null : AnnotatedElementUtils.findMergedAnnotation(field, Field.class);
+            return Objects.isNull(annotation) || annotation.name().isEmpty() ? component.getName() : annotation.name();
+        }
+
+    }
+
+    private static class Hits {
+
+        private long total = -1; // absent when total hits are not tracked
+        private String relation = Pagination.EQUAL_TO;
+        private int count;
+
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.vinsguru.business.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/*
+Coalesces concurrent calls with equal keys. The first caller (the leader) makes the call,
+the callers arriving while it is in flight (the followers) receive its result as well.
+Nothing is kept once the call completed, so this works with or without a cache in front of it.
+Lock free: a call is registered with putIfAbsent and removed when it completes.
+A reactive call is shared by reference counting: it is cancelled once every caller cancelled, so a search nobody waits for stops.
+The coalescing ratio is followers / (leaders + followers) of the <name>.coalescing.requests counters.
+* */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<K, Mono<V>> inFlightReactive = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.leaders = meterRegistry.counter(name + ".coalescing.requests", "role", "leader");
+        this.followers = meterRegistry.counter(name + ".coalescing.requests", "role", "follower");
+    }
+
+    public V execute(K key, Function<K, V> call) {
+        var promise = new CompletableFuture<V>();
+        var inFlightCall = this.inFlight.putIfAbsent(key, promise);
+        if (inFlightCall != null) {
+            this.followers.increment();
+            return join(inFlightCall);
+        }
+        this.leaders.increment();
+        try {
+            var value = call.apply(key);
+            promise.complete(value);
+            return value;
+        } catch (Throwable e) { // an Error too, or the followers would wait forever
+            promise.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlight.remove(key, promise);
+        }
+    }
+
+    public CompletableFuture<V> executeAsync(K key, Function<K, CompletableFuture<V>> call) {
+        var promise = new CompletableFuture<V>();
+        var inFlightCall = this.inFlight.putIfAbsent(key, promise);
+        if (inFlightCall != null) {
+            this.followers.increment();
+            return inFlightCall.copy(); // followers must not be able to complete the shared call
+        }
+        this.leaders.increment();
+        try {
+            call.apply(key).whenComplete((value, throwable) -> {
+                this.inFlight.remove(key, promise);
+                if (throwable != null) {
+                    promise.completeExceptionally(throwable);
+                } else {
+                    promise.complete(value);
+                }
+            });
+        } catch (Throwable e) {
+            this.inFlight.remove(key, promise);
+            promise.completeExceptionally(e);
+            throw e;
+        }
+        return promise.copy();
+    }
+
+    /*
+    The leader subscribes to the call, the followers to the same subscription. The last value is replayed,
+    so a follower arriving between the value and the completion still receives it.
+    * */
+    public Mono<V> executeReactive(K key, Function<K, Mono<V>> call) {
+        return Mono.defer(() -> {
+            var shared = new AtomicReference<Mono<V>>();
+            shared.set(Mono.defer(() -> call.apply(key))
+                           .doFinally(signal -> this.inFlightReactive.remove(key, shared.get()))
+                           .flux()
+                           .replay(1)
+                           .refCount()
+                           .singleOrEmpty());
+            var inFlightCall = this.inFlightReactive.putIfAbsent(key, shared.get());
+            if (inFlightCall != null) {
+                this.followers.increment();
+                return inFlightCall;
+            }
+            this.leaders.increment();
+            return shared.get();
+        });
+    }
+
+    int inFlightCalls() {
+        return this.inFlight.size() + this.inFlightReactive.size();
+    }
+
+    // followers see the exception of the leader as it was thrown
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.vinsguru.business.util;
+
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import com.vinsguru.business.exceptions.BadRequestException;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/*
+Order of the hits for the "sort" request parameter: by relevance (the score), or by a field, best first.
+A field sort is also how an index can be sorted on disk (see IndexMigrationService). A search sorted like its index
+stops collecting hits on every segment once it has the page and has counted search.pagination.track-total-hits-up-to matches.
+The second field breaks the ties, missing values sort last.
+* */
+public enum SortMode {
+
+    RELEVANCE(List.of()),
+    RATING(List.of(Constants.Business.RATING, Constants.Business.REVIEWS)),
+    REVIEWS(List.of(Constants.Business.REVIEWS, Constants.Business.RATING));
+
+    private final List<String> fields;
+    private final List<SortOptions> sortOptions;
+
+    SortMode(List<String> fields) {
+        this.fields = fields;
+        this.sortOptions = fields.stream()
+                                 .map(field -> ElasticsearchUtil.buildFieldSort(field, SortOrder.Desc))
+                                 .toList();
+    }
+
+    public String tag() {
+        return this.name().toLowerCase(Locale.ROOT);
+    }
+
+    // the sorted fields, descending. empty for relevance
+    public List<String> fields() {
+        return this.fields;
+    }
+
+    public List<SortOptions> sortOptions() {
+        return this.sortOptions;
+    }
+
+    public boolean isRelevance() {
+        return this == RELEVANCE;
+    }
+
+    public static SortMode of(String sort) {
+        if (Objects.isNull(sort)) {
+            return RELEVANCE;
+        }
+        for (var sortMode : values()) {
+            if (sortMode.tag().equals(sort.trim().toLowerCase(Locale.ROOT))) {
+                return sortMode;
+            }
+        }
+        throw new BadRequestException("unknown sort: " + sort + ". supported: relevance, rating, reviews");
+    }
+
+}
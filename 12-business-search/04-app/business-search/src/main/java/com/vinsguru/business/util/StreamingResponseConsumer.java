@@ -0,0 +1,88 @@
+package com.vinsguru.business.util;
+
+import co.elastic.clients.transport.rest5_client.low_level.HttpAsyncResponseConsumerFactory;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.support.classic.ContentInputStream;
+import org.apache.hc.core5.http.nio.support.classic.SharedInputBuffer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+
+/*
+The default consumer of the Rest5Client (HttpAsyncResponseConsumerFactory.DEFAULT) buffers the whole body on the heap
+before performRequest returns. This one completes the response as soon as its head arrived, its entity is an input stream
+of the body still arriving. The I/O thread fills a buffer of BUFFER_SIZE bytes, the reader of the stream drains it, and the
+connection is only read when there is room in the buffer again: memory stays bounded, whatever the size of the body.
+The stream has to be read (or closed, which drains it) by another thread than the I/O thread of the client.
+* */
+public class StreamingResponseConsumer implements AsyncResponseConsumer<ClassicHttpResponse> {
+
+    // a consumer per request
+    public static final HttpAsyncResponseConsumerFactory FACTORY = StreamingResponseConsumer::new;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SharedInputBuffer buffer = new SharedInputBuffer(BUFFER_SIZE);
+
+    @Override
+    public void consumeResponse(HttpResponse response,
+                                EntityDetails entityDetails,
+                                HttpContext context,
+                                FutureCallback<ClassicHttpResponse> resultCallback) {
+        var classicResponse = new BasicClassicHttpResponse(response.getCode(), response.getReasonPhrase());
+        classicResponse.setHeaders(response.getHeaders());
+        if (Objects.isNull(entityDetails)) {
+            this.buffer.markEndStream();
+        } else {
+            var contentType = Objects.isNull(entityDetails.getContentType()) ? null : ContentType.parseLenient(entityDetails.getContentType());
+            classicResponse.setEntity(new InputStreamEntity(new ContentInputStream(this.buffer),
+                                                            entityDetails.getContentLength(),
+                                                            contentType,
+                                                            entityDetails.getContentEncoding()));
+        }
+        resultCallback.completed(classicResponse);
+    }
+
+    @Override
+    public void informationResponse(HttpResponse response, HttpContext context) {
+    }
+
+    @Override
+    public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+        this.buffer.updateCapacity(capacityChannel);
+    }
+
+    @Override
+    public void consume(ByteBuffer src) {
+        this.buffer.fill(src);
+    }
+
+    @Override
+    public void streamEnd(List<? extends Header> trailers) {
+        this.buffer.markEndStream();
+    }
+
+    // a reader waiting for more of the body fails instead of seeing a truncated body
+    @Override
+    public void failed(Exception cause) {
+        this.buffer.abort();
+    }
+
+    // the reader may still be draining the buffer after the exchange completed
+    @Override
+    public void releaseResources() {
+    }
+
+}
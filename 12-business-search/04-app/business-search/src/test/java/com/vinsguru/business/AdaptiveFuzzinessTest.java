@@ -0,0 +1,73 @@
+package com.vinsguru.business;
+
+import com.vinsguru.business.dto.SearchResponse;
+import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.MatchMode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.resttestclient.TestRestTemplate;
+import org.springframework.boot.resttestclient.autoconfigure.AutoConfigureTestRestTemplate;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.test.context.TestPropertySource;
+import tools.jackson.core.type.TypeReference;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/*
+search.fuzziness.mode=adaptive is opt-in, so it gets a context (and an elasticsearch container) of its own,
+with an index created like in SearchTest.
+* */
+@AutoConfigureTestRestTemplate
+@TestPropertySource(properties = "search.fuzziness.mode=adaptive")
+public class AdaptiveFuzzinessTest extends AbstractTest {
+
+    private static final String API_PATH = "/api/search?%s";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @BeforeAll
+    public void setup(){
+        var indexSetting = this.readResource("elasticsearch/business-index-setting.json", new TypeReference<Map<String, Object>>() {
+        });
+        var indexMapping = this.readResource("elasticsearch/business-index-mapping.json", new TypeReference<Map<String, Object>>() {
+        });
+        var businessData = this.readResource("test-data/business-data.json", new TypeReference<List<Object>>() {
+        });
+        this.elasticsearchOperations.indexOps(Constants.Index.BUSINESS).create(indexSetting, Document.from(indexMapping));
+        this.elasticsearchOperations.withRefreshPolicy(RefreshPolicy.IMMEDIATE).save(businessData, Constants.Index.BUSINESS);
+    }
+
+    // exact first, a misspelled search falls back to fuzzy. a filtered search keeps its exact matches, even none
+    @ParameterizedTest
+    @MethodSource("matchModeTestData")
+    public void matchModeTest(String parameters, int expectedResultsCount, MatchMode expectedMatchMode){
+        var path = API_PATH.formatted(parameters);
+        var searchResponse = this.restTemplate.getForObject(URI.create(path), SearchResponse.class);
+        Assertions.assertNotNull(searchResponse);
+        Assertions.assertEquals(expectedResultsCount, searchResponse.results().size());
+        Assertions.assertEquals(expectedMatchMode.tag(), searchResponse.matchMode());
+    }
+
+    private static Stream<Arguments> matchModeTestData() {
+        return Stream.of(
+                Arguments.of("query=coffee", 2, MatchMode.EXACT),
+                Arguments.of("query=markat", 1, MatchMode.FUZZY),
+                Arguments.of("query=coffee&state=Alaska", 0, MatchMode.EXACT),
+                Arguments.of("query=markat&state=Texas", 0, MatchMode.EXACT) // found with search.fuzziness.mode=always
+        );
+    }
+
+}
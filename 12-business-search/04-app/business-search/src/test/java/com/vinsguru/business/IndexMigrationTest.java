@@ -0,0 +1,248 @@
+package com.vinsguru.business;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.Business;
+import com.vinsguru.business.dto.FacetItem;
+import com.vinsguru.business.dto.IndexLayout;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.dto.ShardLoad;
+import com.vinsguru.business.service.IndexLayoutMonitor;
+import com.vinsguru.business.service.IndexMigrationService;
+import com.vinsguru.business.service.ShardReportService;
+import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.ElasticsearchUtil;
+import com.vinsguru.business.util.MatchMode;
+import com.vinsguru.business.util.NativeQueryBuilder;
+import com.vinsguru.business.util.SortMode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.test.context.TestPropertySource;
+import tools.jackson.core.type.TypeReference;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+The migrations of the businesses index, and what depends on a migrated index: the popularity fields filled by the ingest pipeline,
+the sorted and the routed layouts. Routing the searches by state makes this a context of its own, with its own elasticsearch
+container, so SearchTest keeps searching the index it created. Every test leaves the index migrated to the default layout.
+* */
+@TestPropertySource(properties = "search.routing.mode=state")
+public class IndexMigrationTest extends AbstractTest {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexMigrationTest.class);
+    private static final String INDEX = Constants.Index.BUSINESS.getIndexName();
+
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Autowired
+    private ElasticsearchClient elasticsearchClient;
+
+    @Autowired
+    private IndexMigrationService indexMigrationService;
+
+    @Autowired
+    private ShardReportService shardReportService;
+
+    @Autowired
+    private IndexLayoutMonitor indexLayoutMonitor;
+
+    // an index created like in SearchTest, moved behind the alias by the first migration
+    @BeforeAll
+    public void setup(){
+        var indexSetting = this.readResource("elasticsearch/business-index-setting.json", new TypeReference<Map<String, Object>>() {
+        });
+        var indexMapping = this.readResource("elasticsearch/business-index-mapping.json", new TypeReference<Map<String, Object>>() {
+        });
+        var businessData = this.readResource("test-data/business-data.json", new TypeReference<List<Object>>() {
+        });
+        this.elasticsearchOperations.indexOps(Constants.Index.BUSINESS).create(indexSetting, Document.from(indexMapping));
+        this.elasticsearchOperations.withRefreshPolicy(RefreshPolicy.IMMEDIATE).save(businessData, Constants.Index.BUSINESS);
+
+        var migration = this.indexMigrationService.migrate(INDEX);
+        Assertions.assertEquals(List.of(INDEX), migration.previousIndices());
+        Assertions.assertEquals(10, migration.documents());
+    }
+
+    // the setup moved the index behind the alias. another migration moves the alias on and keeps the previous index
+    @Test
+    public void indexMigrationTest() throws IOException {
+        var previousIndices = this.elasticsearchClient.indices().getAlias(builder -> builder.name(INDEX)).aliases().keySet();
+        Assertions.assertEquals(1, previousIndices.size());
+
+        var migration = this.indexMigrationService.migrate(INDEX);
+        Assertions.assertEquals(List.copyOf(previousIndices), migration.previousIndices());
+        Assertions.assertEquals(10, migration.documents());
+        Assertions.assertEquals(Set.of(migration.index()), this.elasticsearchClient.indices().getAlias(builder -> builder.name(INDEX)).aliases().keySet());
+        Assertions.assertTrue(this.elasticsearchClient.indices().exists(builder -> builder.index(List.copyOf(previousIndices))).value());
+        Assertions.assertEquals(2, this.search(parameters("coffee", null, null), MatchMode.FUZZY, SearchProperties.defaults()).size());
+    }
+
+    // a field sort orders the matching businesses by the field, the second field breaks the ties.
+    // an index sorted the same way returns the same order, and its shard stops collecting once it has the page
+    @ParameterizedTest
+    @MethodSource("sortTestData")
+    public void sortTest(String sort, List<String> expected) throws IOException {
+        var parameters = new SearchRequestParameters("retail", null, null, null, null, null, null, 0, 10, null, false, null, null, null, sort);
+        Assertions.assertEquals(expected, this.search(parameters, MatchMode.FUZZY, SearchProperties.defaults()));
+        Assertions.assertNotEquals(Boolean.TRUE, this.terminatedEarly(sort));
+
+        var sortMode = SortMode.of(sort);
+        var migration = this.indexMigrationService.migrate(INDEX, new IndexLayout(sort, null, null));
+        try {
+            Assertions.assertEquals(sortMode.tag(), migration.layout().sort());
+            var settings = this.elasticsearchClient.indices().getSettings(builder -> builder.index(migration.index())).get(migration.index()).settings();
+            Assertions.assertEquals(sortMode.fields(), settings.index().sort().field());
+            Assertions.assertEquals(expected, this.search(parameters, MatchMode.FUZZY, SearchProperties.defaults()));
+            Assertions.assertEquals(Boolean.TRUE, this.terminatedEarly(sort));
+        } finally {
+            this.indexMigrationService.migrate(INDEX);
+        }
+    }
+
+    // the first 2 of the 6 retail businesses without counting the others, so that a sorted index can stop after the page
+    private Boolean terminatedEarly(String sort) throws IOException {
+        var parameters = new SearchRequestParameters("retail", null, null, null, null, null, null, 0, 2, null, false, null, null, null, sort);
+        var query = NativeQueryBuilder.toSearchQuery(parameters, SearchProperties.defaults());
+        query.setTrackTotalHitsUpTo(null);
+        query.setTrackTotalHits(false);
+        var request = ElasticsearchUtil.buildSearchRequest(Constants.Index.BUSINESS, query);
+        return this.elasticsearchClient.search(request, Business.class).terminatedEarly();
+    }
+
+    /*
+    routed by state, every state is on one shard. a search filtered by state asks that shard only, and finds the same businesses.
+    the searches of the application are routed while the index behind the alias is, and the previous index keeps its pipeline
+    * */
+    @Test
+    public void stateRoutingTest() throws IOException {
+        var previousIndex = this.currentIndex();
+        var previousProcessors = this.pipelineProcessors(previousIndex);
+        Assertions.assertFalse(this.indexLayoutMonitor.isRoutedByState());
+        Assertions.assertEquals(SearchProperties.Routing.Mode.NONE, this.indexLayoutMonitor.searchProperties().routing().mode());
+
+        var migration = this.indexMigrationService.migrate(INDEX, new IndexLayout(null, "State", 3));
+        try {
+            Assertions.assertEquals(10, migration.documents());
+            Assertions.assertTrue(this.indexLayoutMonitor.isRoutedByState());
+            Assertions.assertEquals(previousProcessors, this.pipelineProcessors(previousIndex));
+            Assertions.assertEquals(previousProcessors + 1, this.pipelineProcessors(migration.index()));
+            var meta = this.elasticsearchClient.indices().getMapping(builder -> builder.index(migration.index())).get(migration.index()).mappings().meta();
+            Assertions.assertEquals(Constants.Business.STATE, meta.get(Constants.IndexMeta.ROUTING).to(String.class));
+
+            var report = this.shardReportService.report(INDEX);
+            log.info("shard report: {}", report);
+            Assertions.assertEquals(3, report.shards().size());
+            Assertions.assertEquals(10, report.shards().stream().mapToLong(ShardLoad::documents).sum());
+            var shardsPerState = report.shards()
+                                       .stream()
+                                       .flatMap(shard -> shard.states().stream())
+                                       .collect(Collectors.groupingBy(FacetItem::key, Collectors.counting()));
+            Assertions.assertEquals(9, shardsPerState.size());
+            Assertions.assertTrue(shardsPerState.values().stream().allMatch(shards -> shards == 1));
+
+            var routing = this.indexLayoutMonitor.searchProperties();
+            Assertions.assertEquals(SearchProperties.Routing.Mode.STATE, routing.routing().mode());
+            for (var parameters : List.of(parameters("coffee", "Washington", null), parameters("coffee", "WASHINGTON", null),
+                                          parameters("grocery store", "Texas", null), parameters("retail", "New York", null))) {
+                var fanOut = this.search(parameters, MatchMode.FUZZY, SearchProperties.defaults());
+                var routed = this.search(parameters, MatchMode.FUZZY, routing);
+                Assertions.assertEquals(1, fanOut.size());
+                Assertions.assertEquals(fanOut, routed);
+                var request = ElasticsearchUtil.buildSearchRequest(Constants.Index.BUSINESS, NativeQueryBuilder.toSearchQuery(parameters, routing));
+                Assertions.assertEquals(1, this.elasticsearchClient.search(request, Business.class).shards().total().intValue());
+            }
+        } finally {
+            this.indexMigrationService.migrate(INDEX);
+        }
+        Assertions.assertFalse(this.indexLayoutMonitor.isRoutedByState());
+    }
+
+    private String currentIndex() throws IOException {
+        var indices = this.elasticsearchClient.indices().getAlias(builder -> builder.name(INDEX)).aliases().keySet();
+        Assertions.assertEquals(1, indices.size());
+        return indices.iterator().next();
+    }
+
+    // every index has a pipeline of its own, named after it
+    private int pipelineProcessors(String index) throws IOException {
+        var settings = this.elasticsearchClient.indices().getSettings(builder -> builder.index(index)).get(index).settings();
+        var pipeline = index + "-pipeline";
+        Assertions.assertEquals(pipeline, settings.index().defaultPipeline());
+        return this.elasticsearchClient.ingest().getPipeline(builder -> builder.id(pipeline)).get(pipeline).processors().size();
+    }
+
+    // the rank_feature clause adds the same scores as the function_score around the query. it does not change which businesses match
+    @ParameterizedTest
+    @MethodSource("popularityTestData")
+    public void popularityEquivalenceTest(String query){
+        var parameters = parameters(query, null, null);
+        var none = this.search(parameters, MatchMode.FUZZY, withPopularity(SearchProperties.Popularity.Mode.NONE));
+        var rankFeature = this.search(parameters, MatchMode.FUZZY, withPopularity(SearchProperties.Popularity.Mode.RANK_FEATURE));
+        var functionScore = this.search(parameters, MatchMode.FUZZY, withPopularity(SearchProperties.Popularity.Mode.FUNCTION_SCORE));
+        log.info("{}: none {}, rank_feature {}, function_score {}", query, none, rankFeature, functionScore);
+        Assertions.assertEquals(Set.copyOf(none), Set.copyOf(rankFeature));
+        Assertions.assertEquals(functionScore, rankFeature);
+    }
+
+    // the ingest pipeline of the migrated index filled the rank_feature fields
+    @Test
+    public void popularityFeaturesTest() throws IOException {
+        for (var field : List.of(Constants.Business.POPULARITY_RATING, Constants.Business.POPULARITY_REVIEWS)) {
+            var count = this.elasticsearchClient.count(builder -> builder.index(INDEX).query(q -> q.exists(e -> e.field(field)))).count();
+            Assertions.assertEquals(10, count);
+        }
+    }
+
+    private static SearchRequestParameters parameters(String query, String state, String facet) {
+        return new SearchRequestParameters(query, null, null, null, null, state, null, 0, 10, null, false, null, facet, null, null);
+    }
+
+    private static SearchProperties withPopularity(SearchProperties.Popularity.Mode mode) {
+        return SearchProperties.defaults().withPopularity(new SearchProperties.Popularity(mode));
+    }
+
+    // names of the matching businesses, best match first
+    private List<String> search(SearchRequestParameters parameters, MatchMode matchMode, SearchProperties properties) {
+        var nativeQuery = NativeQueryBuilder.toSearchQuery(parameters, null, properties, matchMode);
+        return this.elasticsearchOperations.search(nativeQuery, Business.class, Constants.Index.BUSINESS)
+                                           .getSearchHits()
+                                           .stream()
+                                           .map(hit -> hit.getContent().name())
+                                           .toList();
+    }
+
+    private static Stream<Arguments> sortTestData() {
+        return Stream.of(
+                Arguments.of("rating", List.of("Costco Wholesale", "Barnes & Noble", "Best Buy", "Target", "Lowe's", "Walmart")),
+                Arguments.of("reviews", List.of("Costco Wholesale", "Walmart", "Target", "Lowe's", "Best Buy", "Barnes & Noble"))
+        );
+    }
+
+    private static Stream<Arguments> popularityTestData() {
+        return Stream.of(
+                Arguments.of("chain"),
+                Arguments.of("coffee"),
+                Arguments.of("grocery store"),
+                Arguments.of("electronics"),
+                Arguments.of("markat")
+        );
+    }
+
+}
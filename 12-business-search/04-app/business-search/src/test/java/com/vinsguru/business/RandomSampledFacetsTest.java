@@ -0,0 +1,70 @@
+package com.vinsguru.business;
+
+import com.vinsguru.business.dto.Facet;
+import com.vinsguru.business.dto.FacetItem;
+import com.vinsguru.business.dto.SearchResponse;
+import com.vinsguru.business.util.Constants;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.resttestclient.TestRestTemplate;
+import org.springframework.boot.resttestclient.autoconfigure.AutoConfigureTestRestTemplate;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.test.context.TestPropertySource;
+import tools.jackson.core.type.TypeReference;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/*
+search.facets.mode=random_sampler gets a context (and an elasticsearch container) of its own, with an index created like in SearchTest.
+Its 10 businesses are far fewer than search.facets.min-hits: a random sample of them would count 0 or 10 per value.
+* */
+@AutoConfigureTestRestTemplate
+@TestPropertySource(properties = "search.facets.mode=random_sampler")
+public class RandomSampledFacetsTest extends AbstractTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @BeforeAll
+    public void setup(){
+        var indexSetting = this.readResource("elasticsearch/business-index-setting.json", new TypeReference<Map<String, Object>>() {
+        });
+        var indexMapping = this.readResource("elasticsearch/business-index-mapping.json", new TypeReference<Map<String, Object>>() {
+        });
+        var businessData = this.readResource("test-data/business-data.json", new TypeReference<List<Object>>() {
+        });
+        this.elasticsearchOperations.indexOps(Constants.Index.BUSINESS).create(indexSetting, Document.from(indexMapping));
+        this.elasticsearchOperations.withRefreshPolicy(RefreshPolicy.IMMEDIATE).save(businessData, Constants.Index.BUSINESS);
+    }
+
+    // a sample below min-hits falls back to exact facets, the streaming search counts exactly
+    @ParameterizedTest
+    @ValueSource(strings = {"/api/search?%s", "/api/search/stream?%s"})
+    public void smallSampleFallsBackToExactFacetsTest(String apiPath){
+        var path = apiPath.formatted("query=coffee&facet=state:Washington");
+        var searchResponse = this.restTemplate.getForObject(URI.create(path), SearchResponse.class);
+        Assertions.assertNotNull(searchResponse);
+        Assertions.assertEquals(1, searchResponse.results().size());
+        Assertions.assertFalse(searchResponse.facets().isEmpty());
+        Assertions.assertTrue(searchResponse.facets().stream().noneMatch(Facet::approximate));
+
+        // the counts of SearchTest.multiSelectFacetTest
+        var stateFacet = searchResponse.facets()
+                                       .stream()
+                                       .filter(facet -> facet.name().equals(Constants.Business.STATE_AGGREGATE_NAME))
+                                       .findFirst()
+                                       .orElseThrow();
+        Assertions.assertEquals(List.of(new FacetItem("Missouri", 1), new FacetItem("Washington", 1)), stateFacet.items());
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.vinsguru.business;
+
+import com.vinsguru.business.dto.SearchResponse;
+import com.vinsguru.business.util.Constants;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.resttestclient.TestRestTemplate;
+import org.springframework.boot.resttestclient.autoconfigure.AutoConfigureTestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.RequestEntity;
+import org.springframework.test.context.ActiveProfiles;
+import tools.jackson.core.type.TypeReference;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// the search and suggestion endpoints of the webflux stack, with the expectations of SearchTest and SuggestionTest
+@ActiveProfiles("reactive")
+@AutoConfigureTestRestTemplate
+public class ReactiveSearchTest extends AbstractTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveSearchTest.class);
+    private static final String SEARCH_PATH = "/api/search?%s";
+    private static final String SUGGESTION_PATH = "/api/suggestions?%s";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @BeforeAll
+    public void setup(){
+        var indexSetting = this.readResource("elasticsearch/business-index-setting.json", new TypeReference<Map<String, Object>>() {
+        });
+        var indexMapping = this.readResource("elasticsearch/business-index-mapping.json", new TypeReference<Map<String, Object>>() {
+        });
+        var businessData = this.readResource("test-data/business-data.json", new TypeReference<List<Object>>() {
+        });
+        this.elasticsearchOperations.indexOps(Constants.Index.BUSINESS).create(indexSetting, Document.from(indexMapping));
+        this.elasticsearchOperations.withRefreshPolicy(RefreshPolicy.IMMEDIATE).save(businessData, Constants.Index.BUSINESS);
+
+        var suggestionMapping = this.readResource("test-data/suggestion-index-mapping.json", new TypeReference<Map<String, Object>>() {
+        });
+        var suggestionData = this.readResource("test-data/suggestion-data.json", new TypeReference<List<Object>>() {
+        });
+        this.elasticsearchOperations.indexOps(Constants.Index.SUGGESTION).create(Collections.emptyMap(), Document.from(suggestionMapping));
+        this.elasticsearchOperations.withRefreshPolicy(RefreshPolicy.IMMEDIATE).save(suggestionData, Constants.Index.SUGGESTION);
+    }
+
+    @ParameterizedTest
+    @MethodSource("searchTestData")
+    public void searchTest(String parameters, int expectedResultsCount){
+        var responseEntity = this.restTemplate.getForEntity(URI.create(SEARCH_PATH.formatted(parameters)), SearchResponse.class);
+        Assertions.assertTrue(responseEntity.getStatusCode().is2xxSuccessful());
+
+        var searchResponse = responseEntity.getBody();
+        log.info("response: {}", searchResponse);
+        Assertions.assertNotNull(searchResponse);
+        Assertions.assertEquals(expectedResultsCount, searchResponse.results().size());
+    }
+
+    // the reactive stack shares the search cache of the servlet stack
+    @Test
+    public void cachedSearchTest(){
+        var uri = URI.create(SEARCH_PATH.formatted("query=grocery%20store"));
+        var first = this.restTemplate.getForObject(uri, SearchResponse.class);
+        var second = this.restTemplate.getForObject(uri, SearchResponse.class);
+        Assertions.assertNotNull(first);
+        Assertions.assertNotNull(second);
+        Assertions.assertTrue(second.cached());
+        Assertions.assertEquals(first.results(), second.results());
+    }
+
+    @Test
+    public void searchFailureTest(){
+        var responseEntity = this.restTemplate.getForEntity(URI.create(SEARCH_PATH.formatted("query=")), ProblemDetail.class);
+        Assertions.assertTrue(responseEntity.getStatusCode().is4xxClientError());
+        Assertions.assertNotNull(responseEntity.getBody());
+        Assertions.assertEquals("query can not be empty", responseEntity.getBody().getDetail());
+    }
+
+    @ParameterizedTest
+    @MethodSource("suggestionTestData")
+    public void suggestionsTest(String parameters, List<String> expectedResults){
+        var responseEntity = this.restTemplate.exchange(
+                RequestEntity.get(URI.create(SUGGESTION_PATH.formatted(parameters))).build(),
+                new ParameterizedTypeReference<List<String>>() {
+                }
+        );
+        Assertions.assertTrue(responseEntity.getStatusCode().is2xxSuccessful());
+        Assertions.assertEquals(expectedResults, responseEntity.getBody());
+    }
+
+    private static Stream<Arguments> searchTestData() {
+        return Stream.of(
+                Arguments.of("query=coffee", 2),
+                Arguments.of("query=coffee&state=Washington", 1),
+                Arguments.of("query=coffee&facet=state:Washington%7C%7Cstate:Missouri", 2),
+                Arguments.of("query=electronics&distance=25mi&latitude=36.5179&longitude=-94.0298", 1),
+                Arguments.of("query=chain&page=1&size=3", 2),
+                Arguments.of("query=markat", 1),
+                Arguments.of("query=XYZ", 0)
+        );
+    }
+
+    private static Stream<Arguments> suggestionTestData() {
+        return Stream.of(
+                Arguments.of("prefix=c", List.of("cafe", "coffee")),
+                Arguments.of("prefix=c&limit=1", List.of("cafe")),
+                Arguments.of("prefix=cofe", List.of("coffee")),
+                Arguments.of("prefix=x", List.of())
+        );
+    }
+
+}
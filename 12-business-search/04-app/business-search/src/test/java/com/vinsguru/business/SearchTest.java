@@ -1,9 +1,16 @@
 package com.vinsguru.business;
 
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.Business;
+import com.vinsguru.business.dto.FacetItem;
+import com.vinsguru.business.dto.SearchRequestParameters;
 import com.vinsguru.business.dto.SearchResponse;
 import com.vinsguru.business.util.Constants;
+import com.vinsguru.business.util.MatchMode;
+import com.vinsguru.business.util.NativeQueryBuilder;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -17,10 +24,12 @@ import org.springframework.data.elasticsearch.core.RefreshPolicy;
 import org.springframework.data.elasticsearch.core.document.Document;
 import org.springframework.http.ProblemDetail;
 import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
 
 import java.net.URI;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
 @AutoConfigureTestRestTemplate
@@ -28,6 +37,8 @@ public class SearchTest extends AbstractTest {
 
     private static final Logger log = LoggerFactory.getLogger(SearchTest.class);
     private static final String API_PATH = "/api/search?%s";
+    private static final String STREAM_API_PATH = "/api/search/stream?%s";
+    private static final int TOP_HITS = 3;
 
     @Autowired
     private TestRestTemplate restTemplate;
@@ -35,11 +46,13 @@ public class SearchTest extends AbstractTest {
     @Autowired
     private ElasticsearchOperations elasticsearchOperations;
 
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
     @BeforeAll
     public void setup(){
-        var indexSetting = this.readResource("test-data/business-index-setting.json", new TypeReference<Map<String, Object>>() {
+        var indexSetting = this.readResource("elasticsearch/business-index-setting.json", new TypeReference<Map<String, Object>>() {
         });
-        var indexMapping = this.readResource("test-data/business-index-mapping.json", new TypeReference<Map<String, Object>>() {
+        var indexMapping = this.readResource("elasticsearch/business-index-mapping.json", new TypeReference<Map<String, Object>>() {
         });
         var businessData = this.readResource("test-data/business-data.json", new TypeReference<List<Object>>() {
         });
@@ -64,6 +77,105 @@ public class SearchTest extends AbstractTest {
         Assertions.assertEquals(expectedResultsCount, searchResponse.results().size());
     }
 
+    @Test
+    public void multiSelectFacetTest(){
+        var path = API_PATH.formatted("query=coffee&facet=state:Washington");
+        var searchResponse = this.restTemplate.getForObject(URI.create(path), SearchResponse.class);
+        Assertions.assertNotNull(searchResponse);
+        Assertions.assertEquals(1, searchResponse.results().size());
+
+        // the state facet still offers the other states of the matching businesses
+        var stateFacet = searchResponse.facets()
+                                       .stream()
+                                       .filter(facet -> facet.name().equals(Constants.Business.STATE_AGGREGATE_NAME))
+                                       .findFirst()
+                                       .orElseThrow();
+        Assertions.assertEquals(List.of(new FacetItem("Missouri", 1), new FacetItem("Washington", 1)), stateFacet.items());
+    }
+
+    // the streaming search returns what /api/search returns for the same parameters, but the timing
+    @ParameterizedTest
+    @MethodSource("streamingTestData")
+    public void streamingSearchEquivalenceTest(String parameters){
+        var expected = this.jsonMapper.readTree(this.restTemplate.getForObject(URI.create(API_PATH.formatted(parameters)), String.class));
+        var actual = this.jsonMapper.readTree(this.restTemplate.getForObject(URI.create(STREAM_API_PATH.formatted(parameters)), String.class));
+        log.info("streamed: {}", actual);
+        Assertions.assertFalse(actual.get("results").isEmpty());
+        for (var property : List.of("results", "facets", "pagination", "matchMode")) {
+            Assertions.assertEquals(expected.get(property), actual.get(property), property);
+        }
+    }
+
+    // relevance comparison: the catch-all text match finds the same businesses as the five boosted fields, and ranks the best of them alike
+    @ParameterizedTest
+    @MethodSource("textMatchTestData")
+    public void textMatchEquivalenceTest(String query, MatchMode matchMode){
+        var parameters = parameters(query, null, null);
+        var mostFields = this.search(parameters, matchMode, withTextMatch(SearchProperties.TextMatch.Mode.MOST_FIELDS));
+        var catchAll = this.search(parameters, matchMode, withTextMatch(SearchProperties.TextMatch.Mode.CATCH_ALL));
+        log.info("{} {}: most_fields {}, catch_all {}", query, matchMode.tag(), mostFields, catchAll);
+        Assertions.assertEquals(Set.copyOf(mostFields), Set.copyOf(catchAll));
+        Assertions.assertEquals(topHits(mostFields), topHits(catchAll));
+    }
+
+    // unlike most_fields, the catch-all field matches terms spread over several fields
+    @Test
+    public void catchAllCrossFieldTest(){
+        var parameters = parameters("starbucks coffee", null, null);
+        Assertions.assertEquals(List.of(), this.search(parameters, MatchMode.FUZZY, withTextMatch(SearchProperties.TextMatch.Mode.MOST_FIELDS)));
+        Assertions.assertEquals(List.of("Starbucks"), this.search(parameters, MatchMode.FUZZY, withTextMatch(SearchProperties.TextMatch.Mode.CATCH_ALL)));
+    }
+
+    // the plain term filters on the normalized sub-fields match the same businesses as the case insensitive ones
+    @ParameterizedTest
+    @MethodSource("keywordFiltersTestData")
+    public void keywordFiltersEquivalenceTest(String query, String state, String facet, int expectedResultsCount){
+        var parameters = parameters(query, state, facet);
+        var caseInsensitive = this.search(parameters, MatchMode.FUZZY, withKeywordFilters(SearchProperties.KeywordFilters.Mode.CASE_INSENSITIVE));
+        var normalized = this.search(parameters, MatchMode.FUZZY, withKeywordFilters(SearchProperties.KeywordFilters.Mode.NORMALIZED));
+        Assertions.assertEquals(expectedResultsCount, caseInsensitive.size());
+        Assertions.assertEquals(Set.copyOf(caseInsensitive), Set.copyOf(normalized));
+    }
+
+    // the geo decay of the rescore stage moves the closest of the matching businesses up, without changing which businesses match
+    @Test
+    public void rescoreTest(){
+        var parameters = new SearchRequestParameters("chain", null, 44.98, -93.27, null, null, null, 0, 10, null, false, null, null, "nearby", null);
+        var profile = new SearchProperties.Rescore.Profile(50, 1.0f, 1.0f, 0.0f, 10.0f, "50km");
+        var properties = SearchProperties.defaults().withRescore(new SearchProperties.Rescore(null, Map.of("nearby", profile)));
+        var firstPhase = this.search(parameters, MatchMode.FUZZY, SearchProperties.defaults());
+        var rescored = this.search(parameters, MatchMode.FUZZY, properties);
+        log.info("first phase {}, rescored {}", firstPhase, rescored);
+        Assertions.assertEquals(Set.copyOf(firstPhase), Set.copyOf(rescored));
+        Assertions.assertEquals("Target", rescored.getFirst());
+    }
+
+    private static SearchRequestParameters parameters(String query, String state, String facet) {
+        return new SearchRequestParameters(query, null, null, null, null, state, null, 0, 10, null, false, null, facet, null, null);
+    }
+
+    private static SearchProperties withTextMatch(SearchProperties.TextMatch.Mode mode) {
+        return SearchProperties.defaults().withTextMatch(new SearchProperties.TextMatch(mode));
+    }
+
+    private static SearchProperties withKeywordFilters(SearchProperties.KeywordFilters.Mode mode) {
+        return SearchProperties.defaults().withKeywordFilters(new SearchProperties.KeywordFilters(mode));
+    }
+
+    // names of the matching businesses, best match first
+    private static List<String> topHits(List<String> names) {
+        return names.subList(0, Math.min(TOP_HITS, names.size()));
+    }
+
+    private List<String> search(SearchRequestParameters parameters, MatchMode matchMode, SearchProperties properties) {
+        var nativeQuery = NativeQueryBuilder.toSearchQuery(parameters, null, properties, matchMode);
+        return this.elasticsearchOperations.search(nativeQuery, Business.class, Constants.Index.BUSINESS)
+                                           .getSearchHits()
+                                           .stream()
+                                           .map(hit -> hit.getContent().name())
+                                           .toList();
+    }
+
     @ParameterizedTest
     @MethodSource("failureTestData")
     public void searchFailureTest(String parameters){
@@ -74,12 +186,53 @@ public class SearchTest extends AbstractTest {
         Assertions.assertEquals("query can not be empty", responseEntity.getBody().getDetail());
     }
 
+    private static Stream<Arguments> streamingTestData() {
+        return Stream.of(
+                Arguments.of("query=coffee"),
+                Arguments.of("query=coffee&fields=card"),
+                Arguments.of("query=retail&size=2&page=1&facet=state:Washington%7C%7Cstate:Arizona"),
+                Arguments.of("query=retail&rating=4.0&sort=reviews")
+        );
+    }
+
+    private static Stream<Arguments> textMatchTestData() {
+        return Stream.of(
+                Arguments.of("coffee", MatchMode.FUZZY),
+                Arguments.of("coffee", MatchMode.EXACT),
+                Arguments.of("coffee shop", MatchMode.FUZZY),
+                Arguments.of("grocery store", MatchMode.FUZZY),
+                Arguments.of("grocery store", MatchMode.EXACT),
+                Arguments.of("bakery cafe", MatchMode.FUZZY),
+                Arguments.of("electronics", MatchMode.FUZZY),
+                Arguments.of("chain", MatchMode.FUZZY),
+                Arguments.of("markat", MatchMode.FUZZY),
+                Arguments.of("markat", MatchMode.EXACT),
+                Arguments.of("XYZ", MatchMode.FUZZY)
+        );
+    }
+
+    private static Stream<Arguments> keywordFiltersTestData() {
+        return Stream.of(
+                Arguments.of("coffee", "Washington", null, 1),
+                Arguments.of("coffee", "washington", null, 1),
+                Arguments.of("coffee", "WASHINGTON", null, 1),
+                Arguments.of("coffee", "Texas", null, 0),
+                Arguments.of("coffee", null, "state:washington||state:MISSOURI", 2),
+                Arguments.of("coffee", null, "offerings:wi-fi", 1),
+                Arguments.of("coffee shop", null, null, 1), // category scoring rule
+                Arguments.of("grocery store", null, "category:GROCERY STORE", 2),
+                Arguments.of("grocery store", "texas", "category:organic||offerings:pharmacy", 1)
+        );
+    }
+
     private static Stream<Arguments> successTestData() {
         return Stream.of(
                 Arguments.of("query=coffee", 2),   // no filters
                 Arguments.of("query=coffee&rating=4.3", 1), // rating filter
                 Arguments.of("query=coffee&state=Washington", 1), // state filter
                 Arguments.of("query=coffee&offerings=Wi-Fi", 1), // offerings filter
+                Arguments.of("query=coffee&facet=state:Washington%7C%7Cstate:Missouri", 2), // values of a facet are alternatives
+                Arguments.of("query=coffee&facet=category:Bakery%7C%7Cofferings:Wi-Fi", 0), // different facets all have to match
                 Arguments.of("query=electronics&distance=5mi&latitude=36.5179&longitude=-94.0298", 0), // distance - no results within 5 miles
                 Arguments.of("query=electronics&distance=25mi&latitude=36.5179&longitude=-94.0298", 1), // distance - 1 result within 25 miles
                 Arguments.of("query=electronics&distance=5mi&latitude=36.5179", 2), // longitude is missing. so distance can not be applied
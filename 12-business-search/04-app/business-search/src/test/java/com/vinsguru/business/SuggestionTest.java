@@ -84,6 +84,8 @@ public class SuggestionTest extends AbstractTest {
                 Arguments.of("prefix=co", List.of("coffee")),
                 Arguments.of("prefix=cofe", List.of("coffee")), // fuzzy - but not cafe because of prefix 2
                 Arguments.of("prefix=cffee", List.of()), // fuzzy prefix length 2
+                Arguments.of("prefix=CAF%20", List.of("cafe")), // case and surrounding whitespace do not matter, see SuggestionRequestParameters.normalizedPrefix
+                Arguments.of("prefix=%20Wal", List.of("walmart")),
                 Arguments.of("prefix=12", List.of()),
                 Arguments.of("prefix=x", List.of())
         );
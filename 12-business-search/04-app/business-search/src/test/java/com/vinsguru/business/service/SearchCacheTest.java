@@ -0,0 +1,132 @@
+package com.vinsguru.business.service;
+
+import com.vinsguru.business.config.SearchCacheProperties;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.dto.SearchResponse;
+import com.vinsguru.business.event.IndexReloadedEvent;
+import com.vinsguru.business.util.Constants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SearchCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final IndexGenerationMonitor indexGenerationMonitor = new IndexGenerationMonitor(null, null, null);
+    private final List<SearchRequestParameters> searched = new ArrayList<>();
+
+    @Test
+    public void equivalentRequestIsServedFromTheCacheTest() {
+        var cache = this.cache(true);
+        var first = cache.get(parameters("Coffee", 40.71284, null), this::search);
+        var second = cache.get(parameters(" coffee ", 40.71276, null), this::search);
+
+        Assertions.assertFalse(first.cached());
+        Assertions.assertTrue(second.cached());
+        Assertions.assertEquals(first.results(), second.results());
+        Assertions.assertEquals(1, this.searched.size());
+        Assertions.assertEquals(1, this.count("hit"));
+        Assertions.assertEquals(1, this.count("miss"));
+    }
+
+    @Test
+    public void reactiveRequestIsServedFromTheCacheTest() {
+        var cache = this.cache(true);
+        var parameters = parameters("coffee", null, null);
+        var first = cache.getReactive(parameters, (key, p) -> Mono.fromSupplier(() -> this.search(key, p))).block();
+        var second = cache.getReactive(parameters, (key, p) -> Mono.fromSupplier(() -> this.search(key, p))).block();
+
+        Assertions.assertNotNull(first);
+        Assertions.assertNotNull(second);
+        Assertions.assertFalse(first.cached());
+        Assertions.assertTrue(second.cached());
+        Assertions.assertEquals(1, this.searched.size());
+        Assertions.assertTrue(cache.get(parameters, this::search).cached());
+    }
+
+    @Test
+    public void differentRequestIsAMissTest() {
+        var cache = this.cache(true);
+        cache.get(parameters("coffee", 40.712, null), this::search);
+        var response = cache.get(parameters("coffee", 40.713, null), this::search);
+
+        Assertions.assertFalse(response.cached());
+        Assertions.assertEquals(2, this.searched.size());
+        Assertions.assertEquals(2, this.count("miss"));
+    }
+
+    // the canonical parameters are the key, the search runs with the parameters as they were sent
+    @Test
+    public void loaderSearchesWithTheRequestParametersTest() {
+        var cache = this.cache(true);
+        var parameters = parameters("Coffee", 40.71284, null);
+        var keys = new ArrayList<SearchRequestParameters>();
+        cache.get(parameters, (key, p) -> {
+            keys.add(key);
+            return this.search(key, p);
+        });
+
+        Assertions.assertEquals(List.of(parameters.canonical(3)), keys);
+        Assertions.assertEquals(List.of(parameters), this.searched);
+    }
+
+    @Test
+    public void indexReloadInvalidatesTheCachedResponsesTest() {
+        var cache = this.cache(true);
+        var parameters = parameters("coffee", null, null);
+        cache.get(parameters, this::search);
+        this.indexGenerationMonitor.onIndexReloaded(new IndexReloadedEvent(Constants.Index.SUGGESTION.getIndexName()));
+        Assertions.assertTrue(cache.get(parameters, this::search).cached());
+
+        this.indexGenerationMonitor.onIndexReloaded(new IndexReloadedEvent(Constants.Index.BUSINESS.getIndexName()));
+        Assertions.assertFalse(cache.get(parameters, this::search).cached());
+        Assertions.assertTrue(cache.get(parameters, this::search).cached());
+        Assertions.assertEquals(2, this.searched.size());
+    }
+
+    @Test
+    public void disabledCacheAlwaysSearchesTest() {
+        var cache = this.cache(false);
+        var parameters = parameters("Coffee", 40.71284, null);
+        cache.get(parameters, this::search);
+        var response = cache.get(parameters, this::search);
+
+        Assertions.assertFalse(response.cached());
+        Assertions.assertEquals(List.of(parameters, parameters), this.searched);
+        Assertions.assertEquals(0, this.count("hit") + this.count("miss"));
+    }
+
+    @Test
+    public void cursorPagesAreNotCachedTest() {
+        var cache = this.cache(true);
+        var parameters = parameters("coffee", null, "*");
+        cache.get(parameters, this::search);
+
+        Assertions.assertFalse(cache.get(parameters, this::search).cached());
+        Assertions.assertEquals(2, this.searched.size());
+    }
+
+    private SearchCache cache(boolean enabled) {
+        var properties = new SearchCacheProperties(enabled, 100, Duration.ofMinutes(1), 3);
+        return new SearchCache(properties, this.indexGenerationMonitor, this.meterRegistry);
+    }
+
+    private SearchResponse search(SearchRequestParameters key, SearchRequestParameters parameters) {
+        this.searched.add(parameters);
+        return new SearchResponse(List.of(parameters.query()), List.of(), null, 5, false, "exact");
+    }
+
+    private double count(String result) {
+        return this.meterRegistry.counter("search.cache.requests", "result", result).count();
+    }
+
+    private static SearchRequestParameters parameters(String query, Double latitude, String cursor) {
+        return new SearchRequestParameters(query, null, latitude, latitude == null ? null : -74.006, null, null, null, null, null, cursor, null, null, null, null, null);
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.vinsguru.business.service;
+
+import com.vinsguru.business.config.SuggestionCacheProperties;
+import com.vinsguru.business.dto.SuggestionRequestParameters;
+import com.vinsguru.business.event.IndexReloadedEvent;
+import com.vinsguru.business.util.Constants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SuggestionCacheTest {
+
+    private static final List<String> SUGGESTIONS = List.of("starbucks", "state farm", "staples", "stop & shop", "stater bros");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @Test
+    public void samePrefixIsServedFromTheCacheTest() {
+        var cache = this.cache(true);
+        cache.get(new SuggestionRequestParameters("Sta", 3), this::search);
+        var suggestions = cache.get(new SuggestionRequestParameters(" sta ", 3), this::search);
+
+        Assertions.assertEquals(SUGGESTIONS.subList(0, 3), suggestions);
+        Assertions.assertEquals(1, this.searches.get());
+        Assertions.assertEquals(1, this.count("hit"));
+        Assertions.assertEquals(1, this.count("miss"));
+    }
+
+    @Test
+    public void reactiveRequestIsServedFromTheCacheTest() {
+        var cache = this.cache(true);
+        var parameters = new SuggestionRequestParameters("sta", 3);
+        cache.getReactive(parameters, p -> Mono.fromSupplier(() -> this.search(p))).block();
+
+        Assertions.assertEquals(SUGGESTIONS.subList(0, 3), cache.getReactive(parameters, p -> Mono.fromSupplier(() -> this.search(p))).block());
+        Assertions.assertEquals(SUGGESTIONS.subList(0, 3), cache.get(parameters, this::search));
+        Assertions.assertEquals(1, this.searches.get());
+    }
+
+    // an entry answers any smaller limit, a larger one is fetched again
+    @Test
+    public void limitsTest() {
+        var cache = this.cache(true);
+        cache.get(new SuggestionRequestParameters("sta", 3), this::search);
+        Assertions.assertEquals(SUGGESTIONS.subList(0, 2), cache.get(new SuggestionRequestParameters("sta", 2), this::search));
+        Assertions.assertEquals(1, this.searches.get());
+
+        Assertions.assertEquals(SUGGESTIONS.subList(0, 4), cache.get(new SuggestionRequestParameters("sta", 4), this::search));
+        Assertions.assertEquals(2, this.searches.get());
+
+        // fewer suggestions than the limit: the entry holds all of them
+        Assertions.assertEquals(SUGGESTIONS, cache.get(new SuggestionRequestParameters("sta", 10), this::search));
+        Assertions.assertEquals(SUGGESTIONS, cache.get(new SuggestionRequestParameters("sta", 20), this::search));
+        Assertions.assertEquals(3, this.searches.get());
+    }
+
+    @Test
+    public void differentPrefixIsAMissTest() {
+        var cache = this.cache(true);
+        cache.get(new SuggestionRequestParameters("sta", 3), this::search);
+        cache.get(new SuggestionRequestParameters("star", 3), this::search);
+
+        Assertions.assertEquals(2, this.searches.get());
+        Assertions.assertEquals(2, this.count("miss"));
+    }
+
+    @Test
+    public void indexReloadInvalidatesTheCachedSuggestionsTest() {
+        var cache = this.cache(true);
+        var parameters = new SuggestionRequestParameters("sta", 3);
+        cache.get(parameters, this::search);
+        cache.onIndexReloaded(new IndexReloadedEvent(Constants.Index.BUSINESS.getIndexName()));
+        cache.get(parameters, this::search);
+        Assertions.assertEquals(1, this.searches.get());
+
+        cache.onIndexReloaded(new IndexReloadedEvent(Constants.Index.SUGGESTION.getIndexName()));
+        cache.get(parameters, this::search);
+        Assertions.assertEquals(2, this.searches.get());
+    }
+
+    @Test
+    public void disabledCacheAlwaysSearchesTest() {
+        var cache = this.cache(false);
+        var parameters = new SuggestionRequestParameters("sta", 3);
+        cache.get(parameters, this::search);
+        cache.get(parameters, this::search);
+
+        Assertions.assertEquals(2, this.searches.get());
+        Assertions.assertEquals(0, this.count("hit") + this.count("miss"));
+    }
+
+    private SuggestionCache cache(boolean enabled) {
+        return new SuggestionCache(new SuggestionCacheProperties(enabled, 100, Duration.ofMinutes(1)), this.meterRegistry);
+    }
+
+    private List<String> search(SuggestionRequestParameters parameters) {
+        this.searches.incrementAndGet();
+        return SUGGESTIONS.subList(0, Math.min(parameters.limit(), SUGGESTIONS.size()));
+    }
+
+    private double count(String result) {
+        return this.meterRegistry.counter("suggestion.cache.requests", "result", result).count();
+    }
+
+}
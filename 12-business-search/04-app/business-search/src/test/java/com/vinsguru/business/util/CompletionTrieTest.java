@@ -0,0 +1,59 @@
+package com.vinsguru.business.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+// same expectations as SuggestionTest, which runs them against the completion suggester
+public class CompletionTrieTest {
+
+    private final CompletionTrie trie = CompletionTrie.builder()
+                                                      .add("coffee", 1)
+                                                      .add("cafe", 1)
+                                                      .add("starbucks", 1)
+                                                      .add("walmart", 1)
+                                                      .build();
+
+    @ParameterizedTest
+    @MethodSource("suggestionTestData")
+    public void suggestTest(String prefix, int limit, List<String> expectedResults){
+        Assertions.assertEquals(expectedResults, this.trie.suggest(prefix, limit));
+    }
+
+    @Test
+    public void weightAndDuplicatesTest(){
+        var weighted = CompletionTrie.builder()
+                                     .add("coffee", 1)
+                                     .add("coffee", 3)
+                                     .add("cafe", 2)
+                                     .add("cofe", 1)
+                                     .build();
+        Assertions.assertEquals(List.of("coffee", "cafe", "cofe"), weighted.suggest("c", 10));
+        Assertions.assertEquals(List.of("cofe", "coffee"), weighted.suggest("cofe", 10)); // exact match before the fuzzy one
+    }
+
+    @Test
+    public void transpositionTest(){
+        Assertions.assertEquals(List.of("starbucks"), this.trie.suggest("stabr", 10));
+    }
+
+    private static Stream<Arguments> suggestionTestData() {
+        return Stream.of(
+                Arguments.of("w", 10, List.of("walmart")),
+                Arguments.of("c", 10, List.of("cafe", "coffee")),
+                Arguments.of("C", 10, List.of("cafe", "coffee")),
+                Arguments.of("c", 1, List.of("cafe")),
+                Arguments.of("co", 10, List.of("coffee")),
+                Arguments.of("cofe", 10, List.of("coffee")), // fuzzy - but not cafe because of prefix 2
+                Arguments.of("cffee", 10, List.of()), // fuzzy prefix length 2
+                Arguments.of("12", 10, List.of()),
+                Arguments.of("x", 10, List.of())
+        );
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.vinsguru.business.util;
+
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.json.jackson.Jackson3JsonpMapper;
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.SearchCursor;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+// a _msearch item must search exactly like the single search request derived from its body. the index is not part of the serialized body
+public class ElasticsearchUtilTest {
+
+    private static final SearchProperties PROPERTIES = SearchProperties.defaults();
+
+    private final Jackson3JsonpMapper jsonpMapper = new Jackson3JsonpMapper();
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    @ParameterizedTest
+    @MethodSource("requestParameters")
+    public void searchRequestBodyEquivalenceTest(SearchRequestParameters parameters, SearchCursor cursor){
+        var query = NativeQueryBuilder.toSearchQuery(parameters, cursor, PROPERTIES);
+        var expected = JsonpUtils.toJsonString(ElasticsearchUtil.buildSearchRequest(Constants.Index.BUSINESS, query), this.jsonpMapper);
+        var actual = JsonpUtils.toJsonString(ElasticsearchUtil.buildSearchRequestBody(query), this.jsonpMapper);
+        // the two builders serialize their properties in a different order
+        Assertions.assertEquals(this.jsonMapper.readTree(expected), this.jsonMapper.readTree(actual));
+    }
+
+    // the rescore section is converted like the rest of the query
+    @ParameterizedTest
+    @MethodSource("requestParameters")
+    public void rescoredSearchRequestBodyEquivalenceTest(SearchRequestParameters parameters, SearchCursor cursor){
+        var rescore = new SearchProperties.Rescore("nearby", Map.of("nearby", new SearchProperties.Rescore.Profile(50, 1.0f, 2.0f, 1.0f, 3.0f, "5km")));
+        var query = NativeQueryBuilder.toSearchQuery(parameters, cursor, PROPERTIES.withRescore(rescore));
+        var expected = JsonpUtils.toJsonString(ElasticsearchUtil.buildSearchRequest(Constants.Index.BUSINESS, query), this.jsonpMapper);
+        var actual = JsonpUtils.toJsonString(ElasticsearchUtil.buildSearchRequestBody(query), this.jsonpMapper);
+        Assertions.assertEquals(Objects.isNull(cursor), expected.contains("\"rescore\""));
+        Assertions.assertEquals(this.jsonMapper.readTree(expected), this.jsonMapper.readTree(actual));
+    }
+
+    private static Stream<Arguments> requestParameters() {
+        return Stream.of(
+                Arguments.of(parameters(null, null, null, null, null), null),
+                Arguments.of(parameters(4.3, "Washington", "Wi-Fi", "card", "category:Cafe"), null),
+                Arguments.of(parameters(null, null, null, null, "state:Texas||state:Ohio"), null),
+                Arguments.of(parameters(null, null, null, "card", null), SearchCursor.start("pit-id").next("pit-id", List.of(4.5, 42)))
+        );
+    }
+
+    private static SearchRequestParameters parameters(Double rating, String state, String offerings, String fields, String facet) {
+        return new SearchRequestParameters("coffee", "25mi", 36.5179, -94.0298, rating, state, offerings,
+                                           1, 5, null, false, fields, facet, null, null);
+    }
+
+}
@@ -0,0 +1,266 @@
+package com.vinsguru.business.util;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermQuery;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.json.jackson.Jackson3JsonpMapper;
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.SearchCursor;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.dto.SuggestionRequestParameters;
+import com.vinsguru.business.exceptions.BadRequestException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.query.RescorerQuery;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+// the clause every variant of the search request adds or swaps, the rest of the request stays the same
+public class NativeQueryBuilderTest {
+
+    private static final SearchProperties PROPERTIES = SearchProperties.defaults();
+
+    private static final SearchProperties.Rescore RESCORE = new SearchProperties.Rescore("nearby", Map.of(
+            "nearby", new SearchProperties.Rescore.Profile(20, 1.0f, 2.0f, 1.0f, 3.0f, "5km"),
+            "phrase", new SearchProperties.Rescore.Profile(50, 1.0f, 1.0f, 2.0f, 0.0f, "10km")
+    ));
+
+    private final Jackson3JsonpMapper jsonpMapper = new Jackson3JsonpMapper();
+
+    // the exact query drops the fuzziness of the search terms only
+    @ParameterizedTest
+    @MethodSource("requestParameters")
+    public void exactQueryTest(SearchRequestParameters parameters){
+        var fuzzy = NativeQueryBuilder.toSearchQuery(parameters, null, PROPERTIES, MatchMode.FUZZY);
+        var exact = NativeQueryBuilder.toSearchQuery(parameters, null, PROPERTIES, MatchMode.EXACT);
+        var fuzzyMatch = bool(fuzzy).must().getFirst().multiMatch();
+        var exactMatch = bool(exact).must().getFirst().multiMatch();
+        Assertions.assertEquals(Constants.Fuzzy.LEVEL, fuzzyMatch.fuzziness());
+        Assertions.assertEquals(Constants.Fuzzy.PREFIX_LENGTH, fuzzyMatch.prefixLength());
+        Assertions.assertNull(exactMatch.fuzziness());
+        Assertions.assertNull(exactMatch.prefixLength());
+        Assertions.assertEquals(fuzzyMatch.fields(), exactMatch.fields());
+        Assertions.assertEquals(fuzzyMatch.query(), exactMatch.query());
+        this.assertSameClauses(bool(fuzzy).filter(), bool(exact).filter());
+        this.assertSameClauses(bool(fuzzy).should(), bool(exact).should());
+        this.assertSameRequestBesidesQuery(fuzzy, exact);
+    }
+
+    // catch_all matches the search terms on search_all, and ranks with the exact terms on the boosted fields
+    @ParameterizedTest
+    @MethodSource("requestParameters")
+    public void catchAllQueryTest(SearchRequestParameters parameters){
+        var properties = PROPERTIES.withTextMatch(new SearchProperties.TextMatch(SearchProperties.TextMatch.Mode.CATCH_ALL));
+        for (var matchMode : MatchMode.values()) {
+            var mostFields = NativeQueryBuilder.toSearchQuery(parameters, null, PROPERTIES, matchMode);
+            var catchAll = NativeQueryBuilder.toSearchQuery(parameters, null, properties, matchMode);
+            var searchClause = bool(catchAll).must().getFirst().bool();
+            var match = searchClause.must().getFirst().match();
+            Assertions.assertEquals(Constants.Business.SEARCH_ALL, match.field());
+            Assertions.assertEquals(parameters.query(), match.query().stringValue());
+            Assertions.assertEquals(matchMode == MatchMode.FUZZY ? Constants.Fuzzy.LEVEL : null, match.fuzziness());
+            var ranking = searchClause.should().getFirst().multiMatch();
+            Assertions.assertEquals(bool(mostFields).must().getFirst().multiMatch().fields(), ranking.fields());
+            Assertions.assertNull(ranking.fuzziness());
+            this.assertSameClauses(bool(mostFields).filter(), bool(catchAll).filter());
+            this.assertSameClauses(bool(mostFields).should(), bool(catchAll).should());
+            this.assertSameRequestBesidesQuery(mostFields, catchAll);
+        }
+    }
+
+    // normalized keyword filters are plain term queries on the .lowercase sub-fields, with the values lowercased
+    @Test
+    public void normalizedKeywordFiltersTest(){
+        var parameters = new SearchRequestParameters("Coffee", null, null, null, null, "Washington", "Wi-Fi", 0, 10, null, false, null, "category:Cafe", null, null);
+        var caseInsensitive = NativeQueryBuilder.toSearchQuery(parameters, PROPERTIES);
+        assertTerm(new TermQueryExpectation(Constants.Business.STATE, "Washington", true), bool(caseInsensitive).filter().getFirst().term());
+        assertTerm(new TermQueryExpectation(Constants.Business.CATEGORY_RAW, "Coffee", true), bool(caseInsensitive).should().getFirst().term());
+
+        var properties = PROPERTIES.withKeywordFilters(new SearchProperties.KeywordFilters(SearchProperties.KeywordFilters.Mode.NORMALIZED));
+        var normalized = NativeQueryBuilder.toSearchQuery(parameters, properties);
+        assertTerm(new TermQueryExpectation(Constants.Business.STATE_LOWERCASE, "washington", false), bool(normalized).filter().getFirst().term());
+        assertTerm(new TermQueryExpectation(Constants.Business.CATEGORY_LOWERCASE, "coffee", false), bool(normalized).should().getFirst().term());
+        Assertions.assertEquals(5.0f, bool(normalized).should().getFirst().term().boost());
+        // the facet selections of the post filter
+        var selections = normalized.getFilter().bool().filter();
+        assertTerm(new TermQueryExpectation(Constants.Business.OFFERINGS_LOWERCASE, "wi-fi", false), selections.get(0).term());
+        assertTerm(new TermQueryExpectation(Constants.Business.CATEGORY_LOWERCASE, "cafe", false), selections.get(1).term());
+        this.assertSameClauses(bool(caseInsensitive).must(), bool(normalized).must());
+    }
+
+    // rank_feature adds the popularity clause next to the category one, function_score wraps the same query
+    @ParameterizedTest
+    @MethodSource("requestParameters")
+    public void popularityQueryTest(SearchRequestParameters parameters){
+        var query = NativeQueryBuilder.toSearchQuery(parameters, PROPERTIES);
+
+        var rankFeature = NativeQueryBuilder.toSearchQuery(parameters, this.withPopularity(SearchProperties.Popularity.Mode.RANK_FEATURE));
+        var should = bool(rankFeature).should();
+        Assertions.assertEquals(2, should.size());
+        this.assertSameClauses(bool(query).should(), should.subList(0, 1));
+        var features = should.get(1).bool().should().stream().map(feature -> feature.rankFeature().field()).toList();
+        Assertions.assertEquals(List.of(Constants.Business.POPULARITY_RATING, Constants.Business.POPULARITY_REVIEWS), features);
+        this.assertSameClauses(bool(query).filter(), bool(rankFeature).filter());
+        this.assertSameClauses(bool(query).must(), bool(rankFeature).must());
+
+        var functionScore = NativeQueryBuilder.toSearchQuery(parameters, this.withPopularity(SearchProperties.Popularity.Mode.FUNCTION_SCORE));
+        var functionScoreQuery = functionScore.getQuery().functionScore();
+        Assertions.assertEquals(this.toJson(query.getQuery()), this.toJson(functionScoreQuery.query()));
+        Assertions.assertEquals(2, functionScoreQuery.functions().size());
+        this.assertSameRequestBesidesQuery(query, rankFeature);
+        this.assertSameRequestBesidesQuery(query, functionScore);
+    }
+
+    // the rescore stage leaves the query alone. its window is the configured one, the geo decay needs the coordinates of the request
+    @ParameterizedTest
+    @MethodSource("requestParameters")
+    public void rescoreTest(SearchRequestParameters parameters){
+        var properties = PROPERTIES.withRescore(RESCORE);
+        var query = NativeQueryBuilder.toSearchQuery(parameters, properties);
+        Assertions.assertEquals(this.toJson(NativeQueryBuilder.toSearchQuery(parameters, PROPERTIES).getQuery()), this.toJson(query.getQuery()));
+        Assertions.assertEquals(1, query.getRescorerQueries().size());
+        var rescorerQuery = query.getRescorerQueries().getFirst();
+        Assertions.assertEquals(20, rescorerQuery.getWindowSize());
+        Assertions.assertEquals(2.0f, rescorerQuery.getRescoreQueryWeight());
+        var signals = ((NativeQuery) rescorerQuery.getQuery()).getQuery().bool().should();
+        Assertions.assertEquals(Constants.Business.NAME, signals.getFirst().matchPhrase().field());
+        Assertions.assertEquals(Objects.nonNull(parameters.latitude()) ? 2 : 1, signals.size());
+        Assertions.assertEquals(NativeQueryBuilder.firedRules(parameters) + "+rescore-nearby", NativeQueryBuilder.firedRules(parameters, properties));
+    }
+
+    // a page starting past the window is not rescored, the window does not grow with the page
+    @Test
+    public void rescoreWindowTest(){
+        var properties = PROPERTIES.withRescore(RESCORE);
+        var lastPage = new SearchRequestParameters("coffee", null, null, null, null, null, null, 3, 5, null, false, null, null, null, null);
+        Assertions.assertEquals(List.of(20), NativeQueryBuilder.toSearchQuery(lastPage, properties).getRescorerQueries().stream().map(RescorerQuery::getWindowSize).toList());
+        Assertions.assertEquals("search+category+rescore-nearby", NativeQueryBuilder.firedRules(lastPage, properties));
+        var pastWindow = new SearchRequestParameters("coffee", null, null, null, null, null, null, 4, 5, null, false, null, null, null, null);
+        Assertions.assertTrue(NativeQueryBuilder.toSearchQuery(pastWindow, properties).getRescorerQueries().isEmpty());
+        Assertions.assertEquals("search+category", NativeQueryBuilder.firedRules(pastWindow, properties));
+        var phrase = new SearchRequestParameters("coffee", null, null, null, null, null, null, 4, 5, null, false, null, null, "phrase", null);
+        Assertions.assertEquals(List.of(50), NativeQueryBuilder.toSearchQuery(phrase, properties).getRescorerQueries().stream().map(RescorerQuery::getWindowSize).toList());
+    }
+
+    // the profile of the request wins over the default one. cursor pages are not rescored, unknown profiles are rejected
+    @Test
+    public void rescoreProfileTest(){
+        var properties = PROPERTIES.withRescore(RESCORE);
+        var phrase = NativeQueryBuilder.toSearchQuery(parameters(null, "phrase", null), properties).getRescorerQueries();
+        Assertions.assertEquals(List.of(50), phrase.stream().map(RescorerQuery::getWindowSize).toList());
+        Assertions.assertTrue(NativeQueryBuilder.toSearchQuery(parameters(null, null, null), PROPERTIES).getRescorerQueries().isEmpty());
+        var cursor = SearchCursor.start("pit-id");
+        Assertions.assertTrue(NativeQueryBuilder.toSearchQuery(parameters(SearchCursor.START, "phrase", null), cursor, properties).getRescorerQueries().isEmpty());
+        Assertions.assertEquals("search+category", NativeQueryBuilder.firedRules(parameters(SearchCursor.START, "phrase", null), properties));
+        Assertions.assertThrows(BadRequestException.class, () -> NativeQueryBuilder.toSearchQuery(parameters(null, "unknown", null), properties));
+    }
+
+    // a field sort leaves the query alone and is not rescored. cursor pages break its ties by _shard_doc
+    @Test
+    public void sortTest(){
+        var properties = PROPERTIES.withRescore(RESCORE);
+        var relevance = NativeQueryBuilder.toSearchQuery(parameters(null, null, null), properties);
+        var rating = NativeQueryBuilder.toSearchQuery(parameters(null, null, "Rating"), properties);
+        Assertions.assertEquals(this.toJson(relevance.getQuery()), this.toJson(rating.getQuery()));
+        Assertions.assertTrue(rating.getRescorerQueries().isEmpty());
+        // no facets, they would visit every match
+        Assertions.assertFalse(relevance.getAggregations().isEmpty());
+        Assertions.assertTrue(rating.getAggregations().isEmpty());
+        Assertions.assertEquals(List.of(), this.toSortJson(relevance));
+        Assertions.assertEquals(List.of("{\"avg_rating\":{\"order\":\"desc\"}}", "{\"num_of_reviews\":{\"order\":\"desc\"}}"), this.toSortJson(rating));
+        Assertions.assertEquals("search+category+sort-rating", NativeQueryBuilder.firedRules(parameters(null, null, "rating"), properties));
+        var cursor = SearchCursor.start("pit-id");
+        var reviewsPage = NativeQueryBuilder.toSearchQuery(parameters(SearchCursor.START, null, "reviews"), cursor, properties);
+        Assertions.assertEquals(List.of("{\"num_of_reviews\":{\"order\":\"desc\"}}", "{\"avg_rating\":{\"order\":\"desc\"}}", "{\"_shard_doc\":{\"order\":\"asc\"}}"), this.toSortJson(reviewsPage));
+        Assertions.assertTrue(reviewsPage.getAggregations().isEmpty());
+        var relevancePage = NativeQueryBuilder.toSearchQuery(parameters(SearchCursor.START, null, "relevance"), cursor, properties);
+        Assertions.assertEquals(List.of("{\"_score\":{\"order\":\"desc\"}}", "{\"_shard_doc\":{\"order\":\"asc\"}}"), this.toSortJson(relevancePage));
+        Assertions.assertThrows(BadRequestException.class, () -> parameters(null, null, "distance"));
+    }
+
+    // routed by state, a search filtered by state goes to the shard of the lowercased state. the query stays the same
+    @ParameterizedTest
+    @MethodSource("requestParameters")
+    public void routingTest(SearchRequestParameters parameters){
+        var properties = PROPERTIES.withRouting(new SearchProperties.Routing(SearchProperties.Routing.Mode.STATE, 1.5));
+        var query = NativeQueryBuilder.toSearchQuery(parameters, properties);
+        Assertions.assertEquals(this.toJson(NativeQueryBuilder.toSearchQuery(parameters, PROPERTIES).getQuery()), this.toJson(query.getQuery()));
+        Assertions.assertEquals(Objects.isNull(parameters.state()) ? null : "washington", query.getRoute());
+        Assertions.assertNull(NativeQueryBuilder.toSearchQuery(parameters, PROPERTIES).getRoute());
+        var cursorPage = new SearchRequestParameters("coffee", null, null, null, null, "Texas", null, 0, 10, SearchCursor.START, false, null, null, null, null);
+        Assertions.assertNull(NativeQueryBuilder.toSearchQuery(cursorPage, SearchCursor.start("pit-id"), properties).getRoute());
+    }
+
+    // the prefix goes to elasticsearch as typed, lowercased. its normalized form only keys the cached suggestions
+    @Test
+    public void suggestQueryPrefixTest(){
+        var parameters = new SuggestionRequestParameters(" Cof ", 5);
+        var suggester = NativeQueryBuilder.toSuggestQuery(parameters).getSuggester().suggesters().get(Constants.Suggestion.SUGGEST_NAME);
+        Assertions.assertEquals(" cof ", suggester.prefix());
+        Assertions.assertEquals(5, suggester.completion().size());
+        Assertions.assertEquals("cof", parameters.normalizedPrefix());
+    }
+
+    private static BoolQuery bool(NativeQuery query) {
+        return query.getQuery().bool();
+    }
+
+    private static void assertTerm(TermQueryExpectation expected, TermQuery actual) {
+        Assertions.assertEquals(expected.field(), actual.field());
+        Assertions.assertEquals(expected.value(), actual.value().stringValue());
+        Assertions.assertEquals(expected.caseInsensitive() ? Boolean.TRUE : null, actual.caseInsensitive());
+    }
+
+    private void assertSameClauses(List<Query> expected, List<Query> actual) {
+        Assertions.assertEquals(expected.stream().map(this::toJson).toList(), actual.stream().map(this::toJson).toList());
+    }
+
+    // post filter, facets, paging and source filtering
+    private void assertSameRequestBesidesQuery(NativeQuery expected, NativeQuery actual) {
+        Assertions.assertEquals(Objects.isNull(expected.getFilter()) ? null : this.toJson(expected.getFilter()),
+                                Objects.isNull(actual.getFilter()) ? null : this.toJson(actual.getFilter()));
+        Assertions.assertEquals(expected.getAggregations().keySet(), actual.getAggregations().keySet());
+        expected.getAggregations().forEach((name, aggregation) -> Assertions.assertEquals(
+                JsonpUtils.toJsonString(aggregation, this.jsonpMapper),
+                JsonpUtils.toJsonString(actual.getAggregations().get(name), this.jsonpMapper)
+        ));
+        Assertions.assertEquals(expected.getPageable(), actual.getPageable());
+        Assertions.assertEquals(expected.getTrackTotalHitsUpTo(), actual.getTrackTotalHitsUpTo());
+    }
+
+    private static SearchRequestParameters parameters(String cursor, String rescore, String sort) {
+        return new SearchRequestParameters("coffee", null, null, null, null, null, null, 0, 10, cursor, false, null, null, rescore, sort);
+    }
+
+    private SearchProperties withPopularity(SearchProperties.Popularity.Mode mode) {
+        return PROPERTIES.withPopularity(new SearchProperties.Popularity(mode));
+    }
+
+    private String toJson(Query query) {
+        return JsonpUtils.toJsonString(query, this.jsonpMapper);
+    }
+
+    private List<String> toSortJson(NativeQuery query) {
+        return query.getSortOptions().stream().map(sortOptions -> JsonpUtils.toJsonString(sortOptions, this.jsonpMapper)).toList();
+    }
+
+    // a plain search, and one with every filter and facet selections
+    private static Stream<SearchRequestParameters> requestParameters() {
+        return Stream.of(
+                parameters(null, null, null),
+                new SearchRequestParameters("coffee", "25mi", 36.5179, -94.0298, 4.3, "Washington", "Wi-Fi", 1, 5, null, false, "card",
+                                            "state:Texas||category:Coffee Shop||category:Cafe", null, null)
+        );
+    }
+
+    private record TermQueryExpectation(String field, String value, boolean caseInsensitive) {
+    }
+
+}
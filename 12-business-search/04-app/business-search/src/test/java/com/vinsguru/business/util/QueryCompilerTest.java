@@ -0,0 +1,115 @@
+package com.vinsguru.business.util;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.json.jackson.Jackson3JsonpMapper;
+import com.vinsguru.business.config.SearchProperties;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// the pre-selected rules must produce exactly the request the rule walking builder produces
+public class QueryCompilerTest {
+
+    private static final SearchProperties PROPERTIES = SearchProperties.defaults();
+
+    private final Jackson3JsonpMapper jsonpMapper = new Jackson3JsonpMapper();
+
+    @ParameterizedTest
+    @MethodSource("requestParameters")
+    public void compiledQueryEquivalenceTest(SearchRequestParameters parameters){
+        var expected = this.toRequestJson(toInterpretedSearchQuery(parameters, PROPERTIES));
+        var actual = this.toRequestJson(NativeQueryBuilder.toSearchQuery(parameters, PROPERTIES));
+        Assertions.assertEquals(expected, actual);
+    }
+
+    // timing the rules must not change the query. every rule is reported once, and the fired ones make up the rules tag
+    @ParameterizedTest
+    @MethodSource("requestParameters")
+    public void timedQueryEquivalenceTest(SearchRequestParameters parameters){
+        var fired = new ArrayList<String>();
+        var reported = new ArrayList<String>();
+        QueryRuleTimer timer = (rule, isFired, nanos) -> {
+            reported.add(rule.name());
+            if (isFired) {
+                fired.add(rule.name());
+            }
+        };
+        var expected = this.toRequestJson(NativeQueryBuilder.toSearchQuery(parameters, PROPERTIES));
+        var actual = this.toRequestJson(NativeQueryBuilder.toSearchQuery(parameters, null, PROPERTIES, MatchMode.FUZZY, timer));
+        Assertions.assertEquals(expected, actual);
+        Assertions.assertEquals(List.of("state", "rating", "distance", "search", "category"), reported);
+        Assertions.assertEquals(String.join("+", fired), NativeQueryBuilder.firedRules(parameters));
+    }
+
+    // walks the rules for every request, the reference the pre-selected rules are verified against
+    private static NativeQuery toInterpretedSearchQuery(SearchRequestParameters parameters, SearchProperties properties) {
+        var filterQueries = buildQueries(List.of(QueryRules.STATE_QUERY, QueryRules.RATING_QUERY, QueryRules.DISTANCE_QUERY), parameters);
+        var mustQueries = buildQueries(List.of(QueryRules.SEARCH_QUERY), parameters);
+        var shouldQueries = buildQueries(List.of(QueryRules.CATEGORY_QUERY), parameters);
+        var boolQuery = BoolQuery.of(builder -> builder.filter(filterQueries)
+                                                       .must(mustQueries)
+                                                       .should(shouldQueries));
+        return NativeQueryBuilder.toSearchQuery(parameters, null, properties, Query.of(builder -> builder.bool(boolQuery)));
+    }
+
+    private static List<Query> buildQueries(List<QueryRule> queryRules, SearchRequestParameters parameters) {
+        return queryRules.stream()
+                         .map(qr -> qr.build(parameters))
+                         .flatMap(Optional::stream)
+                         .toList();
+    }
+
+    // the parts of the native query which end up in the search request body
+    private String toRequestJson(NativeQuery query) {
+        var aggregations = new TreeMap<String, String>();
+        query.getAggregations().forEach((name, aggregation) -> aggregations.put(name, JsonpUtils.toJsonString(aggregation, this.jsonpMapper)));
+        var sourceFilter = query.getSourceFilter();
+        return "query=%s, postFilter=%s, aggregations=%s, pageable=%s, trackTotalHits=%s, trackTotalHitsUpTo=%s, source=%s".formatted(
+                JsonpUtils.toJsonString(query.getQuery(), this.jsonpMapper),
+                Objects.isNull(query.getFilter()) ? null : JsonpUtils.toJsonString(query.getFilter(), this.jsonpMapper),
+                aggregations,
+                query.getPageable(),
+                query.getTrackTotalHits(),
+                query.getTrackTotalHitsUpTo(),
+                Objects.isNull(sourceFilter) ? null : Arrays.toString(sourceFilter.getIncludes())
+        );
+    }
+
+    // every combination of the state, rating, distance and offerings filters, with and without other facet selections
+    private static Stream<Arguments> requestParameters() {
+        return IntStream.range(0, 32)
+                        .mapToObj(mask -> new SearchRequestParameters(
+                                "coffee",
+                                (mask & 4) != 0 ? "25mi" : null,
+                                (mask & 4) != 0 ? 36.5179 : null,
+                                (mask & 4) != 0 ? -94.0298 : null,
+                                (mask & 2) != 0 ? 4.3 : null,
+                                (mask & 1) != 0 ? "Washington" : null,
+                                (mask & 8) != 0 ? "Wi-Fi" : null,
+                                mask % 3,
+                                5,
+                                null,
+                                mask % 2 == 0,
+                                mask % 4 < 2 ? "card" : null,
+                                (mask & 16) != 0 ? "state:Texas||category:Coffee Shop||category:Cafe" : null,
+                                null,
+                                null
+                        ))
+                        .map(Arguments::of);
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.vinsguru.business.util;
+
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.jackson.Jackson3JsonpMapper;
+import com.vinsguru.business.dto.SearchRequestParameters;
+import com.vinsguru.business.service.SearchResponseMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+public class SearchResponseStreamerTest {
+
+    private static final String ELASTICSEARCH_RESPONSE = """
+            {
+              "took": 7,
+              "timed_out": false,
+              "_shards": {"total": 1, "successful": 1, "skipped": 0, "failed": 0},
+              "hits": {
+                "total": {"value": 10000, "relation": "gte"},
+                "max_score": 2.1,
+                "hits": [
+                  {"_index": "businesses", "_id": "1", "_score": 2.1, "_source": {"name": "Coffee House", "avg_rating": 4.5, "offerings": ["Wi-Fi", "Parking"], "location": {"lat": 1.0, "lon": 2.0}}},
+                  {"_index": "businesses", "_id": "2", "_score": 1.3, "_source": {"name": "Cafe", "avg_rating": 3.0}, "sort": [1.3, 7]}
+                ]
+              },
+              "aggregations": {
+                "offerings-term-aggregate": {
+                  "doc_count_error_upper_bound": 0,
+                  "sum_other_doc_count": 0,
+                  "buckets": [{"key": "Wi-Fi", "doc_count": 2}, {"key": "Parking", "doc_count": 1}]
+                },
+                "state-term-aggregate": {
+                  "doc_count": 3,
+                  "state-term-aggregate": {"buckets": [{"key": "Texas", "doc_count": 3}]}
+                }
+              }
+            }
+            """;
+
+    private static final String EXPECTED_RESPONSE = """
+            {
+              "results": [
+                {"id": "1", "name": "Coffee House", "description": null, "address": null, "category": null, "offerings": ["Wi-Fi", "Parking"], "rating": 4.5, "reviewsCount": null, "url": null},
+                {"id": "2", "name": "Cafe", "description": null, "address": null, "category": null, "offerings": null, "rating": 3.0, "reviewsCount": null, "url": null}
+              ],
+              "facets": [
+                {"name": "offerings-term-aggregate", "items": [{"key": "Wi-Fi", "count": 2}, {"key": "Parking", "count": 1}], "approximate": false},
+                {"name": "state-term-aggregate", "items": [{"key": "Texas", "count": 3}], "approximate": false}
+              ],
+              "pagination": {"page": 1, "size": 2, "totalElements": 10000, "totalRelation": "gte", "totalPages": 5000, "next": null},
+              "timeTaken": 7,
+              "cached": false,
+              "matchMode": "fuzzy"
+            }
+            """;
+
+    // with typed keys, like the java client asks for them. the streaming search asks without
+    private static final String TYPED_ELASTICSEARCH_RESPONSE = """
+            {
+              "took": 3,
+              "timed_out": false,
+              "_shards": {"total": 1, "successful": 1, "skipped": 0, "failed": 0},
+              "hits": {
+                "total": {"value": 3, "relation": "eq"},
+                "max_score": 2.1,
+                "hits": [
+                  {"_index": "businesses", "_id": "1", "_score": 2.1, "_source": {"name": "Starbucks", "description": "Coffee shop chain", "address": "123 Main Street, Seattle, WA",
+                    "state": "Washington", "location": {"lat": 47.6, "lon": -122.3}, "category": ["Coffee Shop", "Cafe"], "offerings": ["Wi-Fi"],
+                    "avg_rating": 4.2, "num_of_reviews": 120, "url": "https://www.starbucks.com", "popularity": {"rating": 4.2, "reviews": 120}}},
+                  {"_index": "businesses", "_id": "2", "_score": 1.3, "_source": {"name": "Panera Bread", "category": "Bakery", "avg_rating": 4, "state": "Missouri"}},
+                  {"_index": "businesses", "_id": "3", "_score": 0.4, "_source": {"url": "https://www.lowes.com", "name": "Lowe's", "num_of_reviews": 95, "offerings": []}}
+                ]
+              },
+              "aggregations": {
+                "sterms#offerings-term-aggregate": {"doc_count_error_upper_bound": 0, "sum_other_doc_count": 0, "buckets": [{"key": "Wi-Fi", "doc_count": 1}]},
+                "filter#state-term-aggregate": {"doc_count": 2, "sterms#state-term-aggregate": {"doc_count_error_upper_bound": 0, "sum_other_doc_count": 0,
+                  "buckets": [{"key": "Missouri", "doc_count": 1}, {"key": "Washington", "doc_count": 1}]}},
+                "sterms#category-term-aggregate": {"doc_count_error_upper_bound": 0, "sum_other_doc_count": 0, "buckets": [{"key": "Cafe", "doc_count": 1}]}
+              }
+            }
+            """;
+
+    private static final JsonpDeserializer<co.elastic.clients.elasticsearch.core.SearchResponse<Map>> RESPONSE_DESERIALIZER =
+            co.elastic.clients.elasticsearch.core.SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(Map.class));
+
+    private static final Pattern TYPED_KEY = Pattern.compile("\"\\w+#");
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final Jackson3JsonpMapper jsonpMapper = new Jackson3JsonpMapper();
+
+    @Test
+    public void streamTest(){
+        var parameters = new SearchRequestParameters("coffee", null, null, null, null, null, null, 1, 2, null, null, null, null, null, null);
+        var actual = this.stream(ELASTICSEARCH_RESPONSE, parameters);
+        Assertions.assertEquals(this.jsonMapper.readTree(EXPECTED_RESPONSE), this.jsonMapper.readTree(actual));
+    }
+
+    // the streamed response is the one SearchResponseMapper builds for /api/search, field by field, for both projections
+    @ParameterizedTest
+    @ValueSource(strings = {"full", "card"})
+    public void searchResponseEquivalenceTest(String fields){
+        var parameters = new SearchRequestParameters("coffee", null, null, null, null, null, null, 0, 10, null, null, fields, null, null, null);
+        var converter = new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext());
+        converter.afterPropertiesSet();
+        var jsonParser = this.jsonpMapper.jsonProvider().createParser(new StringReader(TYPED_ELASTICSEARCH_RESPONSE));
+        var response = RESPONSE_DESERIALIZER.deserialize(jsonParser, this.jsonpMapper);
+        var mapped = new SearchResponseMapper(converter, this.jsonpMapper).toSearchResponse(parameters, null, response)
+                                                                          .withMatchMode(MatchMode.FUZZY);
+        var expected = this.jsonMapper.readTree(this.jsonMapper.writeValueAsString(mapped)); // as /api/search writes it
+        var actual = this.jsonMapper.readTree(this.stream(TYPED_KEY.matcher(TYPED_ELASTICSEARCH_RESPONSE).replaceAll("\""), parameters));
+        Assertions.assertEquals(3, actual.get("results").size());
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void untrackedTotalAndNoAggregationsTest(){
+        var parameters = new SearchRequestParameters("coffee", null, null, null, null, null, null, 0, 10, null, null, null, null, null, null);
+        var actual = this.jsonMapper.readTree(this.stream("""
+                {"took": 1, "hits": {"hits": [{"_id": "1", "_source": {"name": "Cafe"}}]}}
+                """, parameters));
+        Assertions.assertEquals(1, actual.get("results").size());
+        Assertions.assertEquals(0, actual.get("facets").size());
+        Assertions.assertEquals(1, actual.get("pagination").get("totalElements").asLong());
+        Assertions.assertEquals("eq", actual.get("pagination").get("totalRelation").asString());
+    }
+
+    @Test
+    public void sampledFacetsTest(){
+        var parameters = new SearchRequestParameters("coffee", null, null, null, null, null, null, 0, 10, null, null, null, null, null, null);
+        var sampled = this.jsonMapper.readTree(this.stream("""
+                {"took": 1, "hits": {"hits": []}, "aggregations": {
+                  "state-term-aggregate": {"doc_count": 1000, "state-term-aggregate": {"doc_count": 100, "state-term-aggregate": {"buckets": [{"key": "Texas", "doc_count": 7}]}}},
+                  "category-term-aggregate": {"doc_count": 50, "category-term-aggregate": {"doc_count": 50, "category-term-aggregate": {"buckets": [{"key": "Cafe", "doc_count": 7}]}}}
+                }}
+                """, parameters)).get("facets");
+        Assertions.assertEquals(7, sampled.get(0).get("items").get(0).get("count").asLong()); // 7 among the 100 best of 1000, not scaled up
+        Assertions.assertTrue(sampled.get(0).get("approximate").asBoolean());
+        Assertions.assertEquals(7, sampled.get(1).get("items").get(0).get("count").asLong()); // everything was sampled
+        Assertions.assertFalse(sampled.get(1).get("approximate").asBoolean());
+
+        var randomSampled = this.jsonMapper.readTree(this.stream("""
+                {"took": 1, "hits": {"hits": []}, "aggregations": {"facet-sampler": {"seed": 1, "probability": 0.1, "doc_count": 10,
+                  "offerings-term-aggregate": {"buckets": [{"key": "Wi-Fi", "doc_count": 40}]}
+                }}}
+                """, parameters)).get("facets");
+        Assertions.assertEquals("offerings-term-aggregate", randomSampled.get(0).get("name").asString());
+        Assertions.assertEquals(40, randomSampled.get(0).get("items").get(0).get("count").asLong());
+        Assertions.assertTrue(randomSampled.get(0).get("approximate").asBoolean());
+    }
+
+    private String stream(String elasticsearchResponse, SearchRequestParameters parameters) {
+        var output = new ByteArrayOutputStream();
+        SearchResponseStreamer.stream(new ByteArrayInputStream(elasticsearchResponse.getBytes(StandardCharsets.UTF_8)), output, parameters);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.vinsguru.business.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>("test", this.meterRegistry);
+
+    @Test
+    public void concurrentCallsAreCoalescedTest() throws Exception {
+        var calls = new AtomicInteger();
+        var release = new CountDownLatch(1);
+        var callers = 8;
+        try (var executor = Executors.newFixedThreadPool(callers)) {
+            var results = new ArrayList<Future<String>>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> this.singleFlight.execute("coffee", key -> {
+                    calls.incrementAndGet();
+                    await(release);
+                    return key.toUpperCase();
+                })));
+            }
+            // wait for the followers to join the call of the leader
+            while (this.count("follower") < callers - 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (var result : results) {
+                Assertions.assertEquals("COFFEE", result.get(5, TimeUnit.SECONDS));
+            }
+        }
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(1, this.count("leader"));
+        Assertions.assertEquals(0, this.singleFlight.inFlightCalls());
+    }
+
+    @Test
+    public void completedCallsAreNotReusedTest(){
+        var calls = new AtomicInteger();
+        this.singleFlight.execute("coffee", key -> key + calls.incrementAndGet());
+        Assertions.assertEquals("coffee2", this.singleFlight.execute("coffee", key -> key + calls.incrementAndGet()));
+        Assertions.assertEquals("tea3", this.singleFlight.execute("tea", key -> key + calls.incrementAndGet()));
+        Assertions.assertEquals(0, this.count("follower"));
+    }
+
+    @Test
+    public void followersReceiveTheFailureOfTheLeaderTest(){
+        var call = new CompletableFuture<String>();
+        var leader = this.singleFlight.executeAsync("coffee", key -> call);
+        var follower = this.singleFlight.executeAsync("coffee", key -> CompletableFuture.completedFuture("unexpected"));
+        call.completeExceptionally(new IllegalStateException("unavailable"));
+
+        Assertions.assertTrue(leader.isCompletedExceptionally());
+        Assertions.assertTrue(follower.isCompletedExceptionally());
+        Assertions.assertEquals(0, this.singleFlight.inFlightCalls());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> this.singleFlight.execute("coffee", key -> {
+            throw new IllegalArgumentException();
+        }));
+    }
+
+    // an Error of the leader must not leave its followers waiting forever (join has no timeout: the callers run on daemon threads)
+    @Test
+    public void followersReceiveTheErrorOfTheLeaderTest() throws Exception {
+        var release = new CountDownLatch(1);
+        var leader = CompletableFuture.supplyAsync(() -> this.singleFlight.execute("coffee", key -> {
+            await(release);
+            throw new StackOverflowError();
+        }));
+        while (this.count("leader") < 1) {
+            Thread.sleep(5);
+        }
+        var follower = CompletableFuture.supplyAsync(() -> this.singleFlight.execute("coffee", key -> "unexpected"));
+        while (this.count("follower") < 1) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (var result : List.of(leader, follower)) {
+            var e = Assertions.assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(StackOverflowError.class, e.getCause());
+        }
+        Assertions.assertEquals(0, this.singleFlight.inFlightCalls());
+    }
+
+    @Test
+    public void asyncCallThrowingAnErrorTest() {
+        Assertions.assertThrows(AssertionError.class, () -> this.singleFlight.executeAsync("coffee", key -> {
+            throw new AssertionError();
+        }));
+        Assertions.assertEquals(0, this.singleFlight.inFlightCalls());
+        Assertions.assertEquals("COFFEE", this.singleFlight.executeAsync("coffee", key -> CompletableFuture.completedFuture("COFFEE")).join());
+    }
+
+    @Test
+    public void reactiveCallsAreCoalescedTest() {
+        var calls = new AtomicInteger();
+        var result = Sinks.<String>one();
+        var leader = this.singleFlight.executeReactive("coffee", key -> {
+            calls.incrementAndGet();
+            return result.asMono();
+        }).toFuture();
+        var follower = this.singleFlight.executeReactive("coffee", key -> Mono.just("unexpected")).toFuture();
+        result.tryEmitValue("COFFEE");
+
+        Assertions.assertEquals("COFFEE", leader.join());
+        Assertions.assertEquals("COFFEE", follower.join());
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(1, this.count("follower"));
+        Assertions.assertEquals(0, this.singleFlight.inFlightCalls());
+    }
+
+    // the shared call is cancelled with the last of its callers
+    @Test
+    public void reactiveCallIsCancelledWithTheLastCallerTest() {
+        var cancelled = new AtomicInteger();
+        var call = Mono.<String>never().doOnCancel(cancelled::incrementAndGet);
+        var leader = this.singleFlight.executeReactive("coffee", key -> call).subscribe();
+        var follower = this.singleFlight.executeReactive("coffee", key -> call).subscribe();
+
+        leader.dispose();
+        Assertions.assertEquals(0, cancelled.get());
+        Assertions.assertEquals(1, this.singleFlight.inFlightCalls());
+
+        follower.dispose();
+        Assertions.assertEquals(1, cancelled.get());
+        Assertions.assertEquals(0, this.singleFlight.inFlightCalls());
+    }
+
+    private double count(String role) {
+        return this.meterRegistry.counter("test.coalescing.requests", "role", role).count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}